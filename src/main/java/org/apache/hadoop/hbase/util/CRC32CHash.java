@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hbase.util;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * A hash built on CRC32C, which {@link CRC32C} computes with the CRC32
+ * instructions of the processor where the JVM provides an intrinsic, so long
+ * keys hash at several bytes per cycle.
+ * 
+ * <p>The CRC of the key and the seed form a 64-bit value that goes through
+ * the MurmurHash3 finalizer, a bijection, so every output bit depends on
+ * every bit of the CRC and of the seed, and two seeds give unrelated values.
+ * {@link #hash(byte[], int, int)} returns the low 32 bits. Array slices
+ * are read in place; a direct buffer is read through a duplicate, as
+ * {@link CRC32C#update(ByteBuffer)} moves the position.</p>
+ * 
+ * <p>The hash only has the 32 bits of entropy of the CRC: as a CRC is
+ * linear, two keys of the same length with the same CRC collide whatever the
+ * seed, and the 64-bit value is no less likely to collide than the 32-bit
+ * one. This does not matter for positions in a Bloom filter of less than
+ * about 2<sup>32</sup> keys, but makes this hash unsuitable for filters
+ * relying on 64-bit fingerprints.</p>
+ * 
+ * <p>Each thread reuses its own {@link CRC32C}, reset before every key, so
+ * hashing allocates nothing but the duplicate of a direct buffer.</p>
+ */
+public class CRC32CHash extends Hash {
+  private static CRC32CHash _instance = new CRC32CHash();
+
+  private static final ThreadLocal<CRC32C> CRC = new ThreadLocal<CRC32C>() {
+    @Override
+    protected CRC32C initialValue() {
+      return new CRC32C();
+    }
+  };
+
+  public static Hash getInstance() {
+    return _instance;
+  }
+
+  /**
+   * Returns the low 32 bits of the 64-bit hash.
+   */
+  public int hash(byte[] bytes, int length, int initval) {
+    return (int) hash64(bytes, 0, length, initval);
+  }
+
+  @Override
+  public int hash(byte[] bytes, int offset, int length, int initval) {
+    return (int) hash64(bytes, offset, length, initval);
+  }
+
+  @Override
+  public int hash(ByteBuffer buffer, int offset, int length, int initval) {
+    return (int) hash64(buffer, offset, length, initval);
+  }
+
+  @Override
+  public long hash64(byte[] bytes, int length, int initval) {
+    return hash64(bytes, 0, length, initval);
+  }
+
+  @Override
+  public long hash64(byte[] bytes, int offset, int length, int initval) {
+    CRC32C crc = crc();
+    crc.update(bytes, offset, length);
+    return fmix((long) initval << 32 | crc.getValue());
+  }
+
+  @Override
+  public long hash64(ByteBuffer buffer, int offset, int length, int initval) {
+    if (buffer.hasArray()) {
+      return hash64(buffer.array(), buffer.arrayOffset() + offset, length, initval);
+    }
+    ByteBuffer slice = buffer.duplicate();
+    slice.limit(offset + length).position(offset);
+    CRC32C crc = crc();
+    crc.update(slice);
+    return fmix((long) initval << 32 | crc.getValue());
+  }
+
+  /** @return The CRC32C of the calling thread, reset. */
+  private static CRC32C crc() {
+    CRC32C crc = CRC.get();
+    crc.reset();
+    return crc;
+  }
+
+  private static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+}
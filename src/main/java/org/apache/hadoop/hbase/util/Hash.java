@@ -18,8 +18,16 @@
 
 package org.apache.hadoop.hbase.util;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * This class represents a common API for hashing functions.
+ * <p>
+ * Each hash can be computed over a slice of a byte array or of a
+ * {@link ByteBuffer}, heap or direct. The slice overloads return the same
+ * values as hashing a copy of the slice; the default implementations copy it,
+ * and implementations override them to read the slice in place.
  */
 public abstract class Hash {
 	/** Constant to denote invalid hash type. */
@@ -28,11 +36,17 @@ public abstract class Hash {
 	public static final int JENKINS_HASH = 0;
 	/** Constant to denote {@link MurmurHash}. */
 	public static final int MURMUR_HASH = 1;
+	/** Constant to denote {@link MurmurHash3}, the x64 128-bit variant. */
+	public static final int MURMUR3_128 = 2;
+	/** Constant to denote {@link XXHash64}. */
+	public static final int XXHASH64 = 3;
+	/** Constant to denote {@link CRC32CHash}. */
+	public static final int CRC32C_HASH = 4;
 
 	/**
 	 * This utility method converts String representation of hash function name
-	 * to a symbolic constant. Currently two function types are supported,
-	 * "jenkins" and "murmur".
+	 * to a symbolic constant. Currently five function types are supported,
+	 * "jenkins", "murmur", "murmur3", "xxhash64" and "crc32c".
 	 * 
 	 * @param name  hash function name
 	 * 
@@ -43,6 +57,12 @@ public abstract class Hash {
 			return JENKINS_HASH;
 		} else if ("murmur".equalsIgnoreCase(name)) {
 			return MURMUR_HASH;
+		} else if ("murmur3".equalsIgnoreCase(name)) {
+			return MURMUR3_128;
+		} else if ("xxhash64".equalsIgnoreCase(name)) {
+			return XXHASH64;
+		} else if ("crc32c".equalsIgnoreCase(name)) {
+			return CRC32C_HASH;
 		} else {
 			return INVALID_HASH;
 		}
@@ -61,6 +81,12 @@ public abstract class Hash {
 			return JenkinsHash.getInstance();
 		case MURMUR_HASH:
 			return MurmurHash.getInstance();
+		case MURMUR3_128:
+			return MurmurHash3.getInstance();
+		case XXHASH64:
+			return XXHash64.getInstance();
+		case CRC32C_HASH:
+			return CRC32CHash.getInstance();
 		default:
 			return null;
 		}
@@ -101,4 +127,108 @@ public abstract class Hash {
 	 */
 	public abstract int hash(byte[] bytes, int length, int initval);
 
+	/**
+	 * Calculate a 64-bit hash using bytes from 0 to <code>length</code>, and
+	 * the provided seed value.
+	 * <p>
+	 * This default implementation chains two 32-bit passes, the second one
+	 * seeded with the result of the first. Implementations able to produce 64
+	 * bits in a single pass over the input should override it.
+	 *
+	 * @param bytes  input bytes
+	 * @param length  length of the valid bytes to consider
+	 * @param initval  seed value
+	 *
+	 * @return 64-bit hash value
+	 */
+	public long hash64(byte[] bytes, int length, int initval) {
+		int h1 = hash(bytes, length, initval);
+		int h2 = hash(bytes, length, h1);
+		return ((long) h1 << 32) | (h2 & 0x00000000ffffffffL);
+	}
+
+	/**
+	 * Calculate a hash using bytes from <code>offset</code> to
+	 * <code>offset + length</code>, and the provided seed value.
+	 * 
+	 * @param bytes  input bytes
+	 * @param offset  index of the first byte to consider
+	 * @param length  length of the valid bytes to consider
+	 * @param initval  seed value
+	 * 
+	 * @return hash value
+	 */
+	public int hash(byte[] bytes, int offset, int length, int initval) {
+		if (offset == 0) {
+			return hash(bytes, length, initval);
+		}
+		return hash(Arrays.copyOfRange(bytes, offset, offset + length), length, initval);
+	}
+
+	/**
+	 * Calculate a 64-bit hash using bytes from <code>offset</code> to
+	 * <code>offset + length</code>, and the provided seed value.
+	 * 
+	 * @param bytes  input bytes
+	 * @param offset  index of the first byte to consider
+	 * @param length  length of the valid bytes to consider
+	 * @param initval  seed value
+	 * 
+	 * @return 64-bit hash value
+	 */
+	public long hash64(byte[] bytes, int offset, int length, int initval) {
+		if (offset == 0) {
+			return hash64(bytes, length, initval);
+		}
+		return hash64(Arrays.copyOfRange(bytes, offset, offset + length), length, initval);
+	}
+
+	/**
+	 * Calculate a hash using the bytes of a buffer from the absolute index
+	 * <code>offset</code> to <code>offset + length</code>, and the provided
+	 * seed value. The slice must lie below the limit of the buffer, whose
+	 * position is neither used nor changed.
+	 * 
+	 * @param buffer  input buffer
+	 * @param offset  index of the first byte to consider
+	 * @param length  length of the valid bytes to consider
+	 * @param initval  seed value
+	 * 
+	 * @return hash value
+	 */
+	public int hash(ByteBuffer buffer, int offset, int length, int initval) {
+		if (buffer.hasArray()) {
+			return hash(buffer.array(), buffer.arrayOffset() + offset, length, initval);
+		}
+		return hash(copy(buffer, offset, length), length, initval);
+	}
+
+	/**
+	 * Calculate a 64-bit hash using the bytes of a buffer from the absolute
+	 * index <code>offset</code> to <code>offset + length</code>, and the
+	 * provided seed value. The slice must lie below the limit of the buffer,
+	 * whose position is neither used nor changed.
+	 * 
+	 * @param buffer  input buffer
+	 * @param offset  index of the first byte to consider
+	 * @param length  length of the valid bytes to consider
+	 * @param initval  seed value
+	 * 
+	 * @return 64-bit hash value
+	 */
+	public long hash64(ByteBuffer buffer, int offset, int length, int initval) {
+		if (buffer.hasArray()) {
+			return hash64(buffer.array(), buffer.arrayOffset() + offset, length, initval);
+		}
+		return hash64(copy(buffer, offset, length), length, initval);
+	}
+
+	private static byte[] copy(ByteBuffer buffer, int offset, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(offset + i);
+		}
+		return bytes;
+	}
+
 }
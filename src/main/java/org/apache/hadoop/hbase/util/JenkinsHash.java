@@ -20,6 +20,10 @@
 
 package org.apache.hadoop.hbase.util;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Produces 32-bit hash for hash table lookup.
@@ -35,22 +39,23 @@ package org.apache.hadoop.hbase.util;
  * function compares to others such as CRC, MD?, etc</a>
  * @see <a href="http://burtleburtle.net/bob/hash/doobs.html">Has update on the
  * Dr. Dobbs Article</a>
+ * 
+ * <p>The key is read as little-endian 32-bit words, in place for array and
+ * buffer slices, and the arithmetic is done on <code>int</code>s, whose
+ * overflow matches the unsigned 32-bit arithmetic of the C version.</p>
  */
 public class JenkinsHash extends Hash {
-  private static long INT_MASK  = 0x00000000ffffffffL;
-  private static long BYTE_MASK = 0x00000000000000ffL;
-  
+  private static final VarHandle INT_LANE =
+      MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final VarHandle BUFFER_INT_LANE =
+      MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
   private static JenkinsHash _instance = new JenkinsHash();
   
   public static Hash getInstance() {
     return _instance;
   }
 
-  private static long rot(long val, int pos) {
-    return ((Integer.rotateLeft(
-        (int)(val & INT_MASK), pos)) & INT_MASK);
-  }
-
   /**
    * taken from  hashlittle() -- hash a variable-length key into a 32-bit value
    * 
@@ -76,25 +81,60 @@ public class JenkinsHash extends Hash {
    * <p>Use for hash table lookup, or anything where one collision in 2^^32 is
    * acceptable.  Do NOT use for cryptographic purposes.
   */
-  @SuppressWarnings("fallthrough")
   public int hash(byte[] key, int nbytes, int initval) {
+    return (int) (hashlittle2(key, null, 0, nbytes, initval) >>> 32);
+  }
+
+  @Override
+  public int hash(byte[] key, int offset, int nbytes, int initval) {
+    return (int) (hashlittle2(key, null, offset, nbytes, initval) >>> 32);
+  }
+
+  @Override
+  public int hash(ByteBuffer buffer, int offset, int nbytes, int initval) {
+    return (int) (hash64(buffer, offset, nbytes, initval) >>> 32);
+  }
+
+  /**
+   * taken from  hashlittle2() -- same as hashlittle(), but returns two 32-bit
+   * values computed in a single pass over the key.
+   * 
+   * @param key the key (the unaligned variable-length array of bytes)
+   * @param nbytes number of bytes to include in hash
+   * @param initval can be any integer value
+   * @return a 64-bit value.  The high 32 bits are the primary hash, identical
+   * to {@link #hash(byte[], int, int)}; the low 32 bits are the secondary hash.
+   */
+  @Override
+  public long hash64(byte[] key, int nbytes, int initval) {
+    return hashlittle2(key, null, 0, nbytes, initval);
+  }
+
+  @Override
+  public long hash64(byte[] key, int offset, int nbytes, int initval) {
+    return hashlittle2(key, null, offset, nbytes, initval);
+  }
+
+  @Override
+  public long hash64(ByteBuffer buffer, int offset, int nbytes, int initval) {
+    if (buffer.hasArray()) {
+      return hashlittle2(buffer.array(), null, buffer.arrayOffset() + offset, nbytes, initval);
+    }
+    return hashlittle2(null, buffer, offset, nbytes, initval);
+  }
+
+  /**
+   * Hashes the bytes of <code>key</code>, or of <code>buffer</code> if
+   * <code>key</code> is null, from <code>offset</code>.
+   */
+  private static long hashlittle2(byte[] key, ByteBuffer buffer, int offset, int nbytes, int initval) {
     int length = nbytes;
-    long a, b, c;       // We use longs because we don't have unsigned ints
-    a = b = c = (0x00000000deadbeefL + length + initval) & INT_MASK;
-    int offset = 0;
+    int a, b, c;
+    a = b = c = 0xdeadbeef + length + initval;
     for (; length > 12; offset += 12, length -= 12) {
-      a = (a + (key[offset + 0]    & BYTE_MASK)) & INT_MASK;
-      a = (a + (((key[offset + 1]  & BYTE_MASK) <<  8) & INT_MASK)) & INT_MASK;
-      a = (a + (((key[offset + 2]  & BYTE_MASK) << 16) & INT_MASK)) & INT_MASK;
-      a = (a + (((key[offset + 3]  & BYTE_MASK) << 24) & INT_MASK)) & INT_MASK;
-      b = (b + (key[offset + 4]    & BYTE_MASK)) & INT_MASK;
-      b = (b + (((key[offset + 5]  & BYTE_MASK) <<  8) & INT_MASK)) & INT_MASK;
-      b = (b + (((key[offset + 6]  & BYTE_MASK) << 16) & INT_MASK)) & INT_MASK;
-      b = (b + (((key[offset + 7]  & BYTE_MASK) << 24) & INT_MASK)) & INT_MASK;
-      c = (c + (key[offset + 8]    & BYTE_MASK)) & INT_MASK;
-      c = (c + (((key[offset + 9]  & BYTE_MASK) <<  8) & INT_MASK)) & INT_MASK;
-      c = (c + (((key[offset + 10] & BYTE_MASK) << 16) & INT_MASK)) & INT_MASK;
-      c = (c + (((key[offset + 11] & BYTE_MASK) << 24) & INT_MASK)) & INT_MASK;
+      a += getInt(key, buffer, offset);
+      b += getInt(key, buffer, offset + 4);
+      c += getInt(key, buffer, offset + 8);
       
       /*
        * mix -- mix 3 32-bit values reversibly.
@@ -150,43 +190,26 @@ public class JenkinsHash extends Hash {
        * 
        * mix(a,b,c);
        */
-      a = (a - c) & INT_MASK;  a ^= rot(c, 4);  c = (c + b) & INT_MASK;
-      b = (b - a) & INT_MASK;  b ^= rot(a, 6);  a = (a + c) & INT_MASK;
-      c = (c - b) & INT_MASK;  c ^= rot(b, 8);  b = (b + a) & INT_MASK;
-      a = (a - c) & INT_MASK;  a ^= rot(c,16);  c = (c + b) & INT_MASK;
-      b = (b - a) & INT_MASK;  b ^= rot(a,19);  a = (a + c) & INT_MASK;
-      c = (c - b) & INT_MASK;  c ^= rot(b, 4);  b = (b + a) & INT_MASK;
+      a -= c;  a ^= Integer.rotateLeft(c, 4);  c += b;
+      b -= a;  b ^= Integer.rotateLeft(a, 6);  a += c;
+      c -= b;  c ^= Integer.rotateLeft(b, 8);  b += a;
+      a -= c;  a ^= Integer.rotateLeft(c,16);  c += b;
+      b -= a;  b ^= Integer.rotateLeft(a,19);  a += c;
+      c -= b;  c ^= Integer.rotateLeft(b, 4);  b += a;
     }
 
     //-------------------------------- last block: affect all 32 bits of (c)
-    switch (length) {                   // all the case statements fall through
-    case 12:
-      c = (c + (((key[offset + 11] & BYTE_MASK) << 24) & INT_MASK)) & INT_MASK;
-    case 11:
-      c = (c + (((key[offset + 10] & BYTE_MASK) << 16) & INT_MASK)) & INT_MASK;
-    case 10:
-      c = (c + (((key[offset + 9]  & BYTE_MASK) <<  8) & INT_MASK)) & INT_MASK;
-    case  9:
-      c = (c + (key[offset + 8]    & BYTE_MASK)) & INT_MASK;
-    case  8:
-      b = (b + (((key[offset + 7]  & BYTE_MASK) << 24) & INT_MASK)) & INT_MASK;
-    case  7:
-      b = (b + (((key[offset + 6]  & BYTE_MASK) << 16) & INT_MASK)) & INT_MASK;
-    case  6:
-      b = (b + (((key[offset + 5]  & BYTE_MASK) <<  8) & INT_MASK)) & INT_MASK;
-    case  5:
-      b = (b + (key[offset + 4]    & BYTE_MASK)) & INT_MASK;
-    case  4:
-      a = (a + (((key[offset + 3]  & BYTE_MASK) << 24) & INT_MASK)) & INT_MASK;
-    case  3:
-      a = (a + (((key[offset + 2]  & BYTE_MASK) << 16) & INT_MASK)) & INT_MASK;
-    case  2:
-      a = (a + (((key[offset + 1]  & BYTE_MASK) <<  8) & INT_MASK)) & INT_MASK;
-    case  1:
-      a = (a + (key[offset + 0]    & BYTE_MASK)) & INT_MASK;
-      break;
-    case  0:
-      return (int)(c & INT_MASK);
+    // adding a partial little-endian word adds each of its bytes at its
+    // own shift, as the byte-wise version of lookup3 does
+    if (length == 0) {
+      return ((long) c << 32) | (b & 0xffffffffL);
+    }
+    a += partialWord(key, buffer, offset, length);
+    if (length > 4) {
+      b += partialWord(key, buffer, offset + 4, length - 4);
+    }
+    if (length > 8) {
+      c += partialWord(key, buffer, offset + 8, length - 8);
     }
     /*
      * final -- final mixing of 3 32-bit values (a,b,c) into c
@@ -225,15 +248,36 @@ public class JenkinsHash extends Hash {
      * }
      * 
      */
-    c ^= b; c = (c - rot(b,14)) & INT_MASK;
-    a ^= c; a = (a - rot(c,11)) & INT_MASK;
-    b ^= a; b = (b - rot(a,25)) & INT_MASK;
-    c ^= b; c = (c - rot(b,16)) & INT_MASK;
-    a ^= c; a = (a - rot(c,4))  & INT_MASK;
-    b ^= a; b = (b - rot(a,14)) & INT_MASK;
-    c ^= b; c = (c - rot(b,24)) & INT_MASK;
-
-    return (int)(c & INT_MASK);
+    c ^= b; c -= Integer.rotateLeft(b,14);
+    a ^= c; a -= Integer.rotateLeft(c,11);
+    b ^= a; b -= Integer.rotateLeft(a,25);
+    c ^= b; c -= Integer.rotateLeft(b,16);
+    a ^= c; a -= Integer.rotateLeft(c,4);
+    b ^= a; b -= Integer.rotateLeft(a,14);
+    c ^= b; c -= Integer.rotateLeft(b,24);
+
+    return ((long) c << 32) | (b & 0xffffffffL);
+  }
+
+  /**
+   * @return the first <code>n</code> bytes at <code>offset</code>, up to 4,
+   * as a little-endian word
+   */
+  private static int partialWord(byte[] key, ByteBuffer buffer, int offset, int n) {
+    if (n >= 4) {
+      return getInt(key, buffer, offset);
+    }
+    int word = 0;
+    for (int i = n - 1; i >= 0; i--) {
+      word = (word << 8) | ((key != null ? key[offset + i] : buffer.get(offset + i)) & 0xff);
+    }
+    return word;
+  }
+
+  private static int getInt(byte[] key, ByteBuffer buffer, int offset) {
+    return key != null
+        ? (int) INT_LANE.get(key, offset)
+        : (int) BUFFER_INT_LANE.get(buffer, offset);
   }
 
 }
@@ -18,14 +18,33 @@
 
 package org.apache.hadoop.hbase.util;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /**
  * This is a very fast, non-cryptographic hash suitable for general hash-based
  * lookup.  See http://murmurhash.googlepages.com/ for more details.
  * 
  * <p>The C version of MurmurHash 2.0 found at that site was ported
  * to Java by Andrzej Bialecki (ab at getopt org).</p>
+ * 
+ * <p>Blocks are read as little-endian words, in place for array and buffer
+ * slices. The last bytes of {@link #hash(byte[], int, int)} are
+ * sign-extended, as in that port, so that existing hash values are
+ * unchanged.</p>
  */
 public class MurmurHash extends Hash {
+  private static final VarHandle INT_LANE =
+      MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final VarHandle LONG_LANE =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final VarHandle BUFFER_INT_LANE =
+      MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final VarHandle BUFFER_LONG_LANE =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
   private static MurmurHash _instance = new MurmurHash();
   
   public static Hash getInstance() {
@@ -33,6 +52,49 @@ public class MurmurHash extends Hash {
   }
   
   public int hash(byte[] data, int length, int seed) {
+    return hash32(data, null, 0, length, seed);
+  }
+
+  @Override
+  public int hash(byte[] data, int offset, int length, int seed) {
+    return hash32(data, null, offset, length, seed);
+  }
+
+  @Override
+  public int hash(ByteBuffer buffer, int offset, int length, int seed) {
+    if (buffer.hasArray()) {
+      return hash32(buffer.array(), null, buffer.arrayOffset() + offset, length, seed);
+    }
+    return hash32(null, buffer, offset, length, seed);
+  }
+
+  /**
+   * MurmurHash64A, the 64-bit variant of MurmurHash 2.0, computed in a single
+   * pass over the input. The seed is taken as an unsigned 32-bit value.
+   */
+  @Override
+  public long hash64(byte[] data, int length, int seed) {
+    return hash64(data, null, 0, length, seed);
+  }
+
+  @Override
+  public long hash64(byte[] data, int offset, int length, int seed) {
+    return hash64(data, null, offset, length, seed);
+  }
+
+  @Override
+  public long hash64(ByteBuffer buffer, int offset, int length, int seed) {
+    if (buffer.hasArray()) {
+      return hash64(buffer.array(), null, buffer.arrayOffset() + offset, length, seed);
+    }
+    return hash64(null, buffer, offset, length, seed);
+  }
+
+  /**
+   * Hashes the bytes of <code>data</code>, or of <code>buffer</code> if
+   * <code>data</code> is null, from <code>offset</code>.
+   */
+  private static int hash32(byte[] data, ByteBuffer buffer, int offset, int length, int seed) {
     int m = 0x5bd1e995;
     int r = 24;
 
@@ -41,14 +103,10 @@ public class MurmurHash extends Hash {
     int len_4 = length >> 2;
 
     for (int i = 0; i < len_4; i++) {
-      int i_4 = i << 2;
-      int k = data[i_4 + 3];
-      k = k << 8;
-      k = k | (data[i_4 + 2] & 0xff);
-      k = k << 8;
-      k = k | (data[i_4 + 1] & 0xff);
-      k = k << 8;
-      k = k | (data[i_4 + 0] & 0xff);
+      int i_4 = offset + (i << 2);
+      int k = data != null
+          ? (int) INT_LANE.get(data, i_4)
+          : (int) BUFFER_INT_LANE.get(buffer, i_4);
       k *= m;
       k ^= k >>> r;
       k *= m;
@@ -59,16 +117,17 @@ public class MurmurHash extends Hash {
     // avoid calculating modulo
     int len_m = len_4 << 2;
     int left = length - len_m;
+    int end = offset + length;
 
     if (left != 0) {
       if (left >= 3) {
-        h ^= (int) data[length - 3] << 16;
+        h ^= (int) getByte(data, buffer, end - 3) << 16;
       }
       if (left >= 2) {
-        h ^= (int) data[length - 2] << 8;
+        h ^= (int) getByte(data, buffer, end - 2) << 8;
       }
       if (left >= 1) {
-        h ^= (int) data[length - 1];
+        h ^= (int) getByte(data, buffer, end - 1);
       }
 
       h *= m;
@@ -80,4 +139,50 @@ public class MurmurHash extends Hash {
 
     return h;
   }
+
+  /**
+   * Hashes the bytes of <code>data</code>, or of <code>buffer</code> if
+   * <code>data</code> is null, from <code>offset</code>.
+   */
+  private static long hash64(byte[] data, ByteBuffer buffer, int offset, int length, int seed) {
+    long m = 0xc6a4a7935bd1e995L;
+    int r = 47;
+
+    long h = (seed & 0xffffffffL) ^ (length * m);
+
+    int len_8 = length >> 3;
+
+    for (int i = 0; i < len_8; i++) {
+      int i_8 = offset + (i << 3);
+      long k = data != null
+          ? (long) LONG_LANE.get(data, i_8)
+          : (long) BUFFER_LONG_LANE.get(buffer, i_8);
+      k *= m;
+      k ^= k >>> r;
+      k *= m;
+      h ^= k;
+      h *= m;
+    }
+
+    int len_m = offset + (len_8 << 3);
+    int left = length - (len_8 << 3);
+
+    if (left != 0) {
+      for (int i = left - 1; i >= 0; i--) {
+        h ^= (long) (getByte(data, buffer, len_m + i) & 0xff) << (i << 3);
+      }
+      h *= m;
+    }
+
+    h ^= h >>> r;
+    h *= m;
+    h ^= h >>> r;
+
+    return h;
+  }
+
+  /** @return the byte at <code>index</code>, sign-extended */
+  private static byte getByte(byte[] data, ByteBuffer buffer, int index) {
+    return data != null ? data[index] : buffer.get(index);
+  }
 }
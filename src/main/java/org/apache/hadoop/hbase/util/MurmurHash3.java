@@ -0,0 +1,234 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hbase.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * MurmurHash3, the x64 128-bit variant, by Austin Appleby. See
+ * https://github.com/aappleby/smhasher for more details.
+ * 
+ * <p>The input is read 16 bytes at a time, as two little-endian 64-bit words,
+ * and a single pass yields 128 bits. {@link #hash64(byte[], int, int)} returns
+ * the first half, so a filter deriving its positions from a 64-bit hash reads
+ * the key only once; {@link #hash128(byte[], int, int, long[])} returns both
+ * halves. The seed is taken as an unsigned 32-bit value, as in the reference
+ * implementation. Array and buffer slices are read in place.</p>
+ */
+public class MurmurHash3 extends Hash {
+  private static final VarHandle LONG_LANE =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final VarHandle BUFFER_LONG_LANE =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private static MurmurHash3 _instance = new MurmurHash3();
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  public static Hash getInstance() {
+    return _instance;
+  }
+
+  /**
+   * Returns the low 32 bits of the first half of the 128-bit hash.
+   */
+  public int hash(byte[] data, int length, int seed) {
+    return (int) hash64(data, length, seed);
+  }
+
+  @Override
+  public int hash(byte[] data, int offset, int length, int seed) {
+    return (int) hash64(data, offset, length, seed);
+  }
+
+  @Override
+  public int hash(ByteBuffer buffer, int offset, int length, int seed) {
+    return (int) hash64(buffer, offset, length, seed);
+  }
+
+  /**
+   * Returns the first half of the 128-bit hash.
+   */
+  @Override
+  public long hash64(byte[] data, int length, int seed) {
+    return compute(data, null, 0, length, seed, null);
+  }
+
+  @Override
+  public long hash64(byte[] data, int offset, int length, int seed) {
+    return compute(data, null, offset, length, seed, null);
+  }
+
+  @Override
+  public long hash64(ByteBuffer buffer, int offset, int length, int seed) {
+    if (buffer.hasArray()) {
+      return compute(buffer.array(), null, buffer.arrayOffset() + offset, length, seed, null);
+    }
+    return compute(null, buffer, offset, length, seed, null);
+  }
+
+  /**
+   * Calculate the 128-bit hash using bytes from 0 to <code>length</code>,
+   * and the provided seed value.
+   * 
+   * @param data  input bytes
+   * @param length  length of the valid bytes to consider
+   * @param seed  seed value
+   * @param result  array receiving the two 64-bit halves of the hash
+   */
+  public void hash128(byte[] data, int length, int seed, long[] result) {
+    hash128(data, 0, length, seed, result);
+  }
+
+  /**
+   * Calculate the 128-bit hash using bytes from <code>offset</code> to
+   * <code>offset + length</code>, and the provided seed value.
+   * 
+   * @param data  input bytes
+   * @param offset  index of the first byte to consider
+   * @param length  length of the valid bytes to consider
+   * @param seed  seed value
+   * @param result  array receiving the two 64-bit halves of the hash
+   */
+  public void hash128(byte[] data, int offset, int length, int seed, long[] result) {
+    if (result == null || result.length < 2) {
+      throw new IllegalArgumentException("result must hold 2 values");
+    }
+    compute(data, null, offset, length, seed, result);
+  }
+
+  /**
+   * Hashes the bytes of <code>data</code>, or of <code>buffer</code> if
+   * <code>data</code> is null, from <code>offset</code>, and stores the
+   * 128-bit hash in <code>result</code>, if not null.
+   * 
+   * @return the first half of the hash
+   */
+  private static long compute(byte[] data, ByteBuffer buffer, int offset, int length, int seed, long[] result) {
+    long h1 = seed & 0xffffffffL;
+    long h2 = h1;
+
+    int len_16 = length >> 4;
+
+    for (int i = 0; i < len_16; i++) {
+      int i_16 = offset + (i << 4);
+      long k1 = getLong(data, buffer, i_16);
+      long k2 = getLong(data, buffer, i_16 + 8);
+
+      k1 *= C1;
+      k1 = Long.rotateLeft(k1, 31);
+      k1 *= C2;
+      h1 ^= k1;
+
+      h1 = Long.rotateLeft(h1, 27);
+      h1 += h2;
+      h1 = h1 * 5 + 0x52dce729;
+
+      k2 *= C2;
+      k2 = Long.rotateLeft(k2, 33);
+      k2 *= C1;
+      h2 ^= k2;
+
+      h2 = Long.rotateLeft(h2, 31);
+      h2 += h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    int len_m = offset + (len_16 << 4);
+    int left = length - (len_16 << 4);
+
+    if (left > 8) {
+      long k2 = 0;
+      for (int i = left - 1; i >= 8; i--) {
+        k2 = (k2 << 8) | (getByte(data, buffer, len_m + i) & 0xff);
+      }
+      k2 *= C2;
+      k2 = Long.rotateLeft(k2, 33);
+      k2 *= C1;
+      h2 ^= k2;
+    }
+    if (left > 0) {
+      long k1 = 0;
+      for (int i = Math.min(left, 8) - 1; i >= 0; i--) {
+        k1 = (k1 << 8) | (getByte(data, buffer, len_m + i) & 0xff);
+      }
+      k1 *= C1;
+      k1 = Long.rotateLeft(k1, 31);
+      k1 *= C2;
+      h1 ^= k1;
+    }
+
+    h1 ^= length;
+    h2 ^= length;
+
+    h1 += h2;
+    h2 += h1;
+
+    h1 = fmix(h1);
+    h2 = fmix(h2);
+
+    h1 += h2;
+    h2 += h1;
+
+    if (result != null) {
+      result[0] = h1;
+      result[1] = h2;
+    }
+    return h1;
+  }
+
+  /**
+   * Calculate the 128-bit hash using bytes from 0 to <code>length</code>,
+   * and the provided seed value.
+   * 
+   * @param data  input bytes
+   * @param length  length of the valid bytes to consider
+   * @param seed  seed value
+   * 
+   * @return the two 64-bit halves of the hash
+   */
+  public long[] hash128(byte[] data, int length, int seed) {
+    long[] result = new long[2];
+    hash128(data, length, seed, result);
+    return result;
+  }
+
+  private static long getLong(byte[] data, ByteBuffer buffer, int i) {
+    return data != null
+        ? (long) LONG_LANE.get(data, i)
+        : (long) BUFFER_LONG_LANE.get(buffer, i);
+  }
+
+  private static byte getByte(byte[] data, ByteBuffer buffer, int i) {
+    return data != null ? data[i] : buffer.get(i);
+  }
+
+  private static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+}
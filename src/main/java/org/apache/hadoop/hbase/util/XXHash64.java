@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hbase.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * xxHash64, by Yann Collet. See https://github.com/Cyan4973/xxHash for more
+ * details.
+ * 
+ * <p>The input is read as little-endian 64-bit lanes through
+ * {@link VarHandle}s, four lanes at a time in independent accumulators, so
+ * long keys are hashed at close to memory bandwidth. Array and buffer slices
+ * are read in place. The seed is taken as an
+ * unsigned 32-bit value, so a seed of 0 gives the values used by Parquet
+ * Bloom filters.</p>
+ */
+public class XXHash64 extends Hash {
+  private static XXHash64 _instance = new XXHash64();
+
+  private static final long P1 = 0x9e3779b185ebca87L;
+  private static final long P2 = 0xc2b2ae3d27d4eb4fL;
+  private static final long P3 = 0x165667b19e3779f9L;
+  private static final long P4 = 0x85ebca77c2b2ae63L;
+  private static final long P5 = 0x27d4eb2f165667c5L;
+
+  private static final VarHandle LONG_LANE =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final VarHandle INT_LANE =
+      MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final VarHandle BUFFER_LONG_LANE =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final VarHandle BUFFER_INT_LANE =
+      MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+  public static Hash getInstance() {
+    return _instance;
+  }
+
+  /**
+   * Returns the low 32 bits of the 64-bit hash.
+   */
+  public int hash(byte[] data, int length, int seed) {
+    return (int) hash64(data, length, seed);
+  }
+
+  @Override
+  public int hash(byte[] data, int offset, int length, int seed) {
+    return (int) hash64(data, offset, length, seed);
+  }
+
+  @Override
+  public int hash(ByteBuffer buffer, int offset, int length, int seed) {
+    return (int) hash64(buffer, offset, length, seed);
+  }
+
+  @Override
+  public long hash64(byte[] data, int length, int seed) {
+    return hash64(data, null, 0, length, seed);
+  }
+
+  @Override
+  public long hash64(byte[] data, int offset, int length, int seed) {
+    return hash64(data, null, offset, length, seed);
+  }
+
+  @Override
+  public long hash64(ByteBuffer buffer, int offset, int length, int seed) {
+    if (buffer.hasArray()) {
+      return hash64(buffer.array(), null, buffer.arrayOffset() + offset, length, seed);
+    }
+    return hash64(null, buffer, offset, length, seed);
+  }
+
+  /**
+   * Hashes the bytes of <code>data</code>, or of <code>buffer</code> if
+   * <code>data</code> is null, from <code>offset</code>.
+   */
+  private static long hash64(byte[] data, ByteBuffer buffer, int offset, int length, int seed) {
+    long s = seed & 0xffffffffL;
+    int i = 0;
+    long h;
+
+    if (length >= 32) {
+      long v1 = s + P1 + P2;
+      long v2 = s + P2;
+      long v3 = s;
+      long v4 = s - P1;
+      for (int limit = length - 32; i <= limit; i += 32) {
+        v1 = round(v1, getLong(data, buffer, offset + i));
+        v2 = round(v2, getLong(data, buffer, offset + i + 8));
+        v3 = round(v3, getLong(data, buffer, offset + i + 16));
+        v4 = round(v4, getLong(data, buffer, offset + i + 24));
+      }
+      h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+          + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+      h = mergeRound(h, v1);
+      h = mergeRound(h, v2);
+      h = mergeRound(h, v3);
+      h = mergeRound(h, v4);
+    } else {
+      h = s + P5;
+    }
+
+    h += length;
+
+    for (; i + 8 <= length; i += 8) {
+      h ^= round(0, getLong(data, buffer, offset + i));
+      h = Long.rotateLeft(h, 27) * P1 + P4;
+    }
+    if (i + 4 <= length) {
+      h ^= (getInt(data, buffer, offset + i) & 0xffffffffL) * P1;
+      h = Long.rotateLeft(h, 23) * P2 + P3;
+      i += 4;
+    }
+    for (; i < length; i++) {
+      h ^= ((data != null ? data[offset + i] : buffer.get(offset + i)) & 0xff) * P5;
+      h = Long.rotateLeft(h, 11) * P1;
+    }
+
+    h ^= h >>> 33;
+    h *= P2;
+    h ^= h >>> 29;
+    h *= P3;
+    h ^= h >>> 32;
+
+    return h;
+  }
+
+  private static long getLong(byte[] data, ByteBuffer buffer, int i) {
+    return data != null
+        ? (long) LONG_LANE.get(data, i)
+        : (long) BUFFER_LONG_LANE.get(buffer, i);
+  }
+
+  private static int getInt(byte[] data, ByteBuffer buffer, int i) {
+    return data != null
+        ? (int) INT_LANE.get(data, i)
+        : (int) BUFFER_INT_LANE.get(buffer, i);
+  }
+
+  private static long round(long acc, long lane) {
+    acc += lane * P2;
+    acc = Long.rotateLeft(acc, 31);
+    return acc * P1;
+  }
+
+  private static long mergeRound(long h, long v) {
+    h ^= round(0, v);
+    return h * P1 + P4;
+  }
+}
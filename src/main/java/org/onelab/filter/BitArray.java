@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+/**
+ * Defines a fixed-size vector of bits addressed by a <code>long</code> index.
+ * <p>
+ * Bits are grouped in 64-bit words, bit <code>i</code> being bit
+ * <code>i % 64</code> of word <code>i / 64</code>. Implementations only need
+ * to provide word access; the bulk operations are written in terms of it and
+ * can be overridden when the storage allows a faster path.
+ *
+ * @see org.onelab.filter.LongBitArray A bit vector on the heap
+ * @see org.onelab.filter.DirectBitArray A bit vector in direct memory
+ */
+public abstract class BitArray {
+	/** The number of bits in <i>this</i> vector. */
+	protected final long bitSize;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bitSize  The number of bits in the vector.
+	 */
+	protected BitArray(long bitSize) {
+		if (bitSize <= 0) {
+			throw new IllegalArgumentException("bitSize must be > 0");
+		}
+		this.bitSize = bitSize;
+	}
+
+	/** @return The number of bits in <i>this</i> vector. */
+	public long bitSize() {
+		return bitSize;
+	}
+
+	/** @return The number of 64-bit words holding the bits of <i>this</i> vector. */
+	public long wordCount() {
+		return (bitSize + Long.SIZE - 1) >>> 6;
+	}
+
+	/**
+	 * @param index  The bit index.
+	 * @return The value of the bit with the specified index.
+	 */
+	public abstract boolean get(long index);
+
+	/**
+	 * Sets the bit at the specified index.
+	 *
+	 * @param index  The bit index.
+	 */
+	public abstract void set(long index);
+
+	/**
+	 * @param wordIndex  The word index.
+	 * @return The word with the specified index.
+	 */
+	public abstract long getWord(long wordIndex);
+
+	/**
+	 * Replaces the word at the specified index.
+	 *
+	 * @param wordIndex  The word index.
+	 * @param word  The new value of the word.
+	 */
+	public abstract void setWord(long wordIndex, long word);
+
+	/** Clears every bit of <i>this</i> vector. */
+	public void clear() {
+		for (long i = 0, n = wordCount(); i < n; i++) {
+			setWord(i, 0L);
+		}
+	}
+
+	/** @return The number of bits set to one. */
+	public long cardinality() {
+		long count = 0;
+		for (long i = 0, n = wordCount(); i < n; i++) {
+			count += Long.bitCount(getWord(i));
+		}
+		return count;
+	}
+
+	/**
+	 * @param from  The index to start from.
+	 * @return The index of the first bit set at or after <code>from</code>, -1 if there is none.
+	 */
+	public long nextSetBit(long from) {
+		if (from >= bitSize) {
+			return -1;
+		}
+		long i = from >>> 6;
+		long n = wordCount();
+		long word = getWord(i) & (-1L << from);
+		while (word == 0) {
+			if (++i == n) {
+				return -1;
+			}
+			word = getWord(i);
+		}
+		return (i << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * Performs a logical AND with a vector of the same size.
+	 *
+	 * @param other  The vector to AND with.
+	 */
+	public void and(BitArray other) {
+		checkSize(other);
+		for (long i = 0, n = wordCount(); i < n; i++) {
+			setWord(i, getWord(i) & other.getWord(i));
+		}
+	}
+
+	/**
+	 * Performs a logical OR with a vector of the same size.
+	 *
+	 * @param other  The vector to OR with.
+	 */
+	public void or(BitArray other) {
+		checkSize(other);
+		for (long i = 0, n = wordCount(); i < n; i++) {
+			setWord(i, getWord(i) | other.getWord(i));
+		}
+	}
+
+	/**
+	 * Performs a logical XOR with a vector of the same size.
+	 *
+	 * @param other  The vector to XOR with.
+	 */
+	public void xor(BitArray other) {
+		checkSize(other);
+		for (long i = 0, n = wordCount(); i < n; i++) {
+			setWord(i, getWord(i) ^ other.getWord(i));
+		}
+	}
+
+	/** Flips every bit of <i>this</i> vector. */
+	public void not() {
+		long n = wordCount();
+		for (long i = 0; i < n; i++) {
+			setWord(i, ~getWord(i));
+		}
+		setWord(n - 1, getWord(n - 1) & lastWordMask());
+	}
+
+	/**
+	 * Two bit vectors are equal when they have the same size and the same bits
+	 * set, whatever their storage.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof BitArray))
+			return false;
+		BitArray other = (BitArray) obj;
+		if (bitSize != other.bitSize)
+			return false;
+		for (long i = 0, n = wordCount(); i < n; i++) {
+			if (getWord(i) != other.getWord(i))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		long h = 1234;
+		for (long i = 0, n = wordCount(); i < n; i++) {
+			h = 31 * h + getWord(i);
+		}
+		return (int) (h ^ (h >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder("{");
+		for (long i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+			if (res.length() > 1) {
+				res.append(", ");
+			}
+			res.append(i);
+		}
+		return res.append('}').toString();
+	}
+
+	/** @return The mask of the bits of the last word that belong to <i>this</i> vector. */
+	protected long lastWordMask() {
+		return -1L >>> (-bitSize & 63);
+	}
+
+	/**
+	 * @param other  The vector to check.
+	 * @throws IllegalArgumentException if <code>other</code> does not have the size of <i>this</i> vector.
+	 */
+	protected void checkSize(BitArray other) {
+		if (other == null || other.bitSize != bitSize) {
+			throw new IllegalArgumentException("bit vectors must have the same size");
+		}
+	}
+
+}
@@ -0,0 +1,297 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements a <i>split block Bloom filter</i>, where all the bits of a key
+ * fall in a single 32-byte block.
+ * <p>
+ * In a {@link BloomFilter}, each of the <code>k</code> positions of a key lands
+ * on a random cache line, so testing a key in a filter larger than the cache
+ * costs up to <code>k</code> cache misses. Here one hash selects a block of
+ * eight 32-bit words and sets one bit in each word, so a test costs a single
+ * cache miss, for a slightly higher false positive rate at the same size.
+ * <p>
+ * The layout follows the Parquet split block Bloom filter specification:
+ * the block of a 64-bit hash <code>h</code> is
+ * <code>((h >>> 32) * blocks) >>> 32</code>, the bit set in word
+ * <code>i</code> is <code>((int) h * SALT[i]) >>> 27</code>, and the bit
+ * vector is serialized as little-endian 32-bit words. Filters read from or
+ * written for Parquet files can be used through {@link #BlockedBloomFilter(byte[], int)},
+ * {@link #toByteArray()} and the hash-based {@link #addHash(long)} and
+ * {@link #membershipTestHash(long)}, Parquet hashing values with XXH64.
+ * Keys are hashed with {@link Hash#hash64(byte[], int, int)} of the
+ * configured hash type, so a filter using {@link Hash#XXHASH64} hashes keys
+ * exactly as Parquet does.
+ *
+ * @see org.onelab.filter.Filter The general behavior of a filter
+ *
+ * @see <a href="https://github.com/apache/parquet-format/blob/master/BloomFilter.md">
+ * 			Parquet Bloom Filter</a>
+ * @see <a href="http://algo2.iti.kit.edu/documents/cacheefficientbloomfilters-jea.pdf">
+ * 			Cache-, Hash- and Space-Efficient Bloom Filters</a>
+ */
+public class BlockedBloomFilter extends Filter {
+	/** The number of bits in a block. */
+	public static final int BLOCK_SIZE = 256;
+
+	/** The number of 32-bit words in a block, which is also the number of bits set per key. */
+	public static final int WORDS_PER_BLOCK = 8;
+
+	/** The odd constants selecting the bit set in each word of a block. */
+	private static final int[] SALT = {
+		0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d,
+		0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31
+	};
+
+	/** The bit vector, as consecutive blocks of {@link #WORDS_PER_BLOCK} words. */
+	protected final int[] words;
+
+	/** The number of blocks in the bit vector. */
+	protected final int blocks;
+
+	/**
+	 * Constructor
+	 *
+	 * @param vectorSize  The vector size of <i>this</i> filter, rounded up to a multiple of {@link #BLOCK_SIZE}.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 */
+	public BlockedBloomFilter(int vectorSize, int hashType) {
+		super(roundUp(vectorSize), WORDS_PER_BLOCK, hashType);
+
+		this.blocks = this.vectorSize / BLOCK_SIZE;
+		this.words = new int[blocks * WORDS_PER_BLOCK];
+	}
+
+	/**
+	 * Constructor
+	 * <p>
+	 * Builds a filter from a serialized bit vector, such as the bitset of a
+	 * Parquet Bloom filter.
+	 *
+	 * @param bitset  The bit vector, as little-endian 32-bit words.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 */
+	public BlockedBloomFilter(byte[] bitset, int hashType) {
+		this(checkLength(bitset) * Byte.SIZE, hashType);
+
+		for (int i = 0; i < words.length; i++) {
+			int o = i << 2;
+			words[i] = (bitset[o] & 0xff) | (bitset[o + 1] & 0xff) << 8
+				| (bitset[o + 2] & 0xff) << 16 | (bitset[o + 3] & 0xff) << 24;
+		}
+	}
+
+	private static int roundUp(int vectorSize) {
+		if (vectorSize <= 0 || vectorSize > Integer.MAX_VALUE - BLOCK_SIZE) {
+			throw new IllegalArgumentException("vectorSize must be > 0");
+		}
+		return (vectorSize + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+	}
+
+	private static int checkLength(byte[] bitset) {
+		if (bitset == null || bitset.length == 0 || bitset.length % (BLOCK_SIZE / Byte.SIZE) != 0) {
+			throw new IllegalArgumentException("bitset length must be a positive multiple of " + BLOCK_SIZE / Byte.SIZE);
+		}
+		return bitset.length;
+	}
+
+	@Override
+	public void add(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key can not be null");
+		}
+
+		addHash(hash64(key));
+	}
+
+	@Override
+	public boolean membershipTest(Key key) {
+		if (key == null) {
+			return false;
+		}
+
+		return membershipTestHash(hash64(key));
+	}
+
+	@Override
+	public void add(byte[] bytes, int offset, int length) {
+		HashFunction.checkSlice(bytes, offset, length);
+		addHash(hash.hashFunction.hash64(bytes, offset, length, 0));
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		HashFunction.checkSlice(bytes, offset, length);
+		return membershipTestHash(hash.hashFunction.hash64(bytes, offset, length, 0));
+	}
+
+	@Override
+	public void add(ByteBuffer buffer, int offset, int length) {
+		HashFunction.checkSlice(buffer, offset, length);
+		addHash(hash.hashFunction.hash64(buffer, offset, length, 0));
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		HashFunction.checkSlice(buffer, offset, length);
+		return membershipTestHash(hash.hashFunction.hash64(buffer, offset, length, 0));
+	}
+
+	/**
+	 * Adds a key given by its 64-bit hash to <i>this</i> filter.
+	 *
+	 * @param hash  The hash of the key.
+	 */
+	public void addHash(long hash) {
+		int base = block(hash);
+		int h = (int) hash;
+		for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+			words[base + i] |= 1 << ((h * SALT[i]) >>> 27);
+		}
+	}
+
+	/**
+	 * Determines whether a key given by its 64-bit hash belongs to <i>this</i> filter.
+	 *
+	 * @param hash  The hash of the key.
+	 * @return boolean  True if the key belongs to <i>this</i> filter. False otherwise.
+	 */
+	public boolean membershipTestHash(long hash) {
+		int base = block(hash);
+		int h = (int) hash;
+		for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+			if ((words[base + i] & (1 << ((h * SALT[i]) >>> 27))) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return The bit vector of <i>this</i> filter, as little-endian 32-bit words.
+	 */
+	public byte[] toByteArray() {
+		byte[] bitset = new byte[words.length << 2];
+		for (int i = 0; i < words.length; i++) {
+			int o = i << 2;
+			int w = words[i];
+			bitset[o] = (byte) w;
+			bitset[o + 1] = (byte) (w >>> 8);
+			bitset[o + 2] = (byte) (w >>> 16);
+			bitset[o + 3] = (byte) (w >>> 24);
+		}
+		return bitset;
+	}
+
+	/** @return The index of the first word of the block selected by <code>hash</code>. */
+	private int block(long hash) {
+		return (int) (((hash >>> 32) * blocks) >>> 32) * WORDS_PER_BLOCK;
+	}
+
+	private long hash64(Key key) {
+		byte[] b = key.getBytes();
+		if (b == null || b.length == 0) {
+			throw new IllegalArgumentException("key length must be > 0");
+		}
+		return hash.hashFunction.hash64(b, b.length, 0);
+	}
+
+	@Override
+	public void and(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be and-ed");
+		}
+		int[] other = ((BlockedBloomFilter) filter).words;
+		for (int i = 0; i < words.length; i++) {
+			words[i] &= other[i];
+		}
+	}
+
+	@Override
+	public void or(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be or-ed");
+		}
+		int[] other = ((BlockedBloomFilter) filter).words;
+		for (int i = 0; i < words.length; i++) {
+			words[i] |= other[i];
+		}
+	}
+
+	@Override
+	public void xor(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be xor-ed");
+		}
+		int[] other = ((BlockedBloomFilter) filter).words;
+		for (int i = 0; i < words.length; i++) {
+			words[i] ^= other[i];
+		}
+	}
+
+	@Override
+	public void not() {
+		for (int i = 0; i < words.length; i++) {
+			words[i] = ~words[i];
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder("{");
+		for (int i = 0; i < words.length; i++) {
+			for (int w = words[i]; w != 0; w &= w - 1) {
+				if (res.length() > 1) {
+					res.append(", ");
+				}
+				res.append((i << 5) + Integer.numberOfTrailingZeros(w));
+			}
+		}
+		return res.append('}').toString();
+	}
+
+	@Override
+	public Object clone() {
+		BlockedBloomFilter bf = new BlockedBloomFilter(vectorSize, hashType);
+		bf.or(this);
+		return bf;
+	}
+
+	private boolean isCompatible(Filter filter) {
+		if (filter == null) return false;
+		if (filter.getClass() != this.getClass()) return false;
+		if (filter.vectorSize != this.vectorSize) return false;
+		if (filter.hashType != this.hashType) return false;
+
+		return true;
+	}
+
+}
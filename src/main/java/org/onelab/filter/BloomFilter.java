@@ -47,6 +47,7 @@
  */
 package org.onelab.filter;
 
+import java.nio.ByteBuffer;
 import java.util.BitSet;
 
 import org.apache.hadoop.hbase.util.Hash;
@@ -79,6 +80,21 @@ public class BloomFilter extends Filter {
 	/** The bit vector. */
 	protected BitSet bits;
 
+	/** Sets each position of a key as soon as it is computed. */
+	private final HashFunction.Probe setter = new HashFunction.Probe() {
+		public boolean visit(int position) {
+			bits.set(position);
+			return true;
+		}
+	};
+
+	/** Tests each position of a key as soon as it is computed. */
+	private final HashFunction.Probe tester = new HashFunction.Probe() {
+		public boolean visit(int position) {
+			return bits.get(position);
+		}
+	};
+
 	/**
 	 * Constructor
 	 * 
@@ -87,7 +103,19 @@ public class BloomFilter extends Filter {
 	 * @param hashType  type of the hashing function (see {@link Hash}).
 	 */
 	public BloomFilter(int vectorSize, int nbHash, int hashType) {
-		super(vectorSize, nbHash, hashType);
+		this(vectorSize, nbHash, hashType, HashFunction.CHAINED_HASHING);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param vectorSize  The vector size of <i>this</i> filter.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param hashScheme  scheme used to derive the positions of a key (see {@link HashFunction}).
+	 */
+	public BloomFilter(int vectorSize, int nbHash, int hashType, int hashScheme) {
+		super(vectorSize, nbHash, hashType, hashScheme);
 
 		bits = new BitSet(this.vectorSize);
 	}
@@ -98,12 +126,8 @@ public class BloomFilter extends Filter {
 			throw new IllegalArgumentException("Key can not be null");
 		}
 
-		int[] h = hash.hash(key);
+		hash.hash(key, setter);
 		hash.clear();
-
-		for (int i = 0; i < nbHash; i++) {
-			bits.set(h[i]);
-		}
 	}
 
 	@Override
@@ -121,10 +145,68 @@ public class BloomFilter extends Filter {
 			return false;
 		}
 
-		int[] h = hash.hash(key);
+		boolean result = hash.hash(key, tester);
+		hash.clear();
+		return result;
+	}
+
+	@Override
+	public void add(byte[] bytes, int offset, int length) {
+		hash.hash(bytes, offset, length, setter);
+		hash.clear();
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		boolean result = hash.hash(bytes, offset, length, tester);
+		hash.clear();
+		return result;
+	}
+
+	@Override
+	public void add(ByteBuffer buffer, int offset, int length) {
+		hash.hash(buffer, offset, length, setter);
+		hash.clear();
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		boolean result = hash.hash(buffer, offset, length, tester);
 		hash.clear();
+		return result;
+	}
+
+	/**
+	 * Sets the specified positions in <i>this</i> filter, so that a key hashed
+	 * once can be added to several filters built with the same parameters.
+	 * 
+	 * @param positions  The positions of the key, as computed by {@link HashFunction#hash(Key, int[])}.
+	 */
+	void add(int[] positions) {
+		for (int i = 0; i < nbHash; i++) {
+			bits.set(positions[i]);
+		}
+	}
+
+	/**
+	 * Determines whether all the specified positions are set in <i>this</i>
+	 * filter, so that a key hashed once can be tested against several filters
+	 * built with the same parameters.
+	 * 
+	 * @param positions  The positions of the key, as computed by {@link HashFunction#hash(Key, int[])}.
+	 * @return boolean  True if the first <code>nbHash</code> positions are set. False otherwise.
+	 */
+	boolean membershipTest(int[] positions) {
 		for (int i = 0; i < nbHash; i++) {
-			if (!bits.get(h[i])) {
+			if (!bits.get(positions[i])) {
 				return false;
 			}
 		}
@@ -159,7 +241,7 @@ public class BloomFilter extends Filter {
 
 	@Override
 	public Object clone() {
-		BloomFilter bf = new BloomFilter(vectorSize, nbHash, hashType);
+		BloomFilter bf = new BloomFilter(vectorSize, nbHash, hashType, hashScheme);
 		bf.or(this);
 		return bf;
 	}
@@ -170,6 +252,7 @@ public class BloomFilter extends Filter {
 		if (filter.vectorSize != this.vectorSize) return false;
 		if (filter.nbHash != this.nbHash) return false;
 		if (filter.hashType != this.hashType) return false;
+		if (filter.hashScheme != this.hashScheme) return false;
 
 		return true;
 	}
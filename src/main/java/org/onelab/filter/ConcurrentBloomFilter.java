@@ -0,0 +1,240 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements a <i>Bloom filter</i> that can be shared between threads
+ * without locking.
+ * <p>
+ * The bit vector is an {@link AtomicLongArray}. Adding a key sets each of its
+ * bits with a compare-and-set loop on the enclosing word, skipped when the
+ * bit is already set, so concurrent writers never lose each other's bits and
+ * only contend when they hit the same word at the same time. Membership tests
+ * are plain volatile reads.
+ * <p>
+ * Keys are mapped to the same positions as in a {@link BloomFilter} with the
+ * same parameters. The logical operations are applied word by word: each
+ * word is updated atomically, but the filter as a whole is not, so a key
+ * added during an operation may or may not be reflected in its result.
+ *
+ * @see org.onelab.filter.Filter The general behavior of a filter
+ * @see org.onelab.filter.BloomFilter The single-threaded Bloom filter
+ */
+public class ConcurrentBloomFilter extends Filter {
+	/** The bit vector, bit <code>i</code> is in word <code>i >>> 6</code>. */
+	protected final AtomicLongArray words;
+
+	/** Sets each position of a key as soon as it is computed. */
+	private final HashFunction.Probe setter = new HashFunction.Probe() {
+		public boolean visit(int position) {
+			set(position);
+			return true;
+		}
+	};
+
+	/** Tests each position of a key as soon as it is computed. */
+	private final HashFunction.Probe tester = new HashFunction.Probe() {
+		public boolean visit(int position) {
+			return get(position);
+		}
+	};
+
+	/**
+	 * Constructor
+	 *
+	 * @param vectorSize  The vector size of <i>this</i> filter.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 */
+	public ConcurrentBloomFilter(int vectorSize, int nbHash, int hashType) {
+		this(vectorSize, nbHash, hashType, HashFunction.CHAINED_HASHING);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param vectorSize  The vector size of <i>this</i> filter.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param hashScheme  scheme used to derive the positions of a key (see {@link HashFunction}).
+	 */
+	public ConcurrentBloomFilter(int vectorSize, int nbHash, int hashType, int hashScheme) {
+		super(vectorSize, nbHash, hashType, hashScheme);
+
+		words = new AtomicLongArray((int) ((this.vectorSize + (long) Long.SIZE - 1) >>> 6));
+	}
+
+	@Override
+	public void add(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key can not be null");
+		}
+
+		hash.hash(key, setter);
+	}
+
+	@Override
+	public boolean membershipTest(Key key) {
+		if (key == null) {
+			return false;
+		}
+
+		return hash.hash(key, tester);
+	}
+
+	@Override
+	public void add(byte[] bytes, int offset, int length) {
+		hash.hash(bytes, offset, length, setter);
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		return hash.hash(bytes, offset, length, tester);
+	}
+
+	@Override
+	public void add(ByteBuffer buffer, int offset, int length) {
+		hash.hash(buffer, offset, length, setter);
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		return hash.hash(buffer, offset, length, tester);
+	}
+
+	/**
+	 * Sets a bit of the vector, retrying until no other writer changed its word.
+	 *
+	 * @param position  The bit index.
+	 */
+	private void set(int position) {
+		int i = position >>> 6;
+		long mask = 1L << position;
+		long word = words.get(i);
+		while ((word & mask) == 0 && !words.compareAndSet(i, word, word | mask)) {
+			word = words.get(i);
+		}
+	}
+
+	private boolean get(int position) {
+		return (words.get(position >>> 6) & (1L << position)) != 0;
+	}
+
+	@Override
+	public void and(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be and-ed");
+		}
+		AtomicLongArray other = ((ConcurrentBloomFilter) filter).words;
+		for (int i = 0; i < words.length(); i++) {
+			long mask = other.get(i);
+			long word;
+			do {
+				word = words.get(i);
+			} while (!words.compareAndSet(i, word, word & mask));
+		}
+	}
+
+	@Override
+	public void or(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be or-ed");
+		}
+		AtomicLongArray other = ((ConcurrentBloomFilter) filter).words;
+		for (int i = 0; i < words.length(); i++) {
+			long mask = other.get(i);
+			long word = words.get(i);
+			while ((word | mask) != word && !words.compareAndSet(i, word, word | mask)) {
+				word = words.get(i);
+			}
+		}
+	}
+
+	@Override
+	public void xor(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be xor-ed");
+		}
+		AtomicLongArray other = ((ConcurrentBloomFilter) filter).words;
+		for (int i = 0; i < words.length(); i++) {
+			long mask = other.get(i);
+			long word;
+			do {
+				word = words.get(i);
+			} while (!words.compareAndSet(i, word, word ^ mask));
+		}
+	}
+
+	@Override
+	public void not() {
+		int last = words.length() - 1;
+		for (int i = 0; i <= last; i++) {
+			long mask = i == last ? -1L >>> (-vectorSize & 63) : -1L;
+			long word;
+			do {
+				word = words.get(i);
+			} while (!words.compareAndSet(i, word, word ^ mask));
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder("{");
+		for (int i = 0; i < words.length(); i++) {
+			for (long w = words.get(i); w != 0; w &= w - 1) {
+				if (res.length() > 1) {
+					res.append(", ");
+				}
+				res.append((i << 6) + Long.numberOfTrailingZeros(w));
+			}
+		}
+		return res.append('}').toString();
+	}
+
+	@Override
+	public Object clone() {
+		ConcurrentBloomFilter bf = new ConcurrentBloomFilter(vectorSize, nbHash, hashType, hashScheme);
+		bf.or(this);
+		return bf;
+	}
+
+	private boolean isCompatible(Filter filter) {
+		if (filter == null) return false;
+		if (filter.getClass() != this.getClass()) return false;
+		if (filter.vectorSize != this.vectorSize) return false;
+		if (filter.nbHash != this.nbHash) return false;
+		if (filter.hashType != this.hashType) return false;
+		if (filter.hashScheme != this.hashScheme) return false;
+
+		return true;
+	}
+
+}
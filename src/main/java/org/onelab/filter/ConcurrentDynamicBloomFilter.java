@@ -0,0 +1,365 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements a <i>dynamic Bloom filter</i> that can be shared between
+ * threads without locking.
+ * <p>
+ * It behaves as a {@link DynamicBloomFilter}, each row being a
+ * {@link ConcurrentBloomFilter}. The rows and the number of keys recorded in
+ * the active row form an immutable {@link Matrix} published through an
+ * {@link AtomicReference}:
+ * <ul>
+ * <li>a membership test reads the current matrix once and never blocks;</li>
+ * <li>a writer reserves a slot in the active row by incrementing its count,
+ * and adds the key there if the row is not full;</li>
+ * <li>otherwise, the writer that reserved the first slot past the end of the
+ * row builds a matrix with a new row, whose first slot it holds, and
+ * publishes it. The writers that reserved later slots wait for that matrix
+ * and retry on it, so a single row is allocated and appended per rollover
+ * and a row never records more than <code>nr</code> keys.</li>
+ * </ul>
+ * The logical operations work on the matrices current at their start: rows
+ * appended meanwhile are not part of their result.
+ *
+ * @see org.onelab.filter.Filter The general behavior of a filter
+ * @see org.onelab.filter.DynamicBloomFilter The single-threaded dynamic Bloom filter
+ */
+public class ConcurrentDynamicBloomFilter extends Filter {
+	/**
+	 * Threshold for the maximum number of key to record in a dynamic Bloom filter row.
+	 */
+	protected final int nr;
+
+	/**
+	 * The current matrix of Bloom filter.
+	 */
+	protected final AtomicReference<Matrix> matrix;
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds an empty Dynamic Bloom filter.
+	 *
+	 * @param vectorSize  The number of bits in the vector.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param nr  The threshold for the maximum number of keys to record in a dynamic Bloom filter row.
+	 */
+	public ConcurrentDynamicBloomFilter(int vectorSize, int nbHash, int hashType, int nr) {
+		this(vectorSize, nbHash, hashType, HashFunction.CHAINED_HASHING, nr);
+	}
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds an empty Dynamic Bloom filter.
+	 *
+	 * @param vectorSize  The number of bits in the vector.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param hashScheme  scheme used to derive the positions of a key (see {@link HashFunction}).
+	 * @param nr  The threshold for the maximum number of keys to record in a dynamic Bloom filter row.
+	 */
+	public ConcurrentDynamicBloomFilter(int vectorSize, int nbHash, int hashType, int hashScheme, int nr) {
+		super(vectorSize, nbHash, hashType, hashScheme);
+
+		this.nr = nr;
+		this.matrix = new AtomicReference<Matrix>(
+				new Matrix(new ConcurrentBloomFilter[] { newRow() }, 0));
+	}
+
+	@Override
+	public void add(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key can not be null");
+		}
+
+		add(key, null, null, 0, 0);
+	}
+
+	@Override
+	public void add(byte[] bytes, int offset, int length) {
+		HashFunction.checkSlice(bytes, offset, length);
+		add(null, bytes, null, offset, length);
+	}
+
+	@Override
+	public void add(ByteBuffer buffer, int offset, int length) {
+		HashFunction.checkSlice(buffer, offset, length);
+		add(null, null, buffer, offset, length);
+	}
+
+	/**
+	 * Adds a key, or the slice holding it when <code>key</code> is null, to
+	 * the active row.
+	 */
+	private void add(Key key, byte[] bytes, ByteBuffer buffer, int offset, int length) {
+		while (true) {
+			Matrix m = matrix.get();
+			int slot = m.currentNbRecord.getAndIncrement();
+			if (slot < nr) {
+				addTo(m.activeRow(), key, bytes, buffer, offset, length);
+				return;
+			}
+			if (slot > nr) {
+				m.awaitSuccessor(matrix, nr);
+				continue;
+			}
+
+			ConcurrentBloomFilter row;
+			try {
+				row = newRow();
+			} catch (Throwable e) {
+				m.release(nr);
+				throw e;
+			}
+			// only the writer holding slot nr of m publishes its successor
+			Matrix next = m.addRow(row);
+			matrix.set(next);
+			addTo(next.activeRow(), key, bytes, buffer, offset, length);
+			return;
+		}
+	}
+
+	@Override
+	public boolean membershipTest(Key key) {
+		if (key == null) {
+			return false;
+		}
+
+		ConcurrentBloomFilter[] rows = matrix.get().rows;
+		for (int i = 0; i < rows.length; i++) {
+			if (rows[i].membershipTest(key)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		HashFunction.checkSlice(bytes, offset, length);
+		ConcurrentBloomFilter[] rows = matrix.get().rows;
+		for (int i = 0; i < rows.length; i++) {
+			if (rows[i].membershipTest(bytes, offset, length)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		HashFunction.checkSlice(buffer, offset, length);
+		ConcurrentBloomFilter[] rows = matrix.get().rows;
+		for (int i = 0; i < rows.length; i++) {
+			if (rows[i].membershipTest(buffer, offset, length)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public void and(Filter filter) {
+		ConcurrentBloomFilter[] rows = matrix.get().rows;
+		ConcurrentBloomFilter[] other = compatibleRows(filter, rows, "and-ed");
+		for (int i = 0; i < rows.length; i++) {
+			rows[i].and(other[i]);
+		}
+	}
+
+	@Override
+	public void or(Filter filter) {
+		ConcurrentBloomFilter[] rows = matrix.get().rows;
+		ConcurrentBloomFilter[] other = compatibleRows(filter, rows, "or-ed");
+		for (int i = 0; i < rows.length; i++) {
+			rows[i].or(other[i]);
+		}
+	}
+
+	@Override
+	public void xor(Filter filter) {
+		ConcurrentBloomFilter[] rows = matrix.get().rows;
+		ConcurrentBloomFilter[] other = compatibleRows(filter, rows, "xor-ed");
+		for (int i = 0; i < rows.length; i++) {
+			rows[i].xor(other[i]);
+		}
+	}
+
+	@Override
+	public void not() {
+		ConcurrentBloomFilter[] rows = matrix.get().rows;
+		for (int i = 0; i < rows.length; i++) {
+			rows[i].not();
+		}
+	}
+
+	/**
+	 * @return The number of rows in <i>this</i> dynamic Bloom filter.
+	 */
+	public int getRowCount() {
+		return matrix.get().rows.length;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder();
+
+		ConcurrentBloomFilter[] rows = matrix.get().rows;
+		for (int i = 0; i < rows.length; i++) {
+			res.append(rows[i]);
+			res.append(DynamicBloomFilter.LINE_SEPARATOR);
+		}
+		return res.toString();
+	}
+
+	@Override
+	public Object clone() {
+		Matrix m = matrix.get();
+		ConcurrentBloomFilter[] rows = new ConcurrentBloomFilter[m.rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = (ConcurrentBloomFilter) m.rows[i].clone();
+		}
+		ConcurrentDynamicBloomFilter dbf = new ConcurrentDynamicBloomFilter(vectorSize, nbHash, hashType, hashScheme, nr);
+		dbf.matrix.set(new Matrix(rows, Math.min(m.currentNbRecord.get(), nr)));
+		return dbf;
+	}
+
+	/**
+	 * Adds <code>key</code> to <code>row</code> or, when it is null, the key
+	 * held by a slice of <code>bytes</code> or of <code>buffer</code>.
+	 */
+	static void addTo(ConcurrentBloomFilter row, Key key, byte[] bytes, ByteBuffer buffer, int offset, int length) {
+		if (key != null) {
+			row.add(key);
+		} else if (bytes != null) {
+			row.add(bytes, offset, length);
+		} else {
+			row.add(buffer, offset, length);
+		}
+	}
+
+	/**
+	 * @return An empty row, built by a single writer per rollover.
+	 */
+	ConcurrentBloomFilter newRow() {
+		return new ConcurrentBloomFilter(vectorSize, nbHash, hashType, hashScheme);
+	}
+
+	private ConcurrentBloomFilter[] compatibleRows(Filter filter, ConcurrentBloomFilter[] rows, String operation) {
+		if (filter == null
+				|| filter.getClass() != this.getClass()
+				|| filter.vectorSize != this.vectorSize
+				|| filter.nbHash != this.nbHash
+				|| filter.hashType != this.hashType
+				|| filter.hashScheme != this.hashScheme
+				|| ((ConcurrentDynamicBloomFilter) filter).nr != this.nr) {
+			throw new IllegalArgumentException("filters cannot be " + operation);
+		}
+		ConcurrentBloomFilter[] other = ((ConcurrentDynamicBloomFilter) filter).matrix.get().rows;
+		if (other.length != rows.length) {
+			throw new IllegalArgumentException("filters cannot be " + operation);
+		}
+		return other;
+	}
+
+	/**
+	 * An immutable set of rows, the last one being the active row.
+	 */
+	static final class Matrix {
+		/** The rows, never modified once published. */
+		final ConcurrentBloomFilter[] rows;
+
+		/**
+		 * The number of slots reserved in the active row. It keeps growing past
+		 * <code>nr</code> while writers race to append a row.
+		 */
+		final AtomicInteger currentNbRecord;
+
+		Matrix(ConcurrentBloomFilter[] rows, int currentNbRecord) {
+			this.rows = rows;
+			this.currentNbRecord = new AtomicInteger(currentNbRecord);
+		}
+
+		ConcurrentBloomFilter activeRow() {
+			return rows[rows.length - 1];
+		}
+
+		/**
+		 * Waits until the writer holding slot <code>nr</code>, the first one
+		 * past the end of the active row, has published the successor of
+		 * <i>this</i> matrix in <code>current</code>, or has given up.
+		 */
+		void awaitSuccessor(AtomicReference<Matrix> current, int nr) {
+			while (current.get() == this && currentNbRecord.get() > nr) {
+				Thread.onSpinWait();
+			}
+		}
+
+		/**
+		 * Releases slot <code>nr</code> when its writer failed to build the
+		 * next row, so that the next writer to reserve it builds the row
+		 * instead and the waiting writers retry.
+		 */
+		void release(int nr) {
+			currentNbRecord.set(nr);
+		}
+
+		/**
+		 * @return A matrix with <code>row</code> appended, its first slot reserved.
+		 */
+		Matrix addRow(ConcurrentBloomFilter row) {
+			ConcurrentBloomFilter[] tmp = new ConcurrentBloomFilter[rows.length + 1];
+			System.arraycopy(rows, 0, tmp, 0, rows.length);
+			tmp[rows.length] = row;
+			return new Matrix(tmp, 1);
+		}
+
+		/**
+		 * @return A matrix with the oldest row dropped and <code>row</code>
+		 *         appended, its first slot reserved.
+		 */
+		Matrix rotate(ConcurrentBloomFilter row) {
+			ConcurrentBloomFilter[] tmp = new ConcurrentBloomFilter[rows.length];
+			System.arraycopy(rows, 1, tmp, 0, rows.length - 1);
+			tmp[rows.length - 1] = row;
+			return new Matrix(tmp, 1);
+		}
+	}
+
+}
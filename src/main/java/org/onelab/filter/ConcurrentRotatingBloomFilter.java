@@ -0,0 +1,276 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.onelab.filter.ConcurrentDynamicBloomFilter.Matrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implements a <i>rotating Bloom filter</i> that can be shared between
+ * threads without locking.
+ * <p>
+ * It behaves as a {@link RotatingBloomFilter}: rows are appended as they
+ * fill up, and once there are <code>maximumNumberOfBloomFilters</code> rows,
+ * starting a new row drops the oldest one. Each generation of rows is an
+ * immutable {@link Matrix} published through an {@link AtomicReference}, as
+ * in a {@link ConcurrentDynamicBloomFilter}: membership tests read the
+ * current generation once and never wait, and writers reserve a slot in the
+ * active row. The writer reserving the first slot past its end alone builds
+ * and publishes the next generation, the later ones waiting for it.
+ * A reader holding the previous generation may still find keys of the
+ * dropped row until its test returns. A writer whose row was dropped before
+ * its key reached it adds the key again, so that a key is found once
+ * {@link #add(Key)} returns, until rotation drops the row it went to.
+ *
+ * @see org.onelab.filter.Filter The general behavior of a filter
+ * @see org.onelab.filter.RotatingBloomFilter The single-threaded rotating Bloom filter
+ */
+public class ConcurrentRotatingBloomFilter extends Filter {
+	private static final Logger LOG = LoggerFactory.getLogger(ConcurrentRotatingBloomFilter.class);
+	private static final UnsupportedOperationException UNSUPPORTED = new UnsupportedOperationException("Not implemented.");
+
+	protected final AtomicReference<Matrix> filters;
+	protected final int maximumNumberOfKeysPerFilter;
+	protected final int maximumNumberOfBloomFilters;
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds an empty Rotating Bloom filter.
+	 *
+	 * @param vectorSize The number of bits in the vector.
+	 * @param nbHash The number of hash function to consider.
+	 * @param hashType type of the hashing function (see {@link Hash}).
+	 * @param maximumNumberOfKeysPerFilter The threshold for the maximum number of keys to record in a rotating Bloom filter row.
+	 * @param maximumNumberOfBloomFilters The threshold for the maximum number of rows.
+	 */
+	public ConcurrentRotatingBloomFilter(int vectorSize, int nbHash, int hashType,
+			int maximumNumberOfKeysPerFilter, int maximumNumberOfBloomFilters) {
+		this(vectorSize, nbHash, hashType, HashFunction.CHAINED_HASHING,
+				maximumNumberOfKeysPerFilter, maximumNumberOfBloomFilters);
+	}
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds an empty Rotating Bloom filter.
+	 *
+	 * @param vectorSize The number of bits in the vector.
+	 * @param nbHash The number of hash function to consider.
+	 * @param hashType type of the hashing function (see {@link Hash}).
+	 * @param hashScheme scheme used to derive the positions of a key (see {@link HashFunction}).
+	 * @param maximumNumberOfKeysPerFilter The threshold for the maximum number of keys to record in a rotating Bloom filter row.
+	 * @param maximumNumberOfBloomFilters The threshold for the maximum number of rows.
+	 */
+	public ConcurrentRotatingBloomFilter(int vectorSize, int nbHash, int hashType, int hashScheme,
+			int maximumNumberOfKeysPerFilter, int maximumNumberOfBloomFilters) {
+		super(vectorSize, nbHash, hashType, hashScheme);
+
+		this.maximumNumberOfKeysPerFilter = maximumNumberOfKeysPerFilter;
+		this.maximumNumberOfBloomFilters = maximumNumberOfBloomFilters;
+
+		filters = new AtomicReference<Matrix>(new Matrix(new ConcurrentBloomFilter[] { newRow() }, 0));
+	}
+
+	@Override
+	public void add(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key can not be null");
+		}
+
+		add(key, null, null, 0, 0);
+	}
+
+	@Override
+	public void add(byte[] bytes, int offset, int length) {
+		HashFunction.checkSlice(bytes, offset, length);
+		add(null, bytes, null, offset, length);
+	}
+
+	@Override
+	public void add(ByteBuffer buffer, int offset, int length) {
+		HashFunction.checkSlice(buffer, offset, length);
+		add(null, null, buffer, offset, length);
+	}
+
+	/**
+	 * Adds a key, or the slice holding it when <code>key</code> is null, to
+	 * the active row.
+	 */
+	private void add(Key key, byte[] bytes, ByteBuffer buffer, int offset, int length) {
+		while (true) {
+			Matrix m = filters.get();
+			ConcurrentBloomFilter row;
+			int slot = m.currentNbRecord.getAndIncrement();
+			if (slot < maximumNumberOfKeysPerFilter) {
+				row = m.activeRow();
+			} else if (slot > maximumNumberOfKeysPerFilter) {
+				m.awaitSuccessor(filters, maximumNumberOfKeysPerFilter);
+				continue;
+			} else {
+				try {
+					row = newRow();
+				} catch (Throwable e) {
+					m.release(maximumNumberOfKeysPerFilter);
+					throw e;
+				}
+				// only the writer holding the first slot past the end publishes the next generation
+				Matrix next = m.rows.length < maximumNumberOfBloomFilters
+						? m.addRow(row)
+						: m.rotate(row);
+				filters.set(next);
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Published a generation of {} Bloom filters", next.rows.length);
+				}
+			}
+
+			ConcurrentDynamicBloomFilter.addTo(row, key, bytes, buffer, offset, length);
+			if (isCurrent(row)) {
+				return;
+			}
+			// other writers rotated the row out before the key reached it
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if <code>row</code> belongs to the current generation.
+	 */
+	private boolean isCurrent(ConcurrentBloomFilter row) {
+		ConcurrentBloomFilter[] rows = filters.get().rows;
+		for (int i = rows.length - 1; i >= 0; i--) {
+			if (rows[i] == row) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean membershipTest(Key key) {
+		if (key == null) {
+			return false;
+		}
+
+		ConcurrentBloomFilter[] rows = filters.get().rows;
+		for (int i = 0; i < rows.length; i++) {
+			if (rows[i].membershipTest(key)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		HashFunction.checkSlice(bytes, offset, length);
+		ConcurrentBloomFilter[] rows = filters.get().rows;
+		for (int i = 0; i < rows.length; i++) {
+			if (rows[i].membershipTest(bytes, offset, length)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		HashFunction.checkSlice(buffer, offset, length);
+		ConcurrentBloomFilter[] rows = filters.get().rows;
+		for (int i = 0; i < rows.length; i++) {
+			if (rows[i].membershipTest(buffer, offset, length)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return The number of rows in the current generation.
+	 */
+	public int getRowCount() {
+		return filters.get().rows.length;
+	}
+
+	/**
+	 * @return An empty row, built by a single writer per rollover.
+	 */
+	ConcurrentBloomFilter newRow() {
+		return new ConcurrentBloomFilter(vectorSize, nbHash, hashType, hashScheme);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder();
+
+		ConcurrentBloomFilter[] rows = filters.get().rows;
+		for (int i = 0; i < rows.length; i++) {
+			res.append(rows[i]);
+			res.append(RotatingBloomFilter.LINE_SEPARATOR);
+		}
+		return res.toString();
+	}
+
+	// As for RotatingBloomFilter, set operations and cloning are not supported
+
+	@Override
+	public void and(Filter filter) {
+		LOG.error("Unsupported method called.");
+		throw UNSUPPORTED;
+	}
+
+	@Override
+	public void not() {
+		LOG.error("Unsupported method called.");
+		throw UNSUPPORTED;
+	}
+
+	@Override
+	public void or(Filter filter) {
+		LOG.error("Unsupported method called.");
+		throw UNSUPPORTED;
+	}
+
+	@Override
+	public void xor(Filter filter) {
+		LOG.error("Unsupported method called.");
+		throw UNSUPPORTED;
+	}
+
+	@Override
+	public Object clone() {
+		LOG.error("Unsupported method called.");
+		throw UNSUPPORTED;
+	}
+
+}
@@ -0,0 +1,327 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements a <i>counting Bloom filter</i>, as defined by Fan et al. in a ToN
+ * 2000 paper.
+ * <p>
+ * A counting Bloom filter is an improvement to a standard Bloom filter as it
+ * allows dynamic additions and deletions of set membership information. This
+ * is achieved through the use of a counting vector instead of a bit vector.
+ * <p>
+ * Counters are 4 bits wide, packed 16 to a <code>long</code>. A counter
+ * saturates at 15: it is then never incremented nor decremented again, so a
+ * deletion never introduces a false negative. A counting Bloom filter can be
+ * projected down to a {@link BloomFilter} with {@link #toBloomFilter()}.
+ *
+ * @see org.onelab.filter.Filter The general behavior of a filter
+ * @see org.onelab.filter.BloomFilter A Bloom filter
+ *
+ * @see <a href="http://portal.acm.org/citation.cfm?id=343571.343572">
+ * 			Summary cache: a scalable wide-area web cache sharing protocol</a>
+ */
+public class CountingBloomFilter extends Filter {
+	/** Storage for the counting buckets, bucket <code>i</code> being bits <code>4 (i % 16)</code> to <code>4 (i % 16) + 3</code> of word <code>i / 16</code>. */
+	protected long[] buckets;
+
+	/** We are using 4bit buckets, so each bucket can count to 15 */
+	private static final long BUCKET_MAX_VALUE = 15;
+
+	/** The lowest bit of each bucket of a word. */
+	private static final long LOW_BITS = 0x1111111111111111L;
+
+	/** Increments the bucket of each position of a key as soon as it is computed. */
+	private final HashFunction.Probe incrementer = new HashFunction.Probe() {
+		public boolean visit(int position) {
+			int wordNum = position >>> 4;
+			int bucketShift = (position & 0x0f) << 2;
+			if (((buckets[wordNum] >>> bucketShift) & BUCKET_MAX_VALUE) < BUCKET_MAX_VALUE) {
+				buckets[wordNum] += 1L << bucketShift;
+			}
+			return true;
+		}
+	};
+
+	/** Decrements the bucket of each position of a key as soon as it is computed. */
+	private final HashFunction.Probe decrementer = new HashFunction.Probe() {
+		public boolean visit(int position) {
+			int wordNum = position >>> 4;
+			int bucketShift = (position & 0x0f) << 2;
+			long bucketValue = (buckets[wordNum] >>> bucketShift) & BUCKET_MAX_VALUE;
+			if (bucketValue >= 1 && bucketValue < BUCKET_MAX_VALUE) {
+				buckets[wordNum] -= 1L << bucketShift;
+			}
+			return true;
+		}
+	};
+
+	/** Tests the bucket of each position of a key as soon as it is computed. */
+	private final HashFunction.Probe tester = new HashFunction.Probe() {
+		public boolean visit(int position) {
+			return ((buckets[position >>> 4] >>> ((position & 0x0f) << 2)) & BUCKET_MAX_VALUE) != 0;
+		}
+	};
+
+	/**
+	 * Constructor
+	 *
+	 * @param vectorSize  The vector size of <i>this</i> filter.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 */
+	public CountingBloomFilter(int vectorSize, int nbHash, int hashType) {
+		this(vectorSize, nbHash, hashType, HashFunction.CHAINED_HASHING);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param vectorSize  The vector size of <i>this</i> filter.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param hashScheme  scheme used to derive the positions of a key (see {@link HashFunction}).
+	 */
+	public CountingBloomFilter(int vectorSize, int nbHash, int hashType, int hashScheme) {
+		super(vectorSize, nbHash, hashType, hashScheme);
+
+		buckets = new long[buckets2words(this.vectorSize)];
+	}
+
+	/** @return The number of longs holding <code>vectorSize</code> 4-bit buckets. */
+	private static int buckets2words(int vectorSize) {
+		return ((vectorSize - 1) >>> 4) + 1;
+	}
+
+	@Override
+	public void add(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key can not be null");
+		}
+
+		hash.hash(key, incrementer);
+	}
+
+	/**
+	 * Removes a specified key from <i>this</i> counting Bloom filter.
+	 * <p>
+	 * The key must have been added before: deleting a key that was not, but
+	 * tests as a false positive, may introduce false negatives.
+	 *
+	 * @param key  The key to remove.
+	 * @throws IllegalArgumentException if the key does not belong to <i>this</i> filter.
+	 */
+	public void delete(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key may not be null");
+		}
+		if (!membershipTest(key)) {
+			throw new IllegalArgumentException("Key is not a member");
+		}
+
+		hash.hash(key, decrementer);
+	}
+
+	@Override
+	public boolean membershipTest(Key key) {
+		if (key == null) {
+			return false;
+		}
+
+		return hash.hash(key, tester);
+	}
+
+	@Override
+	public void add(byte[] bytes, int offset, int length) {
+		hash.hash(bytes, offset, length, incrementer);
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		return hash.hash(bytes, offset, length, tester);
+	}
+
+	@Override
+	public void add(ByteBuffer buffer, int offset, int length) {
+		hash.hash(buffer, offset, length, incrementer);
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		return hash.hash(buffer, offset, length, tester);
+	}
+
+	/**
+	 * Estimates how many times a key was added to <i>this</i> filter, as the
+	 * smallest of the buckets at its positions.
+	 * <p>
+	 * Buckets are 4-bit counters that saturate at 15, so the estimate is at
+	 * most 15 however many times the key was added. Below that, it is 0 for
+	 * a key that is not in the filter, and otherwise no less than the number
+	 * of times the key was added and not deleted: other keys sharing all of
+	 * its buckets make it an overestimate.
+	 *
+	 * @param key  key to be tested
+	 * @return The estimated count, between 0 and 15.
+	 */
+	public int approximateCount(Key key) {
+		// a probe of this call's own, so that concurrent readers do not share the minimum
+		final int[] min = { (int) BUCKET_MAX_VALUE };
+		hash.hash(key, new HashFunction.Probe() {
+			public boolean visit(int position) {
+				int bucketValue = (int) ((buckets[position >>> 4] >>> ((position & 0x0f) << 2)) & BUCKET_MAX_VALUE);
+				if (bucketValue < min[0]) {
+					min[0] = bucketValue;
+				}
+				// no bucket can lower the count below 0
+				return bucketValue != 0;
+			}
+		});
+		return min[0];
+	}
+
+	/**
+	 * Projects <i>this</i> filter down to a Bloom filter with the same
+	 * parameters, whose bits are the non-zero buckets. The Bloom filter
+	 * answers membership tests as <i>this</i> filter does.
+	 *
+	 * @return The Bloom filter.
+	 */
+	public BloomFilter toBloomFilter() {
+		BloomFilter bf = new BloomFilter(vectorSize, nbHash, hashType, hashScheme);
+		for (int i = 0; i < buckets.length; i++) {
+			long word = buckets[i];
+			// one bit per non-zero bucket, at the lowest bit of the bucket
+			word |= word >>> 1;
+			word |= word >>> 2;
+			word &= LOW_BITS;
+			while (word != 0) {
+				bf.bits.set((i << 4) + (Long.numberOfTrailingZeros(word) >>> 2));
+				word &= word - 1;
+			}
+		}
+		return bf;
+	}
+
+	/**
+	 * Keeps, for each bucket, the smaller of the counts of <i>this</i> filter
+	 * and of the specified filter.
+	 */
+	@Override
+	public void and(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be and-ed");
+		}
+
+		long[] other = ((CountingBloomFilter) filter).buckets;
+		for (int i = 0; i < buckets.length; i++) {
+			long a = buckets[i];
+			long b = other[i];
+			long res = 0;
+			for (int shift = 0; shift < Long.SIZE; shift += 4) {
+				res |= Math.min((a >>> shift) & BUCKET_MAX_VALUE, (b >>> shift) & BUCKET_MAX_VALUE) << shift;
+			}
+			buckets[i] = res;
+		}
+	}
+
+	/**
+	 * Adds, for each bucket, the count of the specified filter to the count of
+	 * <i>this</i> filter, saturating at 15, so that the keys of both filters can
+	 * later be deleted.
+	 */
+	@Override
+	public void or(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be or-ed");
+		}
+
+		long[] other = ((CountingBloomFilter) filter).buckets;
+		for (int i = 0; i < buckets.length; i++) {
+			long a = buckets[i];
+			long b = other[i];
+			long res = 0;
+			for (int shift = 0; shift < Long.SIZE; shift += 4) {
+				res |= Math.min(((a >>> shift) & BUCKET_MAX_VALUE) + ((b >>> shift) & BUCKET_MAX_VALUE), BUCKET_MAX_VALUE) << shift;
+			}
+			buckets[i] = res;
+		}
+	}
+
+	/**
+	 * Not supported, counts have no exclusive or.
+	 */
+	@Override
+	public void xor(Filter filter) {
+		throw new UnsupportedOperationException("xor() is undefined for " + this.getClass().getName());
+	}
+
+	/**
+	 * Not supported, counts have no complement.
+	 */
+	@Override
+	public void not() {
+		throw new UnsupportedOperationException("not() is undefined for " + this.getClass().getName());
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder();
+
+		for (int i = 0; i < vectorSize; i++) {
+			if (i > 0) {
+				res.append(" ");
+			}
+
+			res.append((buckets[i >>> 4] >>> ((i & 0x0f) << 2)) & BUCKET_MAX_VALUE);
+		}
+
+		return res.toString();
+	}
+
+	@Override
+	public Object clone() {
+		CountingBloomFilter cbf = new CountingBloomFilter(vectorSize, nbHash, hashType, hashScheme);
+		cbf.buckets = this.buckets.clone();
+		return cbf;
+	}
+
+	private boolean isCompatible(Filter filter) {
+		if (filter == null) return false;
+		if (filter.getClass() != this.getClass()) return false;
+		if (filter.vectorSize != this.vectorSize) return false;
+		if (filter.nbHash != this.nbHash) return false;
+		if (filter.hashType != this.hashType) return false;
+		if (filter.hashScheme != this.hashScheme) return false;
+
+		return true;
+	}
+
+}
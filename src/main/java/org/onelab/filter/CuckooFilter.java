@@ -0,0 +1,414 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements a <i>cuckoo filter</i>, as defined by Fan et al. in a CoNEXT
+ * 2014 paper.
+ * <p>
+ * A cuckoo filter stores a 16-bit fingerprint of each key in one of two
+ * candidate buckets of 4 slots. The first bucket is derived from the hash of
+ * the key and the second one from the first bucket and the fingerprint, so
+ * that a fingerprint can be moved from one bucket to the other without the
+ * key. When both buckets of a key are full, a random fingerprint is kicked
+ * out to its other bucket, and so on up to {@link #MAX_KICKS} times.
+ * <p>
+ * A bucket is a single <code>long</code>, so a membership test reads at most
+ * two cache lines, and finds a fingerprint in a bucket with a few word
+ * operations. At a load of 95%, a key costs about 17 bits for a false
+ * positive rate of about 0.012%, and keys can be deleted.
+ * <p>
+ * When a key cannot be placed after {@link #MAX_KICKS} moves, the fingerprint
+ * left over is kept aside, so that no key is lost, and the filter is full:
+ * further additions throw an {@link IllegalStateException} until a key is
+ * deleted. The bulk additions inherited from {@link Filter} stop at the first
+ * key that does not fit, the keys before it being added. The logical
+ * operations are not supported.
+ *
+ * @see org.onelab.filter.Filter The general behavior of a filter
+ *
+ * @see <a href="https://www.cs.cmu.edu/~dga/papers/cuckoo-conext2014.pdf">
+ * 			Cuckoo Filter: Practically Better Than Bloom</a>
+ */
+public class CuckooFilter extends Filter {
+	/** The number of fingerprints in a bucket. */
+	public static final int BUCKET_SIZE = 4;
+
+	/** The maximum number of fingerprints moved to make room for a key. */
+	public static final int MAX_KICKS = 500;
+
+	/** The load factor the number of buckets is computed for. */
+	private static final double LOAD_FACTOR = 0.95;
+
+	/** The lowest bit of each slot of a bucket. */
+	private static final long LOW_BITS = 0x0001000100010001L;
+
+	/** The highest bit of each slot of a bucket. */
+	private static final long HIGH_BITS = 0x8000800080008000L;
+
+	/** The buckets, slot <code>j</code> being bits <code>16 j</code> to <code>16 j + 15</code>; an empty slot is 0. */
+	protected final long[] buckets;
+
+	/** The mask of a bucket index, the number of buckets being a power of 2. */
+	protected final int bucketMask;
+
+	/** The number of fingerprints stored. */
+	protected int count;
+
+	/** The fingerprint that could not be placed, 0 if there is none. */
+	protected int victimFingerprint;
+
+	/** One of the buckets of {@link #victimFingerprint}. */
+	protected int victimIndex;
+
+	/** State of the generator choosing the fingerprints to kick out. */
+	private long seed = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity  The number of keys <i>this</i> filter must hold.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 */
+	public CuckooFilter(int capacity, int hashType) {
+		super(bucketCount(capacity), 2, hashType);
+
+		this.buckets = new long[this.vectorSize];
+		this.bucketMask = this.vectorSize - 1;
+	}
+
+	/**
+	 * Copy constructor.
+	 *
+	 * @param other  The filter to copy.
+	 */
+	private CuckooFilter(CuckooFilter other) {
+		super(other.vectorSize, other.nbHash, other.hashType);
+
+		this.buckets = other.buckets.clone();
+		this.bucketMask = other.bucketMask;
+		this.count = other.count;
+		this.victimFingerprint = other.victimFingerprint;
+		this.victimIndex = other.victimIndex;
+		this.seed = other.seed;
+	}
+
+	/**
+	 * @return The smallest power of 2 of buckets holding <code>capacity</code> keys at the target load.
+	 */
+	private static int bucketCount(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be > 0");
+		}
+		long n = (long) Math.ceil(capacity / (BUCKET_SIZE * LOAD_FACTOR));
+		if (n > 1 << 30) {
+			throw new IllegalArgumentException("capacity must be <= " + (long) ((1 << 30) * BUCKET_SIZE * LOAD_FACTOR));
+		}
+		return Math.max(1, Integer.highestOneBit((int) n - 1) << 1);
+	}
+
+	@Override
+	public void add(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key can not be null");
+		}
+
+		addHash(hash64(key));
+	}
+
+	@Override
+	public void add(byte[] bytes, int offset, int length) {
+		HashFunction.checkSlice(bytes, offset, length);
+		addHash(hash.hashFunction.hash64(bytes, offset, length, 0));
+	}
+
+	@Override
+	public void add(ByteBuffer buffer, int offset, int length) {
+		HashFunction.checkSlice(buffer, offset, length);
+		addHash(hash.hashFunction.hash64(buffer, offset, length, 0));
+	}
+
+	/**
+	 * Adds a key given by its 64-bit hash.
+	 */
+	private void addHash(long h) {
+		if (victimFingerprint != 0) {
+			throw new IllegalStateException("filter is full");
+		}
+
+		int fp = fingerprint(h);
+		int i = index(h);
+
+		place(i, fp);
+		count++;
+	}
+
+	/**
+	 * Stores a fingerprint in one of its buckets, kicking other fingerprints
+	 * out if needed. The fingerprint left over after {@link #MAX_KICKS} moves
+	 * is kept aside as the victim.
+	 *
+	 * @param i  One of the buckets of the fingerprint.
+	 * @param fp  The fingerprint.
+	 */
+	private void place(int i, int fp) {
+		if (insert(i, fp) || insert(altIndex(i, fp), fp)) {
+			return;
+		}
+
+		if (nextRandom(2) == 1) {
+			i = altIndex(i, fp);
+		}
+		for (int n = 0; n < MAX_KICKS; n++) {
+			int shift = nextRandom(BUCKET_SIZE) << 4;
+			int kicked = (int) (buckets[i] >>> shift) & 0xffff;
+			buckets[i] = buckets[i] & ~(0xffffL << shift) | (long) fp << shift;
+			fp = kicked;
+			i = altIndex(i, fp);
+			if (insert(i, fp)) {
+				return;
+			}
+		}
+
+		victimFingerprint = fp;
+		victimIndex = i;
+	}
+
+	@Override
+	public boolean membershipTest(Key key) {
+		if (key == null) {
+			return false;
+		}
+
+		return membershipTestHash(hash64(key));
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		HashFunction.checkSlice(bytes, offset, length);
+		return membershipTestHash(hash.hashFunction.hash64(bytes, offset, length, 0));
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		HashFunction.checkSlice(buffer, offset, length);
+		return membershipTestHash(hash.hashFunction.hash64(buffer, offset, length, 0));
+	}
+
+	/**
+	 * Determines whether a key given by its 64-bit hash belongs to <i>this</i> filter.
+	 */
+	private boolean membershipTestHash(long h) {
+		int fp = fingerprint(h);
+		int i1 = index(h);
+		int i2 = altIndex(i1, fp);
+
+		return contains(buckets[i1], fp) || contains(buckets[i2], fp)
+				|| (victimFingerprint == fp && (victimIndex == i1 || victimIndex == i2));
+	}
+
+	/**
+	 * Removes a specified key from <i>this</i> cuckoo filter.
+	 * <p>
+	 * The key must have been added before: deleting a key that was not, but
+	 * tests as a false positive, removes the fingerprint of another key.
+	 *
+	 * @param key  The key to remove.
+	 * @throws IllegalArgumentException if the key does not belong to <i>this</i> filter.
+	 */
+	public void delete(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key may not be null");
+		}
+
+		long h = hash64(key);
+		int fp = fingerprint(h);
+		int i1 = index(h);
+		int i2 = altIndex(i1, fp);
+
+		if (victimFingerprint == fp && (victimIndex == i1 || victimIndex == i2)) {
+			victimFingerprint = 0;
+		} else if (!remove(i1, fp) && !remove(i2, fp)) {
+			throw new IllegalArgumentException("Key is not a member");
+		}
+		count--;
+
+		// a slot is now free, try to move the fingerprint kept aside to it
+		if (victimFingerprint != 0) {
+			int fp2 = victimFingerprint;
+			victimFingerprint = 0;
+			place(victimIndex, fp2);
+		}
+	}
+
+	/**
+	 * @return The number of keys in <i>this</i> filter.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return <code>true</code> if a key could not be placed, in which case no
+	 *         other key can be added until one is deleted.
+	 */
+	public boolean isFull() {
+		return victimFingerprint != 0;
+	}
+
+	/**
+	 * Stores a fingerprint in a free slot of a bucket.
+	 *
+	 * @return <code>false</code> if the bucket is full.
+	 */
+	private boolean insert(int i, int fp) {
+		long bucket = buckets[i];
+		long empty = (bucket - LOW_BITS) & ~bucket & HIGH_BITS;
+		if (empty == 0) {
+			return false;
+		}
+		int shift = Long.numberOfTrailingZeros(empty) & ~15;
+		buckets[i] = bucket | (long) fp << shift;
+		return true;
+	}
+
+	/**
+	 * Clears one slot of a bucket holding a fingerprint.
+	 *
+	 * @return <code>false</code> if the bucket does not hold the fingerprint.
+	 */
+	private boolean remove(int i, int fp) {
+		long bucket = buckets[i];
+		long x = bucket ^ (fp * LOW_BITS);
+		long found = (x - LOW_BITS) & ~x & HIGH_BITS;
+		if (found == 0) {
+			return false;
+		}
+		int shift = Long.numberOfTrailingZeros(found) & ~15;
+		buckets[i] = bucket & ~(0xffffL << shift);
+		return true;
+	}
+
+	/**
+	 * @return <code>true</code> if one of the slots of <code>bucket</code> holds <code>fp</code>.
+	 */
+	private static boolean contains(long bucket, int fp) {
+		long x = bucket ^ (fp * LOW_BITS);
+		return ((x - LOW_BITS) & ~x & HIGH_BITS) != 0;
+	}
+
+	private long hash64(Key key) {
+		byte[] b = key.getBytes();
+		if (b == null || b.length == 0) {
+			throw new IllegalArgumentException("key length must be > 0");
+		}
+		return hash.hashFunction.hash64(b, b.length, 0);
+	}
+
+	/** @return The non-zero 16-bit fingerprint of a hash. */
+	private static int fingerprint(long h) {
+		int fp = (int) h & 0xffff;
+		return fp == 0 ? 1 : fp;
+	}
+
+	/** @return The first bucket of a hash. */
+	private int index(long h) {
+		return (int) (h >>> 32) & bucketMask;
+	}
+
+	/** @return The other bucket of a fingerprint stored in bucket <code>i</code>. */
+	private int altIndex(int i, int fp) {
+		return (i ^ (fp * 0x5bd1e995)) & bucketMask;
+	}
+
+	/** @return A pseudo-random number in <code>[0, n)</code>, <code>n</code> being a power of 2. */
+	private int nextRandom(int n) {
+		seed ^= seed << 13;
+		seed ^= seed >>> 7;
+		seed ^= seed << 17;
+		return (int) (seed >>> 32) & (n - 1);
+	}
+
+	@Override
+	public void and(Filter filter) {
+		throw new UnsupportedOperationException("and() is undefined for " + this.getClass().getName());
+	}
+
+	@Override
+	public void or(Filter filter) {
+		throw new UnsupportedOperationException("or() is undefined for " + this.getClass().getName());
+	}
+
+	@Override
+	public void xor(Filter filter) {
+		throw new UnsupportedOperationException("xor() is undefined for " + this.getClass().getName());
+	}
+
+	@Override
+	public void not() {
+		throw new UnsupportedOperationException("not() is undefined for " + this.getClass().getName());
+	}
+
+	/**
+	 * Lists the fingerprints of each non-empty bucket.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder("{");
+		for (int i = 0; i < buckets.length; i++) {
+			if (buckets[i] == 0) {
+				continue;
+			}
+			if (res.length() > 1) {
+				res.append(", ");
+			}
+			res.append(i).append("=[");
+			boolean first = true;
+			for (int shift = 0; shift < Long.SIZE; shift += 16) {
+				int fp = (int) (buckets[i] >>> shift) & 0xffff;
+				if (fp != 0) {
+					if (!first) {
+						res.append(", ");
+					}
+					res.append(fp);
+					first = false;
+				}
+			}
+			res.append(']');
+		}
+		return res.append('}').toString();
+	}
+
+	@Override
+	public Object clone() {
+		return new CuckooFilter(this);
+	}
+
+}
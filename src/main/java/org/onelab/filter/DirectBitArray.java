@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A fixed-size vector of bits stored outside of the Java heap, in direct
+ * {@link ByteBuffer}s.
+ * <p>
+ * The bits are split in pages of at most {@link #PAGE_SIZE} bytes, so the
+ * vector is not limited by the <code>int</code> capacity of a buffer. The
+ * garbage collector never scans the pages; their memory is released by
+ * {@link #close()}, after which <i>this</i> vector can no longer be used.
+ * <p>
+ * Like {@link LongBitArray}, <i>this</i> vector is not thread-safe.
+ *
+ * @see org.onelab.filter.OffHeapBloomFilter A Bloom filter using this bit vector
+ */
+public class DirectBitArray extends BitArray implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DirectBitArray.class);
+
+	/** Log2 of the number of 64-bit words in a page. */
+	protected static final int PAGE_SHIFT = 27;
+
+	/** The number of bytes in a full page (1 GB). */
+	public static final int PAGE_SIZE = 1 << (PAGE_SHIFT + 3);
+
+	private static final long PAGE_MASK = (1L << PAGE_SHIFT) - 1;
+
+	/** The pages holding the words, <code>null</code> once <i>this</i> vector is closed. */
+	protected ByteBuffer[] pages;
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Allocates zeroed direct memory for <code>bitSize</code> bits, in the
+	 * native byte order.
+	 *
+	 * @param bitSize  The number of bits in the vector.
+	 */
+	public DirectBitArray(long bitSize) {
+		super(bitSize);
+		long bytes = wordCount() << 3;
+		this.pages = new ByteBuffer[pageCount(bytes)];
+		for (int i = 0; i < pages.length; i++) {
+			long size = Math.min(PAGE_SIZE, bytes - ((long) i * PAGE_SIZE));
+			pages[i] = ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder());
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Wraps existing buffers, which must be direct, hold consecutive pages of
+	 * {@link #PAGE_SIZE} bytes (except for the last one) starting at position 0
+	 * and have their byte order already set.
+	 *
+	 * @param bitSize  The number of bits in the vector.
+	 * @param pages  The buffers holding the words.
+	 */
+	protected DirectBitArray(long bitSize, ByteBuffer[] pages) {
+		super(bitSize);
+		if (pages == null || pages.length != pageCount(wordCount() << 3)) {
+			throw new IllegalArgumentException("pages do not match bitSize");
+		}
+		this.pages = pages;
+	}
+
+	/**
+	 * @param bytes  A number of bytes.
+	 * @return The number of pages needed to hold them.
+	 */
+	protected static int pageCount(long bytes) {
+		return (int) ((bytes + PAGE_SIZE - 1) / PAGE_SIZE);
+	}
+
+	@Override
+	public boolean get(long index) {
+		long wordIndex = index >>> 6;
+		return (page(wordIndex).getLong((int) (wordIndex & PAGE_MASK) << 3) & (1L << index)) != 0;
+	}
+
+	@Override
+	public void set(long index) {
+		long wordIndex = index >>> 6;
+		ByteBuffer page = page(wordIndex);
+		int offset = (int) (wordIndex & PAGE_MASK) << 3;
+		page.putLong(offset, page.getLong(offset) | (1L << index));
+	}
+
+	@Override
+	public long getWord(long wordIndex) {
+		return page(wordIndex).getLong((int) (wordIndex & PAGE_MASK) << 3);
+	}
+
+	@Override
+	public void setWord(long wordIndex, long word) {
+		page(wordIndex).putLong((int) (wordIndex & PAGE_MASK) << 3, word);
+	}
+
+	/** @return <code>true</code> once <i>this</i> vector has been closed. */
+	public boolean isClosed() {
+		return pages == null;
+	}
+
+	/**
+	 * Releases the memory held by <i>this</i> vector.
+	 * <p>
+	 * Closing a vector twice has no effect.
+	 */
+	public void close() {
+		ByteBuffer[] p = pages;
+		if (p == null) {
+			return;
+		}
+		pages = null;
+		for (int i = 0; i < p.length; i++) {
+			free(p[i]);
+		}
+	}
+
+	private ByteBuffer page(long wordIndex) {
+		ByteBuffer[] p = pages;
+		if (p == null) {
+			throw new IllegalStateException("bit vector is closed");
+		}
+		return p[(int) (wordIndex >>> PAGE_SHIFT)];
+	}
+
+	/**
+	 * Releases the memory of a direct buffer without waiting for it to be
+	 * garbage collected.
+	 * <p>
+	 * There is no public API for this before Java 9's
+	 * <code>sun.misc.Unsafe.invokeCleaner</code>, so the buffer's cleaner is
+	 * looked up reflectively. If that fails the memory is released when the
+	 * buffer is collected.
+	 *
+	 * @param buffer  The buffer to release, which must not be used afterwards.
+	 */
+	protected static void free(ByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect()) {
+			return;
+		}
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner;
+			try {
+				invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			} catch (NoSuchMethodException e) {
+				invokeCleaner = null;
+			}
+			if (invokeCleaner != null) { // Java 9 and later
+				Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			} else { // Java 8 and earlier
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		} catch (Exception e) {
+			LOG.warn("Unable to release direct buffer, leaving it to the garbage collector: {}", e.toString());
+		}
+	}
+
+}
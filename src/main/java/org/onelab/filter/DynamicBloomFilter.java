@@ -47,6 +47,9 @@
  */
 package org.onelab.filter;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import org.apache.hadoop.hbase.util.Hash;
 
 /**
@@ -96,10 +99,29 @@ public class DynamicBloomFilter extends Filter {
 	protected int currentNbRecord;
 
 	/**
-	 * The matrix of Bloom filter.
+	 * The matrix of Bloom filter. Only the first {@link #nbRows} elements are
+	 * rows, the array growing by doubling so that appending a row is amortized
+	 * constant time.
 	 */
 	protected BloomFilter[] matrix;
-	
+
+	/**
+	 * The number of rows in the matrix.
+	 */
+	protected int nbRows;
+
+	/**
+	 * The positions of the key being tested, computed once for all the rows.
+	 * Each thread has its own array, so that concurrent lookups do not
+	 * overwrite each other's positions and none allocates.
+	 */
+	private final ThreadLocal<int[]> positions = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[nbHash];
+		}
+	};
+
 	protected static final String LINE_SEPARATOR = new String(new byte[]{Character.LINE_SEPARATOR});
 
 	/**
@@ -113,13 +135,29 @@ public class DynamicBloomFilter extends Filter {
 	 * @param nr  The threshold for the maximum number of keys to record in a dynamic Bloom filter row.
 	 */
 	public DynamicBloomFilter(int vectorSize, int nbHash, int hashType, int nr) {
-		super(vectorSize, nbHash, hashType);
+		this(vectorSize, nbHash, hashType, HashFunction.CHAINED_HASHING, nr);
+	}
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds an empty Dynamic Bloom filter.
+	 * 
+	 * @param vectorSize  The number of bits in the vector.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param hashScheme  scheme used to derive the positions of a key (see {@link HashFunction}).
+	 * @param nr  The threshold for the maximum number of keys to record in a dynamic Bloom filter row.
+	 */
+	public DynamicBloomFilter(int vectorSize, int nbHash, int hashType, int hashScheme, int nr) {
+		super(vectorSize, nbHash, hashType, hashScheme);
 
 		this.nr = nr;
 		this.currentNbRecord = 0;
 
 		matrix = new BloomFilter[1];
-		matrix[0] = new BloomFilter(this.vectorSize, this.nbHash, this.hashType);
+		matrix[0] = new BloomFilter(this.vectorSize, this.nbHash, this.hashType, this.hashScheme);
+		nbRows = 1;
 	}
 
 	@Override
@@ -128,15 +166,19 @@ public class DynamicBloomFilter extends Filter {
 			throw new IllegalArgumentException("Key can not be null");
 		}
 
-		BloomFilter bf = getActiveStandardBF();
+		nextRow().add(key);
 
-		if (bf == null) {
-			addRow();
-			bf = matrix[matrix.length - 1];
-			currentNbRecord = 0;
-		}
+		currentNbRecord++;
+	}
 
-		bf.add(key);
+	/**
+	 * Records a key given by its positions in the active row, adding a row
+	 * when the active one is full.
+	 * 
+	 * @param positions  The positions of the key, as computed by {@link HashFunction#hash(Key, int[])}.
+	 */
+	void add(int[] positions) {
+		nextRow().add(positions);
 
 		currentNbRecord++;
 	}
@@ -148,7 +190,7 @@ public class DynamicBloomFilter extends Filter {
 		}
 
 		DynamicBloomFilter dbf = (DynamicBloomFilter) filter;
-		for (int i = 0; i < matrix.length; i++) {
+		for (int i = 0; i < nbRows; i++) {
 			matrix[i].and(dbf.matrix[i]);
 		}
 	}
@@ -159,8 +201,72 @@ public class DynamicBloomFilter extends Filter {
 			return false;
 		}
 
-		for (int i = 0; i < matrix.length; i++) {
-			if (matrix[i].membershipTest(key)) {
+		if (nbRows == 1) {
+			// a single row tests each position as soon as it is computed
+			return matrix[0].membershipTest(key);
+		}
+
+		int[] positions = this.positions.get();
+		hash.hash(key, positions);
+		return membershipTest(positions);
+	}
+
+	@Override
+	public void add(byte[] bytes, int offset, int length) {
+		HashFunction.checkSlice(bytes, offset, length);
+		nextRow().add(bytes, offset, length);
+
+		currentNbRecord++;
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		if (nbRows == 1) {
+			return matrix[0].membershipTest(bytes, offset, length);
+		}
+
+		int[] positions = this.positions.get();
+		hash.hash(bytes, offset, length, positions);
+		return membershipTest(positions);
+	}
+
+	@Override
+	public void add(ByteBuffer buffer, int offset, int length) {
+		HashFunction.checkSlice(buffer, offset, length);
+		nextRow().add(buffer, offset, length);
+
+		currentNbRecord++;
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		if (nbRows == 1) {
+			return matrix[0].membershipTest(buffer, offset, length);
+		}
+
+		int[] positions = this.positions.get();
+		hash.hash(buffer, offset, length, positions);
+		return membershipTest(positions);
+	}
+
+	/**
+	 * Determines whether a key given by its positions belongs to one of the
+	 * rows.
+	 * 
+	 * @param positions  The positions of the key, as computed by {@link HashFunction#hash(Key, int[])}.
+	 * @return boolean  True if the key belongs to <i>this</i> filter. False otherwise.
+	 */
+	boolean membershipTest(int[] positions) {
+		for (int i = 0; i < nbRows; i++) {
+			if (matrix[i].membershipTest(positions)) {
 				return true;
 			}
 		}
@@ -170,7 +276,7 @@ public class DynamicBloomFilter extends Filter {
 
 	@Override
 	public void not() {
-		for (int i = 0; i < matrix.length; i++) {
+		for (int i = 0; i < nbRows; i++) {
 			matrix[i].not();
 		}
 	}
@@ -182,7 +288,7 @@ public class DynamicBloomFilter extends Filter {
 		}
 
 		DynamicBloomFilter dbf = (DynamicBloomFilter) filter;
-		for (int i = 0; i < matrix.length; i++) {
+		for (int i = 0; i < nbRows; i++) {
 			matrix[i].or(dbf.matrix[i]);
 		}
 	}
@@ -194,7 +300,7 @@ public class DynamicBloomFilter extends Filter {
 		}
 
 		DynamicBloomFilter dbf = (DynamicBloomFilter) filter;
-		for (int i = 0; i < matrix.length; i++) {
+		for (int i = 0; i < nbRows; i++) {
 			matrix[i].xor(dbf.matrix[i]);
 		}
 	}
@@ -203,7 +309,7 @@ public class DynamicBloomFilter extends Filter {
 	public String toString() {
 		StringBuilder res = new StringBuilder();
 
-		for (int i = 0; i < matrix.length; i++) {
+		for (int i = 0; i < nbRows; i++) {
 			res.append(matrix[i]);
 			res.append(LINE_SEPARATOR);
 		}
@@ -212,28 +318,49 @@ public class DynamicBloomFilter extends Filter {
 
 	@Override
 	public Object clone() {
-		DynamicBloomFilter dbf = new DynamicBloomFilter(vectorSize, nbHash, hashType, nr);
+		DynamicBloomFilter dbf = new DynamicBloomFilter(vectorSize, nbHash, hashType, hashScheme, nr);
 		dbf.currentNbRecord = this.currentNbRecord;
 		dbf.matrix = new BloomFilter[this.matrix.length];
-		for (int i = 0; i < this.matrix.length; i++) {
+		dbf.nbRows = this.nbRows;
+		for (int i = 0; i < this.nbRows; i++) {
 			dbf.matrix[i] = (BloomFilter) this.matrix[i].clone();
 		}
 		return dbf;
 	}
 
+	/**
+	 * @return The row receiving the next key, after adding a row if the active one is full.
+	 */
+	private BloomFilter nextRow() {
+		BloomFilter bf = getActiveStandardBF();
+
+		if (bf == null) {
+			addRow();
+			bf = matrix[nbRows - 1];
+			currentNbRecord = 0;
+		}
+		return bf;
+	}
+
 	/**
 	 * Adds a new row to <i>this</i> dynamic Bloom filter.
+	 * <p>
+	 * Existing rows are kept as is, only the array holding them is doubled
+	 * when it is full.
 	 */
 	private void addRow() {
-		BloomFilter[] tmp = new BloomFilter[matrix.length + 1];
-
-		for (int i = 0; i < matrix.length; i++) {
-			tmp[i] = (BloomFilter) matrix[i].clone();
+		if (nbRows == matrix.length) {
+			matrix = Arrays.copyOf(matrix, 2 * nbRows);
 		}
 
-		tmp[tmp.length - 1] = new BloomFilter(vectorSize, nbHash, hashType);
+		matrix[nbRows++] = new BloomFilter(vectorSize, nbHash, hashType, hashScheme);
+	}
 
-		matrix = tmp;
+	/**
+	 * @return The number of rows in <i>this</i> dynamic Bloom filter.
+	 */
+	public int getRowCount() {
+		return nbRows;
 	}
 
 	/**
@@ -246,7 +373,7 @@ public class DynamicBloomFilter extends Filter {
 			return null;
 		}
 
-		return matrix[matrix.length - 1];
+		return matrix[nbRows - 1];
 	}
 
 	private boolean isCompatible(Filter filter) {
@@ -255,7 +382,8 @@ public class DynamicBloomFilter extends Filter {
 		if (filter.vectorSize != this.vectorSize) return false;
 		if (filter.nbHash != this.nbHash) return false;
 		if (filter.hashType != this.hashType) return false;
-		if (((DynamicBloomFilter)filter).matrix.length != this.matrix.length) return false;
+		if (filter.hashScheme != this.hashScheme) return false;
+		if (((DynamicBloomFilter)filter).nbRows != this.nbRows) return false;
 		if (((DynamicBloomFilter)filter).nr != this.nr) return false;
 
 		return true;
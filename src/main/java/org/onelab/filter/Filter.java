@@ -49,6 +49,8 @@
  */
 package org.onelab.filter;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -87,6 +89,9 @@ public abstract class Filter {
 	/** Type of hashing function to use. */
 	protected int hashType;
 
+	/** Scheme used to derive the positions of a key (see {@link HashFunction}). */
+	protected int hashScheme;
+
 	/**
 	 * Constructor.
 	 * 
@@ -95,10 +100,40 @@ public abstract class Filter {
 	 * @param hashType  type of the hashing function (see {@link Hash}).
 	 */
 	protected Filter(int vectorSize, int nbHash, int hashType) {
+		this(vectorSize, nbHash, hashType, HashFunction.CHAINED_HASHING);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param vectorSize  The vector size of <i>this</i> filter.
+	 * @param nbHash  The number of hash functions to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param hashScheme  scheme used to derive the positions of a key (see {@link HashFunction}).
+	 */
+	protected Filter(int vectorSize, int nbHash, int hashType, int hashScheme) {
 		this.vectorSize = vectorSize;
 		this.nbHash = nbHash;
 		this.hashType = hashType;
-		this.hash = new HashFunction(this.vectorSize, this.nbHash, this.hashType);
+		this.hashScheme = hashScheme;
+		this.hash = new HashFunction(this.vectorSize, this.nbHash, this.hashType, this.hashScheme);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param vectorSize  The vector size of <i>this</i> filter.
+	 * @param nbHash  The number of hash functions to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param hashScheme  scheme used to derive the positions of a key (see {@link HashFunction}).
+	 * @param hash  The hash function, null for a filter that maps keys on its own.
+	 */
+	protected Filter(int vectorSize, int nbHash, int hashType, int hashScheme, HashFunction hash) {
+		this.vectorSize = vectorSize;
+		this.nbHash = nbHash;
+		this.hashType = hashType;
+		this.hashScheme = hashScheme;
+		this.hash = hash;
 	}
 
 	/**
@@ -116,6 +151,92 @@ public abstract class Filter {
 	 */
 	public abstract boolean membershipTest(Key key);
 
+	/**
+	 * Adds the key held by a slice of a byte array to <i>this</i> filter, as
+	 * {@link #add(Key)} adds a key holding a copy of the slice.
+	 * <p>
+	 * This implementation copies the slice into a {@link Key}. Filters hashing
+	 * keys in a single pass override it to read the slice in place.
+	 * 
+	 * @param bytes  The array holding the key.
+	 * @param offset  The index of the first byte of the key.
+	 * @param length  The length of the key.
+	 */
+	public void add(byte[] bytes, int offset, int length) {
+		HashFunction.checkSlice(bytes, offset, length);
+		add(new Key(Arrays.copyOfRange(bytes, offset, offset + length)));
+	}
+
+	/**
+	 * Determines whether the key held by a slice of a byte array belongs to
+	 * <i>this</i> filter, as {@link #membershipTest(Key)} does for a key
+	 * holding a copy of the slice.
+	 * <p>
+	 * This implementation copies the slice into a {@link Key}. Filters hashing
+	 * keys in a single pass override it to read the slice in place.
+	 * 
+	 * @param bytes  The array holding the key.
+	 * @param offset  The index of the first byte of the key.
+	 * @param length  The length of the key.
+	 * @return boolean  True if the key belongs to <i>this</i> filter. False otherwise.
+	 */
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+		HashFunction.checkSlice(bytes, offset, length);
+		return membershipTest(new Key(Arrays.copyOfRange(bytes, offset, offset + length)));
+	}
+
+	/**
+	 * Adds the key held by a slice of a buffer, heap or direct, to
+	 * <i>this</i> filter, as {@link #add(Key)} adds a key holding a copy of
+	 * the slice. The slice is given by absolute indexes below the limit of the
+	 * buffer, whose position is neither used nor changed.
+	 * <p>
+	 * This implementation copies the slice into a {@link Key}. Filters hashing
+	 * keys in a single pass override it to read the slice in place.
+	 * 
+	 * @param buffer  The buffer holding the key.
+	 * @param offset  The index of the first byte of the key.
+	 * @param length  The length of the key.
+	 */
+	public void add(ByteBuffer buffer, int offset, int length) {
+		HashFunction.checkSlice(buffer, offset, length);
+		add(new Key(copy(buffer, offset, length)));
+	}
+
+	/**
+	 * Determines whether the key held by a slice of a buffer, heap or direct,
+	 * belongs to <i>this</i> filter, as {@link #membershipTest(Key)} does for
+	 * a key holding a copy of the slice. The slice is given by absolute
+	 * indexes below the limit of the buffer, whose position is neither used
+	 * nor changed.
+	 * <p>
+	 * This implementation copies the slice into a {@link Key}. Filters hashing
+	 * keys in a single pass override it to read the slice in place.
+	 * 
+	 * @param buffer  The buffer holding the key.
+	 * @param offset  The index of the first byte of the key.
+	 * @param length  The length of the key.
+	 * @return boolean  True if the key belongs to <i>this</i> filter. False otherwise.
+	 */
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+		HashFunction.checkSlice(buffer, offset, length);
+		return membershipTest(new Key(copy(buffer, offset, length)));
+	}
+
+	private static byte[] copy(ByteBuffer buffer, int offset, int length) {
+		byte[] bytes = new byte[length];
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(offset);
+		slice.get(bytes);
+		return bytes;
+	}
+
 	/**
 	 * Peforms a logical AND between <i>this</i> filter and a specified filter.
 	 * <p>
@@ -49,6 +49,8 @@
  */
 package org.onelab.filter;
 
+import java.nio.ByteBuffer;
+
 import org.apache.hadoop.hbase.util.Hash;
 
 /**
@@ -66,6 +68,25 @@ import org.apache.hadoop.hbase.util.Hash;
  * @see <a href="http://www.itl.nist.gov/fipspubs/fip180-1.htm">SHA-1 algorithm</a>
  */
 public final class HashFunction {
+	/**
+	 * Hashing scheme where each value is a full pass of the hash over the key,
+	 * seeded with the previous value. This is the original scheme and the
+	 * default, kept so that existing filters retain their bit layout.
+	 */
+	public static final int CHAINED_HASHING = 0;
+
+	/**
+	 * Hashing scheme where the key is hashed once into two 32-bit values
+	 * <code>h1</code> and <code>h2</code>, and the <code>i</code>-th value is
+	 * derived as <code>h1 + i * h2</code> (Kirsch and Mitzenmacher).
+	 * A zero <code>h2</code>, which would give every value of the key the
+	 * value of <code>h1</code>, is replaced by a fixed odd constant.
+	 * 
+	 * @see <a href="http://www.eecs.harvard.edu/~michaelm/postscripts/rsa2008.pdf">
+	 * 			Less Hashing, Same Performance: Building a Better Bloom Filter</a>
+	 */
+	public static final int DOUBLE_HASHING = 1;
+
 	/** The number of hashed values. */
 	protected final int nbHash;
 
@@ -75,17 +96,36 @@ public final class HashFunction {
 	/** Hashing algorithm to use. */
 	protected final Hash hashFunction;
 
+	/** Hashing scheme used to derive the values (see {@link #CHAINED_HASHING}). */
+	protected final int hashScheme;
+
 	/**
 	 * Constructor.
 	 * <p>
 	 * Builds a hash function that must obey to a given maximum number of
-	 * returned values and a highest value.
+	 * returned values and a highest value, using the chained hashing scheme.
 	 * 
 	 * @param maxValue  The maximum highest returned value.
 	 * @param nbHash  The number of resulting hashed values.
 	 * @param hashType  type of the hashing function (see {@link Hash}).
 	 */
 	public HashFunction(int maxValue, int nbHash, int hashType) {
+		this(maxValue, nbHash, hashType, CHAINED_HASHING);
+	}
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds a hash function that must obey to a given maximum number of
+	 * returned values and a highest value.
+	 * 
+	 * @param maxValue  The maximum highest returned value.
+	 * @param nbHash  The number of resulting hashed values.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param hashScheme  scheme used to derive the values (see {@link #CHAINED_HASHING}
+	 *                    and {@link #DOUBLE_HASHING}).
+	 */
+	public HashFunction(int maxValue, int nbHash, int hashType, int hashScheme) {
 		if (maxValue <= 0) {
 			throw new IllegalArgumentException("maxValue must be > 0");
 		}
@@ -94,8 +134,13 @@ public final class HashFunction {
 			throw new IllegalArgumentException("nbHash must be > 0");
 		}
 
+		if (hashScheme != CHAINED_HASHING && hashScheme != DOUBLE_HASHING) {
+			throw new IllegalArgumentException("hashScheme must be known");
+		}
+
 		this.maxValue = maxValue;
 		this.nbHash = nbHash;
+		this.hashScheme = hashScheme;
 		this.hashFunction = Hash.getInstance(hashType);
 		if (this.hashFunction == null)
 			throw new IllegalArgumentException("hashType must be known");
@@ -114,6 +159,210 @@ public final class HashFunction {
 	 * @return The array of hashed values.
 	 */
 	public int[] hash(Key k) {
+		int[] result = new int[nbHash];
+		hash(k, result);
+		return result;
+	}
+
+	/**
+	 * Hashes a specified key into several integers, without allocating.
+	 * <p>
+	 * The first <code>nbHash</code> elements of <code>result</code> are
+	 * overwritten, so the same array can be reused between calls.
+	 * 
+	 * @param k  The specified key.
+	 * @param result  The array receiving the hashed values.
+	 */
+	public void hash(Key k, int[] result) {
+		byte[] b = getBytes(k);
+		hash(b, null, 0, b.length, result);
+	}
+
+	/**
+	 * Hashes the key held by a slice of a byte array into several integers,
+	 * as {@link #hash(Key, int[])} hashes a key holding a copy of the slice.
+	 * 
+	 * @param bytes  The array holding the key.
+	 * @param offset  The index of the first byte of the key.
+	 * @param length  The length of the key.
+	 * @param result  The array receiving the hashed values.
+	 */
+	void hash(byte[] bytes, int offset, int length, int[] result) {
+		checkSlice(bytes, offset, length);
+		hash(bytes, null, offset, length, result);
+	}
+
+	/**
+	 * Hashes the key held by a slice of a buffer, at absolute indexes, into
+	 * several integers, as {@link #hash(Key, int[])} hashes a key holding a
+	 * copy of the slice.
+	 * 
+	 * @param buffer  The buffer holding the key.
+	 * @param offset  The index of the first byte of the key.
+	 * @param length  The length of the key.
+	 * @param result  The array receiving the hashed values.
+	 */
+	void hash(ByteBuffer buffer, int offset, int length, int[] result) {
+		checkSlice(buffer, offset, length);
+		if (buffer.hasArray()) {
+			hash(buffer.array(), null, buffer.arrayOffset() + offset, length, result);
+		} else {
+			hash(null, buffer, offset, length, result);
+		}
+	}
+
+	/**
+	 * Hashes the bytes of <code>bytes</code>, or of <code>buffer</code> if
+	 * <code>bytes</code> is null, from <code>offset</code> into
+	 * <code>result</code>.
+	 */
+	private void hash(byte[] bytes, ByteBuffer buffer, int offset, int length, int[] result) {
+		if (result == null || result.length < nbHash) {
+			throw new IllegalArgumentException("result must hold at least nbHash values");
+		}
+		if (hashScheme == DOUBLE_HASHING) {
+			long h = bytes != null
+					? hashFunction.hash64(bytes, offset, length, 0)
+					: hashFunction.hash64(buffer, offset, length, 0);
+			int h1 = (int) (h >>> 32);
+			int h2 = secondHash(h);
+			for (int i = 0; i < nbHash; i++) {
+				int combined = h1 + i * h2;
+				result[i] = (combined < 0 ? ~combined : combined) % maxValue;
+			}
+		} else {
+			for (int i = 0, initval = 0; i < nbHash; i++) {
+				int h = bytes != null
+						? hashFunction.hash(bytes, offset, length, initval)
+						: hashFunction.hash(buffer, offset, length, initval);
+				initval = result[i] = Math.abs(h % maxValue);
+			}
+		}
+	}
+
+	/**
+	 * Hashes a specified key, handing each value to <code>probe</code> as soon
+	 * as it is computed.
+	 * <p>
+	 * Hashing stops at the first value the probe rejects, so a membership test
+	 * does not pay for the values following the first unset position.
+	 * 
+	 * @param k  The specified key.
+	 * @param probe  The probe receiving the hashed values.
+	 * 
+	 * @return <code>true</code> if the probe accepted every value.
+	 */
+	boolean hash(Key k, Probe probe) {
+		byte[] b = getBytes(k);
+		return hash(b, null, 0, b.length, probe);
+	}
+
+	/**
+	 * Hashes the key held by a slice of a byte array, as
+	 * {@link #hash(Key, Probe)} hashes a key holding a copy of the slice.
+	 * 
+	 * @param bytes  The array holding the key.
+	 * @param offset  The index of the first byte of the key.
+	 * @param length  The length of the key.
+	 * @param probe  The probe receiving the hashed values.
+	 * 
+	 * @return <code>true</code> if the probe accepted every value.
+	 */
+	boolean hash(byte[] bytes, int offset, int length, Probe probe) {
+		checkSlice(bytes, offset, length);
+		return hash(bytes, null, offset, length, probe);
+	}
+
+	/**
+	 * Hashes the key held by a slice of a buffer, at absolute indexes, as
+	 * {@link #hash(Key, Probe)} hashes a key holding a copy of the slice.
+	 * 
+	 * @param buffer  The buffer holding the key.
+	 * @param offset  The index of the first byte of the key.
+	 * @param length  The length of the key.
+	 * @param probe  The probe receiving the hashed values.
+	 * 
+	 * @return <code>true</code> if the probe accepted every value.
+	 */
+	boolean hash(ByteBuffer buffer, int offset, int length, Probe probe) {
+		checkSlice(buffer, offset, length);
+		if (buffer.hasArray()) {
+			return hash(buffer.array(), null, buffer.arrayOffset() + offset, length, probe);
+		}
+		return hash(null, buffer, offset, length, probe);
+	}
+
+	/**
+	 * Hashes the bytes of <code>bytes</code>, or of <code>buffer</code> if
+	 * <code>bytes</code> is null, from <code>offset</code>.
+	 */
+	private boolean hash(byte[] bytes, ByteBuffer buffer, int offset, int length, Probe probe) {
+		if (hashScheme == DOUBLE_HASHING) {
+			long h = bytes != null
+					? hashFunction.hash64(bytes, offset, length, 0)
+					: hashFunction.hash64(buffer, offset, length, 0);
+			int h1 = (int) (h >>> 32);
+			int h2 = secondHash(h);
+			for (int i = 0; i < nbHash; i++) {
+				int combined = h1 + i * h2;
+				if (!probe.visit((combined < 0 ? ~combined : combined) % maxValue)) {
+					return false;
+				}
+			}
+		} else {
+			for (int i = 0, initval = 0; i < nbHash; i++) {
+				int h = bytes != null
+						? hashFunction.hash(bytes, offset, length, initval)
+						: hashFunction.hash(buffer, offset, length, initval);
+				initval = Math.abs(h % maxValue);
+				if (!probe.visit(initval)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the slice is empty or does not lie within <code>bytes</code>.
+	 */
+	static void checkSlice(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			throw new IllegalArgumentException("buffer reference is null");
+		}
+		checkSlice(offset, length, bytes.length);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the slice is empty or does not lie below the limit of <code>buffer</code>.
+	 */
+	static void checkSlice(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			throw new IllegalArgumentException("buffer reference is null");
+		}
+		checkSlice(offset, length, buffer.limit());
+	}
+
+	private static void checkSlice(int offset, int length, int size) {
+		if (length <= 0) {
+			throw new IllegalArgumentException("key length must be > 0");
+		}
+		if (offset < 0 || offset > size - length) {
+			throw new IllegalArgumentException("slice is out of bounds");
+		}
+	}
+
+	/**
+	 * @return The second hash of double hashing, the low half of the 64-bit
+	 *         hash <code>h</code>, or a fixed odd constant if that half is 0.
+	 */
+	static int secondHash(long h) {
+		int h2 = (int) h;
+		// only a zero is replaced, so that other keys keep their positions
+		return h2 != 0 ? h2 : 0x9e3779b9;
+	}
+
+	private static byte[] getBytes(Key k) {
 		if (k == null) {
 			throw new IllegalArgumentException("key cannot be null");
 		}
@@ -124,11 +373,19 @@ public final class HashFunction {
 		if (b.length == 0) {
 			throw new IllegalArgumentException("key length must be > 0");
 		}
-		int[] result = new int[nbHash];
-		for (int i = 0, initval = 0; i < nbHash; i++) {
-			initval = result[i] = Math.abs(hashFunction.hash(b, initval) % maxValue);
-		}
-		return result;
+		return b;
+	}
+
+	/**
+	 * Receives the values computed by {@link HashFunction#hash(Key, Probe)}
+	 * one at a time.
+	 */
+	interface Probe {
+		/**
+		 * @param position  The hashed value.
+		 * @return <code>false</code> to stop hashing the current key.
+		 */
+		boolean visit(int position);
 	}
 
 }
@@ -0,0 +1,275 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements a <i>dynamic Bloom filter</i> that skips groups of rows with
+ * summary filters.
+ * <p>
+ * Rows are grouped by <code>groupSize</code>, and each group has a summary
+ * Bloom filter, the OR of its rows. Summaries are themselves grouped by
+ * <code>groupSize</code> into a higher level, and so on until the top level
+ * has at most <code>groupSize</code> summaries. A membership test scans the
+ * top level and only descends into the groups whose summary matches. A
+ * summary matches whenever one of its rows does, so no true positive is lost.
+ * <p>
+ * Summaries have the size of a row, so they only skip rows while they are
+ * sparse. A summary over <code>s</code> rows whose fraction <code>f</code> of
+ * bits is set has about <code>1 - (1 - f)<sup>s</sup></code> of its bits set,
+ * and falsely matches a miss with probability that fill to the power
+ * <code>nbHash</code>. Rows filled to <code>nr</code> keys at an optimal
+ * <code>nbHash</code> are about half set: a summary of 2 such rows still
+ * rejects most misses, but one of 8 rows is over 99% set and rejects almost
+ * none, and a miss then costs the summary tests on top of every row test.
+ * Keep <code>groupSize</code> small, or <code>nr</code> well below the
+ * capacity of a row, for the higher levels to pay off.
+ * <p>
+ * Adding a key sets its positions in the active row and in each summary
+ * above it, so summaries are maintained incrementally. The logical operations
+ * apply to the rows, after which the summaries are rebuilt.
+ *
+ * @see org.onelab.filter.DynamicBloomFilter A dynamic Bloom filter
+ */
+public class HierarchicalDynamicBloomFilter extends DynamicBloomFilter {
+	/**
+	 * The number of rows, or of summaries of the level below, under a summary.
+	 */
+	protected final int groupSize;
+
+	/**
+	 * The summaries, level 0 summarizing the rows.
+	 */
+	protected final List<List<BloomFilter>> levels;
+
+	/**
+	 * The positions of the key being added, computed once for the row and
+	 * the summaries above it. Only adds use it, lookups hash on their own.
+	 */
+	private final int[] positions;
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds an empty Dynamic Bloom filter.
+	 *
+	 * @param vectorSize  The number of bits in the vector.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param nr  The threshold for the maximum number of keys to record in a dynamic Bloom filter row.
+	 * @param groupSize  The number of rows, or summaries, under a summary.
+	 */
+	public HierarchicalDynamicBloomFilter(int vectorSize, int nbHash, int hashType, int nr, int groupSize) {
+		this(vectorSize, nbHash, hashType, HashFunction.CHAINED_HASHING, nr, groupSize);
+	}
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds an empty Dynamic Bloom filter.
+	 *
+	 * @param vectorSize  The number of bits in the vector.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param hashScheme  scheme used to derive the positions of a key (see {@link HashFunction}).
+	 * @param nr  The threshold for the maximum number of keys to record in a dynamic Bloom filter row.
+	 * @param groupSize  The number of rows, or summaries, under a summary.
+	 */
+	public HierarchicalDynamicBloomFilter(int vectorSize, int nbHash, int hashType, int hashScheme, int nr, int groupSize) {
+		super(vectorSize, nbHash, hashType, hashScheme, nr);
+
+		if (groupSize < 2) {
+			throw new IllegalArgumentException("groupSize must be > 1");
+		}
+
+		this.groupSize = groupSize;
+		this.levels = new ArrayList<List<BloomFilter>>();
+		this.positions = new int[this.nbHash];
+		rebuildSummaries();
+	}
+
+	@Override
+	public void add(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key can not be null");
+		}
+
+		hash.hash(key, positions);
+		add(positions);
+	}
+
+	@Override
+	public void add(byte[] bytes, int offset, int length) {
+		hash.hash(bytes, offset, length, positions);
+		add(positions);
+	}
+
+	@Override
+	public void add(ByteBuffer buffer, int offset, int length) {
+		hash.hash(buffer, offset, length, positions);
+		add(positions);
+	}
+
+	@Override
+	void add(int[] positions) {
+		super.add(positions);
+
+		// nbRows - 1 is the row the key went to
+		int index = nbRows - 1;
+		for (int l = 0; l < levels.size(); l++) {
+			index /= groupSize;
+			List<BloomFilter> level = levels.get(l);
+			if (index == level.size()) {
+				level.add(newSummary());
+			}
+			level.get(index).add(positions);
+		}
+
+		List<BloomFilter> top = levels.get(levels.size() - 1);
+		if (top.size() > groupSize) {
+			levels.add(summarize(top));
+		}
+	}
+
+	@Override
+	boolean membershipTest(int[] positions) {
+		int top = levels.size() - 1;
+		for (int i = 0; i < levels.get(top).size(); i++) {
+			if (membershipTest(positions, top, i)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Tests the positions of a key against a summary and, if it matches,
+	 * against the rows or summaries under it.
+	 */
+	private boolean membershipTest(int[] positions, int level, int index) {
+		if (!levels.get(level).get(index).membershipTest(positions)) {
+			return false;
+		}
+
+		int from = index * groupSize;
+		if (level == 0) {
+			int to = Math.min(from + groupSize, nbRows);
+			for (int r = from; r < to; r++) {
+				if (matrix[r].membershipTest(positions)) {
+					return true;
+				}
+			}
+		} else {
+			int to = Math.min(from + groupSize, levels.get(level - 1).size());
+			for (int i = from; i < to; i++) {
+				if (membershipTest(positions, level - 1, i)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public void and(Filter filter) {
+		super.and(filter);
+		rebuildSummaries();
+	}
+
+	@Override
+	public void or(Filter filter) {
+		super.or(filter);
+		rebuildSummaries();
+	}
+
+	@Override
+	public void xor(Filter filter) {
+		super.xor(filter);
+		rebuildSummaries();
+	}
+
+	@Override
+	public void not() {
+		super.not();
+		rebuildSummaries();
+	}
+
+	/**
+	 * @return The number of summary levels.
+	 */
+	public int getLevelCount() {
+		return levels.size();
+	}
+
+	@Override
+	public Object clone() {
+		HierarchicalDynamicBloomFilter dbf = new HierarchicalDynamicBloomFilter(vectorSize, nbHash, hashType, hashScheme, nr, groupSize);
+		dbf.currentNbRecord = this.currentNbRecord;
+		dbf.matrix = new BloomFilter[this.matrix.length];
+		dbf.nbRows = this.nbRows;
+		for (int i = 0; i < this.nbRows; i++) {
+			dbf.matrix[i] = (BloomFilter) this.matrix[i].clone();
+		}
+		dbf.rebuildSummaries();
+		return dbf;
+	}
+
+	/**
+	 * Rebuilds every summary level from the rows.
+	 */
+	private void rebuildSummaries() {
+		List<BloomFilter> rows = new ArrayList<BloomFilter>(nbRows);
+		for (int r = 0; r < nbRows; r++) {
+			rows.add(matrix[r]);
+		}
+
+		levels.clear();
+		levels.add(summarize(rows));
+		List<BloomFilter> top = levels.get(0);
+		while (top.size() > groupSize) {
+			top = summarize(top);
+			levels.add(top);
+		}
+	}
+
+	/**
+	 * @return The summaries of <code>filters</code>, by groups of {@link #groupSize}.
+	 */
+	private List<BloomFilter> summarize(List<BloomFilter> filters) {
+		List<BloomFilter> summaries = new ArrayList<BloomFilter>();
+		for (int i = 0; i < filters.size(); i++) {
+			if (i % groupSize == 0) {
+				summaries.add(newSummary());
+			}
+			summaries.get(i / groupSize).or(filters.get(i));
+		}
+		return summaries;
+	}
+
+	private BloomFilter newSummary() {
+		return new BloomFilter(vectorSize, nbHash, hashType, hashScheme);
+	}
+
+}
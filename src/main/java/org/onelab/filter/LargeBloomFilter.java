@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements a <i>Bloom filter</i> whose bit vector is addressed by a
+ * <code>long</code> index.
+ * <p>
+ * A {@link BloomFilter} is limited to 2<sup>31</sup> bits by its
+ * {@link java.util.BitSet}. This filter stores its bits in a {@link BitArray},
+ * a {@link LongBitArray} on the heap by default, and maps keys with a
+ * {@link LongHashFunction}, so a single instance can hold several billion keys
+ * at a 1% false positive rate.
+ * <p>
+ * Positions are computed differently from a {@link BloomFilter}, so the two
+ * cannot be combined. Large Bloom filters can be combined whatever their
+ * storage.
+ *
+ * @see org.onelab.filter.Filter The general behavior of a filter
+ * @see org.onelab.filter.BloomFilter A Bloom filter
+ */
+public class LargeBloomFilter extends Filter {
+	/** The number of bits in the vector. {@link #vectorSize} is capped at <code>Integer.MAX_VALUE</code>. */
+	protected final long bitSize;
+
+	/** The hash function used to map a key to several positions in the vector. */
+	protected final LongHashFunction longHash;
+
+	/** The bit vector. */
+	protected BitArray bits;
+
+	/** Sets each position of a key as soon as it is computed. */
+	private final LongHashFunction.Probe setter = new LongHashFunction.Probe() {
+		public boolean visit(long position) {
+			bits.set(position);
+			return true;
+		}
+	};
+
+	/** Tests each position of a key as soon as it is computed. */
+	private final LongHashFunction.Probe tester = new LongHashFunction.Probe() {
+		public boolean visit(long position) {
+			return bits.get(position);
+		}
+	};
+
+	/**
+	 * Constructor
+	 *
+	 * @param bitSize  The number of bits in the vector.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 */
+	public LargeBloomFilter(long bitSize, int nbHash, int hashType) {
+		this(nbHash, hashType, new LongBitArray(bitSize));
+	}
+
+	/**
+	 * Constructor
+	 * <p>
+	 * Builds a filter over an existing bit vector, which defines the vector
+	 * size and is used as is.
+	 *
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param bits  The bit vector.
+	 */
+	protected LargeBloomFilter(int nbHash, int hashType, BitArray bits) {
+		// keys are mapped by longHash only, which double hashes, so there is
+		// no 32-bit hash function
+		super((int) Math.min(bits.bitSize(), Integer.MAX_VALUE), nbHash, hashType,
+				HashFunction.DOUBLE_HASHING, null);
+
+		this.bitSize = bits.bitSize();
+		this.longHash = new LongHashFunction(bitSize, nbHash, hashType);
+		this.bits = bits;
+	}
+
+	@Override
+	public void add(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key can not be null");
+		}
+
+		longHash.hash(key, setter);
+	}
+
+	@Override
+	public boolean membershipTest(Key key) {
+		if (key == null) {
+			return false;
+		}
+
+		return longHash.hash(key, tester);
+	}
+
+	@Override
+	public void add(byte[] bytes, int offset, int length) {
+		longHash.hash(bytes, offset, length, setter);
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		return longHash.hash(bytes, offset, length, tester);
+	}
+
+	@Override
+	public void add(ByteBuffer buffer, int offset, int length) {
+		longHash.hash(buffer, offset, length, setter);
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		return longHash.hash(buffer, offset, length, tester);
+	}
+
+	@Override
+	public void and(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be and-ed");
+		}
+		bits.and(((LargeBloomFilter) filter).bits);
+	}
+
+	@Override
+	public void or(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be or-ed");
+		}
+		bits.or(((LargeBloomFilter) filter).bits);
+	}
+
+	@Override
+	public void xor(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be xor-ed");
+		}
+		bits.xor(((LargeBloomFilter) filter).bits);
+	}
+
+	@Override
+	public void not() {
+		bits.not();
+	}
+
+	/**
+	 * @return The number of bits in the vector.
+	 */
+	public long getBitSize() {
+		return bitSize;
+	}
+
+	@Override
+	public String toString() {
+		return bits.toString();
+	}
+
+	@Override
+	public Object clone() {
+		LargeBloomFilter bf = new LargeBloomFilter(bitSize, nbHash, hashType);
+		bf.or(this);
+		return bf;
+	}
+
+	private boolean isCompatible(Filter filter) {
+		if (filter == null) return false;
+		if (!(filter instanceof LargeBloomFilter)) return false;
+		if (((LargeBloomFilter) filter).bitSize != this.bitSize) return false;
+		if (filter.nbHash != this.nbHash) return false;
+		if (filter.hashType != this.hashType) return false;
+
+		return true;
+	}
+
+}
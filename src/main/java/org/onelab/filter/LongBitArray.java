@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size vector of bits backed by a <code>long[]</code> and addressed by
+ * a <code>long</code> index.
+ * <p>
+ * Unlike {@link java.util.BitSet}, which is addressed by an <code>int</code>,
+ * it can hold up to {@link #MAX_BIT_SIZE}, <code>64 * (2<sup>31</sup> - 9)</code>, bits.
+ *
+ * @see org.onelab.filter.LargeBloomFilter A Bloom filter using this bit vector
+ */
+public class LongBitArray extends BitArray {
+	/**
+	 * The largest number of bits a <code>LongBitArray</code> can hold, as many
+	 * words as the largest array most virtual machines can allocate.
+	 */
+	public static final long MAX_BIT_SIZE = (long) (Integer.MAX_VALUE - 8) * Long.SIZE;
+
+	/** The words holding the bits, bit <code>i</code> is in word <code>i >>> 6</code>. */
+	protected final long[] words;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bitSize  The number of bits in the vector.
+	 */
+	public LongBitArray(long bitSize) {
+		super(bitSize);
+		if (bitSize > MAX_BIT_SIZE) {
+			throw new IllegalArgumentException("bitSize must be > 0 and <= " + MAX_BIT_SIZE);
+		}
+		this.words = new long[(int) wordCount()];
+	}
+
+	@Override
+	public boolean get(long index) {
+		return (words[(int) (index >>> 6)] & (1L << index)) != 0;
+	}
+
+	@Override
+	public void set(long index) {
+		words[(int) (index >>> 6)] |= 1L << index;
+	}
+
+	@Override
+	public long getWord(long wordIndex) {
+		return words[(int) wordIndex];
+	}
+
+	@Override
+	public void setWord(long wordIndex, long word) {
+		words[(int) wordIndex] = word;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(words, 0L);
+	}
+
+	@Override
+	public long cardinality() {
+		long count = 0;
+		for (int i = 0; i < words.length; i++) {
+			count += Long.bitCount(words[i]);
+		}
+		return count;
+	}
+
+	@Override
+	public void and(BitArray other) {
+		if (!(other instanceof LongBitArray)) {
+			super.and(other);
+			return;
+		}
+		checkSize(other);
+		long[] o = ((LongBitArray) other).words;
+		for (int i = 0; i < words.length; i++) {
+			words[i] &= o[i];
+		}
+	}
+
+	@Override
+	public void or(BitArray other) {
+		if (!(other instanceof LongBitArray)) {
+			super.or(other);
+			return;
+		}
+		checkSize(other);
+		long[] o = ((LongBitArray) other).words;
+		for (int i = 0; i < words.length; i++) {
+			words[i] |= o[i];
+		}
+	}
+
+	@Override
+	public void xor(BitArray other) {
+		if (!(other instanceof LongBitArray)) {
+			super.xor(other);
+			return;
+		}
+		checkSize(other);
+		long[] o = ((LongBitArray) other).words;
+		for (int i = 0; i < words.length; i++) {
+			words[i] ^= o[i];
+		}
+	}
+
+	@Override
+	public void not() {
+		for (int i = 0; i < words.length; i++) {
+			words[i] = ~words[i];
+		}
+		words[words.length - 1] &= lastWordMask();
+	}
+
+}
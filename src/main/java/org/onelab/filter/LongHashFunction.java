@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements a hash object that returns a certain number of hashed values in
+ * a 64-bit range.
+ * <p>
+ * The key is hashed once with {@link Hash#hash64(byte[], int, int)} and the
+ * values are derived from it by double hashing, as with
+ * {@link HashFunction#DOUBLE_HASHING}, but in 64-bit arithmetic so that they
+ * can address vectors of more than 2<sup>31</sup> bits.
+ *
+ * @see org.onelab.filter.HashFunction The 32-bit counterpart
+ * @see org.onelab.filter.LargeBloomFilter A Bloom filter using this hash function
+ */
+public final class LongHashFunction {
+	/** The number of hashed values. */
+	protected final int nbHash;
+
+	/** The maximum highest returned value. */
+	protected final long maxValue;
+
+	/** Hashing algorithm to use. */
+	protected final Hash hashFunction;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxValue  The maximum highest returned value.
+	 * @param nbHash  The number of resulting hashed values.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 */
+	public LongHashFunction(long maxValue, int nbHash, int hashType) {
+		if (maxValue <= 0) {
+			throw new IllegalArgumentException("maxValue must be > 0");
+		}
+
+		if (nbHash <= 0) {
+			throw new IllegalArgumentException("nbHash must be > 0");
+		}
+
+		this.maxValue = maxValue;
+		this.nbHash = nbHash;
+		this.hashFunction = Hash.getInstance(hashType);
+		if (this.hashFunction == null)
+			throw new IllegalArgumentException("hashType must be known");
+	}
+
+	/**
+	 * Hashes a specified key into several longs.
+	 *
+	 * @param k  The specified key.
+	 *
+	 * @return The array of hashed values.
+	 */
+	public long[] hash(Key k) {
+		long[] result = new long[nbHash];
+		hash(k, result);
+		return result;
+	}
+
+	/**
+	 * Hashes a specified key into several longs, without allocating.
+	 *
+	 * @param k  The specified key.
+	 * @param result  The array receiving the hashed values.
+	 */
+	public void hash(Key k, long[] result) {
+		byte[] b = getBytes(k);
+		if (result == null || result.length < nbHash) {
+			throw new IllegalArgumentException("result must hold at least nbHash values");
+		}
+		long h1 = hashFunction.hash64(b, b.length, 0);
+		long h2 = secondHash(h1);
+		for (int i = 0; i < nbHash; i++) {
+			result[i] = ((h1 + i * h2) & Long.MAX_VALUE) % maxValue;
+		}
+	}
+
+	/**
+	 * Hashes a specified key, handing each value to <code>probe</code> as soon
+	 * as it is computed and stopping at the first value it rejects.
+	 *
+	 * @param k  The specified key.
+	 * @param probe  The probe receiving the hashed values.
+	 *
+	 * @return <code>true</code> if the probe accepted every value.
+	 */
+	boolean hash(Key k, Probe probe) {
+		byte[] b = getBytes(k);
+		return hash(hashFunction.hash64(b, b.length, 0), probe);
+	}
+
+	/**
+	 * Hashes the key held by a slice of a byte array, as
+	 * {@link #hash(Key, Probe)} hashes a key holding a copy of the slice.
+	 *
+	 * @param bytes  The array holding the key.
+	 * @param offset  The index of the first byte of the key.
+	 * @param length  The length of the key.
+	 * @param probe  The probe receiving the hashed values.
+	 *
+	 * @return <code>true</code> if the probe accepted every value.
+	 */
+	boolean hash(byte[] bytes, int offset, int length, Probe probe) {
+		HashFunction.checkSlice(bytes, offset, length);
+		return hash(hashFunction.hash64(bytes, offset, length, 0), probe);
+	}
+
+	/**
+	 * Hashes the key held by a slice of a buffer, at absolute indexes, as
+	 * {@link #hash(Key, Probe)} hashes a key holding a copy of the slice.
+	 *
+	 * @param buffer  The buffer holding the key.
+	 * @param offset  The index of the first byte of the key.
+	 * @param length  The length of the key.
+	 * @param probe  The probe receiving the hashed values.
+	 *
+	 * @return <code>true</code> if the probe accepted every value.
+	 */
+	boolean hash(ByteBuffer buffer, int offset, int length, Probe probe) {
+		HashFunction.checkSlice(buffer, offset, length);
+		return hash(hashFunction.hash64(buffer, offset, length, 0), probe);
+	}
+
+	/**
+	 * Derives the values from the 64-bit hash <code>h1</code> of a key.
+	 */
+	private boolean hash(long h1, Probe probe) {
+		long h2 = secondHash(h1);
+		for (int i = 0; i < nbHash; i++) {
+			if (!probe.visit(((h1 + i * h2) & Long.MAX_VALUE) % maxValue)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Derives the second hash from the first one, so that the key is only
+	 * read once. The finalizer maps only 0 to 0, which would give every value
+	 * of the key the value of <code>h1</code>, so that case is replaced by a
+	 * fixed odd constant.
+	 */
+	static long secondHash(long h1) {
+		long h2 = mix(h1);
+		// only a zero is replaced, so that mapped files keep their positions
+		return h2 != 0 ? h2 : 0x9e3779b97f4a7c15L;
+	}
+
+	/** The finalizer of MurmurHash3. */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private static byte[] getBytes(Key k) {
+		if (k == null) {
+			throw new IllegalArgumentException("key cannot be null");
+		}
+		byte[] b = k.getBytes();
+		if (b == null) {
+			throw new IllegalArgumentException("buffer reference is null");
+		}
+		if (b.length == 0) {
+			throw new IllegalArgumentException("key length must be > 0");
+		}
+		return b;
+	}
+
+	/**
+	 * Receives the values computed by {@link LongHashFunction#hash(Key, Probe)}
+	 * one at a time.
+	 */
+	interface Probe {
+		/**
+		 * @param position  The hashed value.
+		 * @return <code>false</code> to stop hashing the current key.
+		 */
+		boolean visit(long position);
+	}
+
+}
@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A fixed-size vector of bits stored in a memory-mapped region of a file.
+ * <p>
+ * Pages are mapped with {@link FileChannel#map}, so they are loaded lazily by
+ * the operating system and shared through the page cache with every process
+ * mapping the same file. Words are stored in little-endian order whatever the
+ * platform, so the file can be moved between hosts.
+ * <p>
+ * Changes reach the file at the discretion of the operating system, or when
+ * {@link #force()} is called. {@link #close()} unmaps the file.
+ *
+ * @see org.onelab.filter.MappedBloomFilter A Bloom filter using this bit vector
+ */
+public class MappedBitArray extends DirectBitArray {
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Maps the bits from <code>position</code> in the file of
+	 * <code>channel</code>. The channel may be closed once <i>this</i> vector
+	 * has been built, the mapping remains valid until {@link #close()}.
+	 *
+	 * @param channel  The channel of the file holding the bits.
+	 * @param position  The position of the first word in the file.
+	 * @param bitSize  The number of bits in the vector.
+	 * @param mode  {@link FileChannel.MapMode#READ_ONLY} or {@link FileChannel.MapMode#READ_WRITE}.
+	 * @throws IOException if the file cannot be mapped.
+	 */
+	public MappedBitArray(FileChannel channel, long position, long bitSize, FileChannel.MapMode mode) throws IOException {
+		super(bitSize, map(channel, position, bitSize, mode));
+	}
+
+	private static ByteBuffer[] map(FileChannel channel, long position, long bitSize, FileChannel.MapMode mode) throws IOException {
+		if (bitSize <= 0) {
+			throw new IllegalArgumentException("bitSize must be > 0");
+		}
+		long bytes = ((bitSize + Long.SIZE - 1) >>> 6) << 3;
+		ByteBuffer[] pages = new ByteBuffer[pageCount(bytes)];
+		try {
+			for (int i = 0; i < pages.length; i++) {
+				long offset = (long) i * PAGE_SIZE;
+				long size = Math.min(PAGE_SIZE, bytes - offset);
+				pages[i] = channel.map(mode, position + offset, size).order(ByteOrder.LITTLE_ENDIAN);
+			}
+		} catch (IOException e) {
+			for (int i = 0; i < pages.length; i++) {
+				free(pages[i]);
+			}
+			throw e;
+		}
+		return pages;
+	}
+
+	/**
+	 * Writes the changes made to <i>this</i> vector to the storage device
+	 * holding the file.
+	 */
+	public void force() {
+		ByteBuffer[] p = pages;
+		if (p == null) {
+			throw new IllegalStateException("bit vector is closed");
+		}
+		for (int i = 0; i < p.length; i++) {
+			((MappedByteBuffer) p[i]).force();
+		}
+	}
+
+}
@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements a <i>Bloom filter</i> whose bit vector is a memory-mapped file.
+ * <p>
+ * A filter is written once with {@link #create(File, long, int, int)} and can
+ * then be reopened with {@link #open(File, boolean)} in constant time: only
+ * the header is read, and the bits are paged in lazily as keys are tested.
+ * Several processes opening the same file share its pages through the page
+ * cache.
+ * <p>
+ * Added keys reach the file at the discretion of the operating system, or
+ * when {@link #force()} is called. Only one process should add keys to a given
+ * file at a time.
+ * <p>
+ * The file starts with a {@value #HEADER_SIZE}-byte little-endian header:
+ * <pre>
+ *   int  magic     0x46424C4F, the bytes "OLBF"
+ *   int  version   1
+ *   long bitSize
+ *   int  nbHash
+ *   int  hashType
+ *   long reserved
+ * </pre>
+ * followed by the bit vector as little-endian 64-bit words. Positions are the
+ * ones of a {@link LargeBloomFilter} with the same parameters.
+ * <p>
+ * {@link #close()} unmaps the file, and {@link #clone()} returns an
+ * {@link OffHeapBloomFilter} not backed by any file.
+ *
+ * @see org.onelab.filter.OffHeapBloomFilter A Bloom filter in direct memory
+ * @see org.onelab.filter.MappedBitArray The mapped bit vector
+ */
+public class MappedBloomFilter extends OffHeapBloomFilter {
+	/** Magic number at the start of a mapped Bloom filter file. */
+	public static final int MAGIC = 0x46424C4F;
+
+	/** Version of the file format. */
+	public static final int VERSION = 1;
+
+	/** Size in bytes of the header preceding the bit vector. */
+	public static final int HEADER_SIZE = 32;
+
+	/** The file holding <i>this</i> filter. */
+	protected final File file;
+
+	/**
+	 * Constructor
+	 *
+	 * @param file  The file holding the filter.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param bits  The mapped bit vector.
+	 */
+	protected MappedBloomFilter(File file, int nbHash, int hashType, MappedBitArray bits) {
+		super(nbHash, hashType, bits);
+		this.file = file;
+	}
+
+	/**
+	 * Creates an empty filter in a new file, replacing any existing content.
+	 *
+	 * @param file  The file to create.
+	 * @param bitSize  The number of bits in the vector.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @return The filter, open for reading and writing.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static MappedBloomFilter create(File file, long bitSize, int nbHash, int hashType) throws IOException {
+		// fail before touching the file
+		new LongHashFunction(bitSize, nbHash, hashType);
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			raf.setLength(0);
+			raf.setLength(HEADER_SIZE + (((bitSize + Long.SIZE - 1) >>> 6) << 3));
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putLong(bitSize).putInt(nbHash).putInt(hashType).putLong(0L);
+			header.flip();
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+
+			MappedBitArray bits = new MappedBitArray(channel, HEADER_SIZE, bitSize, FileChannel.MapMode.READ_WRITE);
+			return new MappedBloomFilter(file, nbHash, hashType, bits);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Opens a filter previously written with {@link #create(File, long, int, int)}.
+	 * <p>
+	 * Only the header is read; the bits are mapped, not loaded. Adding a key
+	 * to a filter opened read-only throws a
+	 * {@link java.nio.ReadOnlyBufferException}.
+	 *
+	 * @param file  The file to open.
+	 * @param writable  <code>true</code> to allow adding keys, <code>false</code> to map the file read-only.
+	 * @return The filter.
+	 * @throws IOException if the file cannot be read, is not a mapped Bloom
+	 *           filter or has a corrupt header.
+	 */
+	public static MappedBloomFilter open(File file, boolean writable) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+		try {
+			FileChannel channel = raf.getChannel();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header, header.position()) < 0) {
+					throw new IOException("truncated header in " + file);
+				}
+			}
+			header.flip();
+			if (header.getInt() != MAGIC) {
+				throw new IOException("not a mapped Bloom filter: " + file);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("unsupported version " + version + " in " + file);
+			}
+			long bitSize = header.getLong();
+			int nbHash = header.getInt();
+			int hashType = header.getInt();
+			if (nbHash <= 0) {
+				throw new IOException("invalid number of hash functions " + nbHash + " in " + file);
+			}
+			if (Hash.getInstance(hashType) == null) {
+				throw new IOException("unknown hash type " + hashType + " in " + file);
+			}
+			if (bitSize <= 0) {
+				throw new IOException("invalid bit size " + bitSize + " in " + file);
+			}
+			// in words first, so that no bit size can overflow the expected length
+			long words = (bitSize >>> 6) + ((bitSize & (Long.SIZE - 1)) == 0 ? 0 : 1);
+			if (channel.size() != HEADER_SIZE + (words << 3)) {
+				throw new IOException("bit vector of " + bitSize + " bits does not match the length of " + file);
+			}
+
+			FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+			MappedBitArray bits = new MappedBitArray(channel, HEADER_SIZE, bitSize, mode);
+			return new MappedBloomFilter(file, nbHash, hashType, bits);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/** @return The file holding <i>this</i> filter. */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Writes the keys added to <i>this</i> filter to the storage device holding
+	 * its file.
+	 */
+	public void force() {
+		((MappedBitArray) bits).force();
+	}
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.io.Closeable;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements a <i>Bloom filter</i> whose bit vector lives outside of the Java
+ * heap.
+ * <p>
+ * The bits are held in a {@link DirectBitArray}, so a multi-gigabyte filter
+ * neither inflates the heap nor gets scanned by the garbage collector. The
+ * memory must be released explicitly with {@link #close()}; a closed filter
+ * throws an {@link IllegalStateException} when used.
+ * <p>
+ * Positions are the ones of a {@link LargeBloomFilter} with the same
+ * parameters, and the two can be combined.
+ *
+ * @see org.onelab.filter.LargeBloomFilter A Bloom filter on the heap
+ * @see org.onelab.filter.DirectBitArray The off-heap bit vector
+ */
+public class OffHeapBloomFilter extends LargeBloomFilter implements Closeable {
+
+	/**
+	 * Constructor
+	 *
+	 * @param bitSize  The number of bits in the vector.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 */
+	public OffHeapBloomFilter(long bitSize, int nbHash, int hashType) {
+		this(nbHash, hashType, new DirectBitArray(bitSize));
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param bits  The off-heap bit vector, owned by <i>this</i> filter from now on.
+	 */
+	protected OffHeapBloomFilter(int nbHash, int hashType, DirectBitArray bits) {
+		super(nbHash, hashType, bits);
+	}
+
+	/** @return <code>true</code> once <i>this</i> filter has been closed. */
+	public boolean isClosed() {
+		return ((DirectBitArray) bits).isClosed();
+	}
+
+	/**
+	 * Releases the off-heap memory of <i>this</i> filter.
+	 * <p>
+	 * Closing a filter twice has no effect.
+	 */
+	public void close() {
+		((DirectBitArray) bits).close();
+	}
+
+	@Override
+	public Object clone() {
+		OffHeapBloomFilter bf = new OffHeapBloomFilter(bitSize, nbHash, hashType);
+		bf.or(this);
+		return bf;
+	}
+
+}
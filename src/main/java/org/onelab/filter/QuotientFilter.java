@@ -0,0 +1,651 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements a <i>quotient filter</i>, as defined by Bender et al. in a VLDB
+ * 2012 paper.
+ * <p>
+ * A quotient filter stores a <code>p</code>-bit fingerprint of each key, the
+ * top <code>p</code> bits of its 64-bit hash, in a table of
+ * 2<sup><code>q</code></sup> slots. The <code>q</code> high bits of the
+ * fingerprint, the <i>quotient</i>, select the canonical slot of the key, and
+ * the <code>r = p - q</code> low bits, the <i>remainder</i>, are stored with
+ * three metadata bits in a slot of <code>r + 3</code> bits. Remainders sharing
+ * a quotient are kept sorted in a run, as close as possible to their
+ * canonical slot, so a test reads a few consecutive slots of a packed
+ * <code>long[]</code>. The false positive rate is about
+ * <code>load / 2<sup>r</sup></code>.
+ * <p>
+ * As the fingerprints can be enumerated, a quotient filter can be resized
+ * and merged without the original keys:
+ * <ul>
+ * <li>{@link #expand()} doubles the number of slots, moving one bit of each
+ * fingerprint from the remainder to the quotient, which doubles the false
+ * positive rate;</li>
+ * <li>{@link #or(Filter)} merges the fingerprints of a filter with the same
+ * fingerprint size, expanding <i>this</i> filter if they would not fit.</li>
+ * </ul>
+ * Keys are stored as a multiset, so a key added twice must be deleted twice,
+ * and deleting a key never removes the fingerprint of another one. Adding a
+ * key to a full table throws an {@link IllegalStateException}; tests stay
+ * fast up to a load of about 75%.
+ *
+ * @see org.onelab.filter.Filter The general behavior of a filter
+ *
+ * @see <a href="http://vldb.org/pvldb/vol5/p1627_michaelabender_vldb2012.pdf">
+ * 			Don't Thrash: How to Cache Your Hash on Flash</a>
+ */
+public class QuotientFilter extends Filter {
+	/** The number of bits of a quotient. */
+	protected int quotientBits;
+
+	/** The number of bits of a remainder. */
+	protected int remainderBits;
+
+	/** The number of bits of a slot, the remainder and three metadata bits. */
+	protected int slotBits;
+
+	/** The packed slots. */
+	protected long[] slots;
+
+	/** The number of fingerprints stored. */
+	protected int count;
+
+	private long indexMask;
+	private long remainderMask;
+	private long slotMask;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param quotientBits  The number of bits of a quotient, the table having 2<sup>quotientBits</sup> slots.
+	 * @param remainderBits  The number of bits of a remainder.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 */
+	public QuotientFilter(int quotientBits, int remainderBits, int hashType) {
+		super(slotCount(quotientBits, remainderBits), 1, hashType);
+
+		init(quotientBits, remainderBits);
+	}
+
+	/**
+	 * Copy constructor.
+	 *
+	 * @param other  The filter to copy.
+	 */
+	private QuotientFilter(QuotientFilter other) {
+		super(other.vectorSize, other.nbHash, other.hashType);
+
+		init(other.quotientBits, other.remainderBits);
+		System.arraycopy(other.slots, 0, slots, 0, slots.length);
+		this.count = other.count;
+	}
+
+	private static int slotCount(int quotientBits, int remainderBits) {
+		if (quotientBits < 1 || quotientBits > 30) {
+			throw new IllegalArgumentException("quotientBits must be between 1 and 30");
+		}
+		if (remainderBits < 1 || remainderBits > Long.SIZE - 3 || quotientBits + remainderBits > Long.SIZE) {
+			throw new IllegalArgumentException("remainderBits must be between 1 and " + Math.min(Long.SIZE - 3, Long.SIZE - quotientBits));
+		}
+		return 1 << quotientBits;
+	}
+
+	private void init(int quotientBits, int remainderBits) {
+		this.quotientBits = quotientBits;
+		this.remainderBits = remainderBits;
+		this.slotBits = remainderBits + 3;
+		this.indexMask = (1L << quotientBits) - 1;
+		this.remainderMask = (1L << remainderBits) - 1;
+		this.slotMask = -1L >>> (Long.SIZE - slotBits);
+		this.slots = new long[(int) (((long) slotBits << quotientBits) + Long.SIZE - 1 >>> 6)];
+		this.count = 0;
+	}
+
+	// slot access
+
+	private long get(long i) {
+		long bit = i * slotBits;
+		int word = (int) (bit >>> 6);
+		int offset = (int) bit & 63;
+		long value = slots[word] >>> offset;
+		if (offset + slotBits > Long.SIZE) {
+			value |= slots[word + 1] << (Long.SIZE - offset);
+		}
+		return value & slotMask;
+	}
+
+	private void set(long i, long value) {
+		long bit = i * slotBits;
+		int word = (int) (bit >>> 6);
+		int offset = (int) bit & 63;
+		slots[word] = slots[word] & ~(slotMask << offset) | (value << offset);
+		if (offset + slotBits > Long.SIZE) {
+			int spill = Long.SIZE - offset;
+			slots[word + 1] = slots[word + 1] & ~(slotMask >>> spill) | (value >>> spill);
+		}
+	}
+
+	private long incr(long i) {
+		return (i + 1) & indexMask;
+	}
+
+	private long decr(long i) {
+		return (i - 1) & indexMask;
+	}
+
+	// slot metadata: bit 0 is_occupied, bit 1 is_continuation, bit 2 is_shifted
+
+	private static boolean isOccupied(long slot) {
+		return (slot & 1) != 0;
+	}
+
+	private static boolean isContinuation(long slot) {
+		return (slot & 2) != 0;
+	}
+
+	private static boolean isShifted(long slot) {
+		return (slot & 4) != 0;
+	}
+
+	private static boolean isEmpty(long slot) {
+		return (slot & 7) == 0;
+	}
+
+	private static boolean isClusterStart(long slot) {
+		return isOccupied(slot) && !isContinuation(slot) && !isShifted(slot);
+	}
+
+	private static boolean isRunStart(long slot) {
+		return !isContinuation(slot) && (isOccupied(slot) || isShifted(slot));
+	}
+
+	private static long remainder(long slot) {
+		return slot >>> 3;
+	}
+
+	// fingerprints
+
+	/**
+	 * @return The fingerprint of a key, the top <code>q + r</code> bits of its hash.
+	 */
+	private long fingerprint(Key key) {
+		byte[] b = key.getBytes();
+		if (b == null || b.length == 0) {
+			throw new IllegalArgumentException("key length must be > 0");
+		}
+		return fingerprint(hash.hashFunction.hash64(b, b.length, 0));
+	}
+
+	/**
+	 * @return The fingerprint of a key given by its 64-bit hash.
+	 */
+	private long fingerprint(long h) {
+		return h >>> (Long.SIZE - quotientBits - remainderBits);
+	}
+
+	/**
+	 * @return The slot where the run of quotient <code>fq</code> starts.
+	 */
+	private long findRunIndex(long fq) {
+		// find the start of the cluster
+		long b = fq;
+		while (isShifted(get(b))) {
+			b = decr(b);
+		}
+
+		// walk the runs of the cluster up to the run of fq
+		long s = b;
+		while (b != fq) {
+			do {
+				s = incr(s);
+			} while (isContinuation(get(s)));
+			do {
+				b = incr(b);
+			} while (!isOccupied(get(b)));
+		}
+		return s;
+	}
+
+	/**
+	 * Inserts a slot at <code>s</code>, shifting the following slots of the
+	 * cluster by one. Occupied bits stay with their canonical slot.
+	 */
+	private void insertInto(long s, long slot) {
+		long curr = slot;
+		boolean empty;
+		do {
+			long prev = get(s);
+			empty = isEmpty(prev);
+			if (!empty) {
+				prev |= 4;
+				if (isOccupied(prev)) {
+					curr |= 1;
+					prev &= ~1L;
+				}
+			}
+			set(s, curr);
+			curr = prev;
+			s = incr(s);
+		} while (!empty);
+	}
+
+	/**
+	 * Stores a fingerprint.
+	 */
+	private void insert(long fp) {
+		if (count >= vectorSize) {
+			throw new IllegalStateException("filter is full");
+		}
+
+		long fq = (fp >>> remainderBits) & indexMask;
+		long fr = fp & remainderMask;
+		long canonical = get(fq);
+		long entry = fr << 3;
+
+		if (isEmpty(canonical)) {
+			set(fq, entry | 1);
+			count++;
+			return;
+		}
+
+		if (!isOccupied(canonical)) {
+			set(fq, canonical | 1);
+		}
+
+		long start = findRunIndex(fq);
+		long s = start;
+
+		if (isOccupied(canonical)) {
+			// keep the run sorted, after equal remainders
+			do {
+				if (remainder(get(s)) > fr) {
+					break;
+				}
+				s = incr(s);
+			} while (isContinuation(get(s)));
+
+			if (s == start) {
+				// the old start of the run becomes a continuation
+				set(start, get(start) | 2);
+			} else {
+				entry |= 2;
+			}
+		}
+
+		if (s != fq) {
+			entry |= 4;
+		}
+
+		insertInto(s, entry);
+		count++;
+	}
+
+	/**
+	 * @return <code>true</code> if the fingerprint is stored.
+	 */
+	private boolean contains(long fp) {
+		long fq = (fp >>> remainderBits) & indexMask;
+		long fr = fp & remainderMask;
+
+		if (!isOccupied(get(fq))) {
+			return false;
+		}
+
+		long s = findRunIndex(fq);
+		do {
+			long rem = remainder(get(s));
+			if (rem == fr) {
+				return true;
+			} else if (rem > fr) {
+				return false;
+			}
+			s = incr(s);
+		} while (isContinuation(get(s)));
+		return false;
+	}
+
+	/**
+	 * Removes one copy of a fingerprint.
+	 *
+	 * @return <code>false</code> if the fingerprint is not stored.
+	 */
+	private boolean remove(long fp) {
+		long fq = (fp >>> remainderBits) & indexMask;
+		long fr = fp & remainderMask;
+		long canonical = get(fq);
+
+		if (!isOccupied(canonical) || count == 0) {
+			return false;
+		}
+
+		long s = findRunIndex(fq);
+		long rem;
+		do {
+			rem = remainder(get(s));
+			if (rem >= fr) {
+				break;
+			}
+			s = incr(s);
+		} while (isContinuation(get(s)));
+		if (rem != fr) {
+			return false;
+		}
+
+		long kill = s == fq ? canonical : get(s);
+		boolean replaceRunStart = isRunStart(kill);
+
+		// deleting the last entry of a run clears the occupied bit
+		if (replaceRunStart && !isContinuation(get(incr(s)))) {
+			set(fq, get(fq) & ~1L);
+		}
+
+		deleteEntry(s, fq);
+
+		if (replaceRunStart) {
+			long next = get(s);
+			long updated = next;
+			if (isContinuation(next)) {
+				// the new start of the run is no longer a continuation
+				updated &= ~2L;
+			}
+			if (s == fq && isRunStart(updated)) {
+				// the new start of the run is in its canonical slot
+				updated &= ~4L;
+			}
+			if (updated != next) {
+				set(s, updated);
+			}
+		}
+
+		count--;
+		return true;
+	}
+
+	/**
+	 * Removes the slot at <code>s</code>, shifting the following slots of the
+	 * cluster back by one. Occupied bits stay with their canonical slot.
+	 */
+	private void deleteEntry(long s, long quot) {
+		long curr = get(s);
+		long sp = incr(s);
+		long orig = s;
+
+		while (true) {
+			long next = get(sp);
+			boolean currOccupied = isOccupied(curr);
+
+			if (isEmpty(next) || isClusterStart(next) || sp == orig) {
+				set(s, 0);
+				return;
+			}
+
+			// fix the entries sliding into their canonical slot
+			long updated = next;
+			if (isRunStart(next)) {
+				do {
+					quot = incr(quot);
+				} while (!isOccupied(get(quot)));
+				if (currOccupied && quot == s) {
+					updated &= ~4L;
+				}
+			}
+			set(s, currOccupied ? updated | 1 : updated & ~1L);
+			s = sp;
+			sp = incr(sp);
+			curr = next;
+		}
+	}
+
+	/**
+	 * @return The fingerprints, in increasing order of quotient then
+	 *         remainder, that is as unsigned values.
+	 */
+	private long[] fingerprints() {
+		long[] res = new long[count];
+		if (count == 0) {
+			return res;
+		}
+
+		long start = 0;
+		while (!isClusterStart(get(start))) {
+			start = incr(start);
+		}
+
+		// the scan follows the quotients from start, so a cluster wrapping
+		// past the end of the table yields its smallest quotients last
+		long index = start;
+		long quotient = start;
+		int visited = 0;
+		int wrap = 0;
+		while (visited < count) {
+			long slot = get(index);
+			if (isClusterStart(slot)) {
+				quotient = index;
+			} else if (isRunStart(slot)) {
+				do {
+					quotient = incr(quotient);
+				} while (!isOccupied(get(quotient)));
+			}
+			index = incr(index);
+			if (!isEmpty(slot)) {
+				if (wrap == 0 && quotient < start) {
+					wrap = visited;
+				}
+				res[visited++] = (quotient << remainderBits) | remainder(slot);
+			}
+		}
+
+		if (wrap > 0) {
+			long[] sorted = new long[count];
+			System.arraycopy(res, wrap, sorted, 0, count - wrap);
+			System.arraycopy(res, 0, sorted, count - wrap, wrap);
+			res = sorted;
+		}
+		return res;
+	}
+
+	// Filter
+
+	@Override
+	public void add(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key can not be null");
+		}
+
+		insert(fingerprint(key));
+	}
+
+	@Override
+	public boolean membershipTest(Key key) {
+		if (key == null) {
+			return false;
+		}
+
+		return contains(fingerprint(key));
+	}
+
+	@Override
+	public void add(byte[] bytes, int offset, int length) {
+		HashFunction.checkSlice(bytes, offset, length);
+		insert(fingerprint(hash.hashFunction.hash64(bytes, offset, length, 0)));
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		HashFunction.checkSlice(bytes, offset, length);
+		return contains(fingerprint(hash.hashFunction.hash64(bytes, offset, length, 0)));
+	}
+
+	@Override
+	public void add(ByteBuffer buffer, int offset, int length) {
+		HashFunction.checkSlice(buffer, offset, length);
+		insert(fingerprint(hash.hashFunction.hash64(buffer, offset, length, 0)));
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		HashFunction.checkSlice(buffer, offset, length);
+		return contains(fingerprint(hash.hashFunction.hash64(buffer, offset, length, 0)));
+	}
+
+	/**
+	 * Removes a specified key from <i>this</i> quotient filter.
+	 * <p>
+	 * The key must have been added before: deleting a key that was not, but
+	 * tests as a false positive, removes the fingerprint of another key.
+	 *
+	 * @param key  The key to remove.
+	 * @throws IllegalArgumentException if the key does not belong to <i>this</i> filter.
+	 */
+	public void delete(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key may not be null");
+		}
+		if (!remove(fingerprint(key))) {
+			throw new IllegalArgumentException("Key is not a member");
+		}
+	}
+
+	/**
+	 * Doubles the number of slots of <i>this</i> filter, taking one bit of
+	 * each fingerprint from the remainder to the quotient.
+	 *
+	 * @throws IllegalStateException if remainders are down to one bit, or the table to 2<sup>30</sup> slots.
+	 */
+	public void expand() {
+		if (remainderBits == 1 || quotientBits == 30) {
+			throw new IllegalStateException("filter cannot be expanded");
+		}
+
+		long[] fps = fingerprints();
+		init(quotientBits + 1, remainderBits - 1);
+		this.vectorSize = 1 << quotientBits;
+		this.hash = new HashFunction(this.vectorSize, this.nbHash, this.hashType);
+		for (int i = 0; i < fps.length; i++) {
+			insert(fps[i]);
+		}
+	}
+
+	/**
+	 * @return The number of keys in <i>this</i> filter.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Merges the fingerprints of the specified filter into <i>this</i> one,
+	 * expanding <i>this</i> filter until the union fits at a load of 75%.
+	 * <p>
+	 * Both filters must use the same hash function and fingerprint size.
+	 *
+	 * @throws IllegalStateException if the union does not fit even once <i>this</i>
+	 *         filter is fully expanded, in which case <i>this</i> filter is left unchanged.
+	 */
+	@Override
+	public void or(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be or-ed");
+		}
+
+		QuotientFilter other = (QuotientFilter) filter;
+		long total = (long) count + other.count;
+
+		// plan the expansions first, so that nothing changes if the union cannot fit
+		int expansions = 0;
+		while (total * 4 > 3L << (quotientBits + expansions)
+				&& remainderBits - expansions > 1 && quotientBits + expansions < 30) {
+			expansions++;
+		}
+		if (total > 1L << (quotientBits + expansions)) {
+			throw new IllegalStateException("union of " + total + " keys does not fit "
+					+ (1L << (quotientBits + expansions)) + " slots");
+		}
+
+		long[] fps = other.fingerprints();
+		for (int i = 0; i < expansions; i++) {
+			expand();
+		}
+
+		for (int i = 0; i < fps.length; i++) {
+			insert(fps[i]);
+		}
+	}
+
+	@Override
+	public void and(Filter filter) {
+		throw new UnsupportedOperationException("and() is undefined for " + this.getClass().getName());
+	}
+
+	@Override
+	public void xor(Filter filter) {
+		throw new UnsupportedOperationException("xor() is undefined for " + this.getClass().getName());
+	}
+
+	@Override
+	public void not() {
+		throw new UnsupportedOperationException("not() is undefined for " + this.getClass().getName());
+	}
+
+	/**
+	 * Lists the fingerprints, in increasing order of quotient then remainder.
+	 */
+	@Override
+	public String toString() {
+		long[] fps = fingerprints();
+		StringBuilder res = new StringBuilder("{");
+		for (int i = 0; i < fps.length; i++) {
+			if (i > 0) {
+				res.append(", ");
+			}
+			res.append(fps[i]);
+		}
+		return res.append('}').toString();
+	}
+
+	@Override
+	public Object clone() {
+		return new QuotientFilter(this);
+	}
+
+	private boolean isCompatible(Filter filter) {
+		if (filter == null) return false;
+		if (filter.getClass() != this.getClass()) return false;
+		if (filter.hashType != this.hashType) return false;
+
+		QuotientFilter other = (QuotientFilter) filter;
+		if (other.quotientBits + other.remainderBits != this.quotientBits + this.remainderBits) return false;
+
+		return true;
+	}
+
+}
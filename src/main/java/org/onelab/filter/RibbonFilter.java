@@ -0,0 +1,401 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements an immutable <i>standard Ribbon filter</i> with a ribbon width
+ * of 64, as defined by Dillinger and Walzer.
+ * <p>
+ * The filter is built once from a set of keys and can then only be queried.
+ * Each key maps to a 64-bit coefficient row starting at a column derived
+ * from its hash, and to an <code>r</code>-bit fingerprint. Construction
+ * solves the linear system, over GF(2), whose equations state that the
+ * coefficients of each key select solution columns xor-ing to its
+ * fingerprint; the banded shape of the system lets it be solved by Gaussian
+ * elimination as the keys are added. A membership test reads
+ * <code>2r</code> consecutive words of the solution and compares the parity
+ * of each bit plane with the fingerprint.
+ * <p>
+ * With about <code>1.1 n + 64</code> columns of <code>r</code> bits, a key
+ * costs about <code>1.1 r</code> bits for a false positive rate of
+ * 2<sup>-r</sup>, close to the <code>r</code> bits lower bound, where a Bloom
+ * filter needs about <code>1.44 r</code>.
+ * <p>
+ * Solving may fail for a given hash seed, in which case it is retried with
+ * another seed, and with more columns after a few failures. Keys added more
+ * than once are only stored once. Adding keys after construction and the
+ * logical operations are not supported.
+ *
+ * @see org.onelab.filter.Filter The general behavior of a filter
+ *
+ * @see <a href="https://arxiv.org/abs/2103.02515">
+ * 			Ribbon filter: practically smaller than Bloom and Xor</a>
+ */
+public class RibbonFilter extends Filter {
+	/** The number of columns a coefficient row spans. */
+	public static final int RIBBON_WIDTH = 64;
+
+	/** The space overhead in percent, before the last {@link #RIBBON_WIDTH} columns. */
+	private static final int OVERHEAD_PERCENT = 10;
+
+	/** The number of seeds tried before adding columns. */
+	private static final int ATTEMPTS_PER_SIZE = 4;
+
+	/** The number of keys in the filter. */
+	protected final int size;
+
+	/** The number of bits of a fingerprint. */
+	protected final int resultBits;
+
+	/** The seed mixed with the hash of each key, chosen at construction. */
+	protected final long seed;
+
+	/**
+	 * The solution, one bit plane per fingerprint bit, interleaved by blocks
+	 * of 64 columns: bit <code>j</code> of column <code>i</code> is bit
+	 * <code>i % 64</code> of word <code>(i / 64) * r + j</code>.
+	 */
+	protected final long[] solution;
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds a Ribbon filter holding the specified keys.
+	 *
+	 * @param keys  The keys.
+	 * @param resultBits  The number of bits of a fingerprint, from 1 to 32.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 */
+	public RibbonFilter(Key[] keys, int resultBits, int hashType) {
+		this(keys == null ? null : Arrays.asList(keys), resultBits, hashType);
+	}
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds a Ribbon filter holding the specified keys.
+	 *
+	 * @param keys  The keys.
+	 * @param resultBits  The number of bits of a fingerprint, from 1 to 32.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 */
+	public RibbonFilter(Collection<Key> keys, int resultBits, int hashType) {
+		this(hashes(keys, hashType), resultBits, hashType);
+	}
+
+	private RibbonFilter(long[] hashes, int resultBits, int hashType) {
+		super(columns(hashes.length, resultBits, 0), 1, hashType);
+
+		this.size = hashes.length;
+		this.resultBits = resultBits;
+
+		int columns = vectorSize;
+		long[] coefficients = new long[columns];
+		int[] results = new int[columns];
+		long s = 0x9e3779b97f4a7c15L;
+		for (int attempt = 1; !band(hashes, s, columns, coefficients, results); attempt++) {
+			s = mix(s);
+			if (attempt % ATTEMPTS_PER_SIZE == 0) {
+				columns = columns(hashes.length, resultBits, attempt / ATTEMPTS_PER_SIZE);
+				coefficients = new long[columns];
+				results = new int[columns];
+			}
+		}
+		if (columns != vectorSize) {
+			this.vectorSize = columns;
+			this.hash = new HashFunction(this.vectorSize, this.nbHash, this.hashType);
+		}
+		this.seed = s;
+		this.solution = new long[blocks(columns) * resultBits];
+		solve(coefficients, results);
+	}
+
+	/**
+	 * Copy constructor, the copy sharing the immutable solution.
+	 */
+	private RibbonFilter(RibbonFilter other) {
+		super(other.vectorSize, other.nbHash, other.hashType);
+
+		this.size = other.size;
+		this.resultBits = other.resultBits;
+		this.seed = other.seed;
+		this.solution = other.solution;
+	}
+
+	/**
+	 * @return The distinct 64-bit hashes of the keys.
+	 */
+	private static long[] hashes(Collection<Key> keys, int hashType) {
+		if (keys == null) {
+			throw new IllegalArgumentException("keys may not be null");
+		}
+		Hash hashFunction = Hash.getInstance(hashType);
+		if (hashFunction == null) {
+			throw new IllegalArgumentException("hashType must be known");
+		}
+
+		long[] hashes = new long[keys.size()];
+		int n = 0;
+		for (Key key : keys) {
+			hashes[n++] = hash64(hashFunction, key);
+		}
+		Arrays.sort(hashes);
+		int distinct = 0;
+		for (int i = 0; i < n; i++) {
+			if (i == 0 || hashes[i] != hashes[i - 1]) {
+				hashes[distinct++] = hashes[i];
+			}
+		}
+		return Arrays.copyOf(hashes, distinct);
+	}
+
+	/**
+	 * @return The number of columns for <code>n</code> keys, 5% more per <code>growth</code>.
+	 */
+	private static int columns(int n, int resultBits, int growth) {
+		if (resultBits < 1 || resultBits > Integer.SIZE) {
+			throw new IllegalArgumentException("resultBits must be between 1 and " + Integer.SIZE);
+		}
+		long columns = n + (long) n * (OVERHEAD_PERCENT + 5 * growth) / 100 + RIBBON_WIDTH;
+		if (blocks(columns) * resultBits > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("too many keys");
+		}
+		return (int) columns;
+	}
+
+	/** @return The number of 64-column blocks of the solution. */
+	private static long blocks(long columns) {
+		return (columns + Long.SIZE - 1) >>> 6;
+	}
+
+	private static int blocks(int columns) {
+		return (int) blocks((long) columns);
+	}
+
+	/**
+	 * Reduces the equations of the keys to an upper triangular band, row
+	 * <code>i</code> holding an equation whose first coefficient is column
+	 * <code>i</code>.
+	 *
+	 * @return <code>false</code> if the equations are inconsistent with this seed.
+	 */
+	private boolean band(long[] keyHashes, long s, int columns, long[] coefficients, int[] results) {
+		Arrays.fill(coefficients, 0L);
+		Arrays.fill(results, 0);
+		int starts = columns - RIBBON_WIDTH + 1;
+		int mask = resultMask();
+		for (int k = 0; k < keyHashes.length; k++) {
+			long h = mix(keyHashes[k] + s);
+			int i = start(h, starts);
+			long c = coefficient(h);
+			int r = fingerprint(h, mask);
+			while (true) {
+				if (coefficients[i] == 0) {
+					coefficients[i] = c;
+					results[i] = r;
+					break;
+				}
+				c ^= coefficients[i];
+				r ^= results[i];
+				if (c == 0) {
+					if (r != 0) {
+						return false;
+					}
+					break;
+				}
+				int shift = Long.numberOfTrailingZeros(c);
+				i += shift;
+				c >>>= shift;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Fills the solution by back substitution, from the last column to the
+	 * first. Columns without an equation get arbitrary bits.
+	 */
+	private void solve(long[] coefficients, int[] results) {
+		long[] windows = new long[resultBits];
+		for (int i = coefficients.length - 1; i >= 0; i--) {
+			long c = coefficients[i] >>> 1;
+			int r = coefficients[i] == 0 ? (int) mix(seed + i) : results[i];
+			int base = (i >>> 6) * resultBits;
+			for (int j = 0; j < resultBits; j++) {
+				long bit = ((r >>> j) ^ Long.bitCount(c & windows[j])) & 1;
+				windows[j] = (windows[j] << 1) | bit;
+				solution[base + j] |= bit << i;
+			}
+		}
+	}
+
+	/**
+	 * Not supported, a Ribbon filter is immutable.
+	 */
+	@Override
+	public void add(Key key) {
+		throw new UnsupportedOperationException("add() is undefined for " + this.getClass().getName());
+	}
+
+	@Override
+	public boolean membershipTest(Key key) {
+		if (key == null) {
+			return false;
+		}
+
+		return membershipTestHash(hash64(hash.hashFunction, key));
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		HashFunction.checkSlice(bytes, offset, length);
+		return membershipTestHash(hash.hashFunction.hash64(bytes, offset, length, 0));
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		HashFunction.checkSlice(buffer, offset, length);
+		return membershipTestHash(hash.hashFunction.hash64(buffer, offset, length, 0));
+	}
+
+	/**
+	 * Determines whether a key given by its 64-bit hash belongs to <i>this</i> filter.
+	 */
+	private boolean membershipTestHash(long keyHash) {
+		long h = mix(keyHash + seed);
+		int start = start(h, vectorSize - RIBBON_WIDTH + 1);
+		long c = coefficient(h);
+		int base = (start >>> 6) * resultBits;
+		int offset = start & 63;
+		int result = 0;
+		for (int j = 0; j < resultBits; j++) {
+			long window = solution[base + j] >>> offset;
+			if (offset != 0) {
+				window |= solution[base + resultBits + j] << (Long.SIZE - offset);
+			}
+			result |= (Long.bitCount(window & c) & 1) << j;
+		}
+		return result == fingerprint(h, resultMask());
+	}
+
+	/**
+	 * @return The number of keys in <i>this</i> filter.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private static long hash64(Hash hashFunction, Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key can not be null");
+		}
+		byte[] b = key.getBytes();
+		if (b == null || b.length == 0) {
+			throw new IllegalArgumentException("key length must be > 0");
+		}
+		return hashFunction.hash64(b, b.length, 0);
+	}
+
+	private int resultMask() {
+		return -1 >>> (Integer.SIZE - resultBits);
+	}
+
+	/** @return The first column of the equation, in <code>[0, starts)</code>. */
+	private static int start(long h, int starts) {
+		return (int) (((h >>> 32) * starts) >>> 32);
+	}
+
+	/** @return The coefficients, the first one being always set. */
+	private static long coefficient(long h) {
+		return mix(h) | 1;
+	}
+
+	private static int fingerprint(long h, int mask) {
+		return (int) h & mask;
+	}
+
+	/** The finalizer of MurmurHash3. */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	@Override
+	public void and(Filter filter) {
+		throw new UnsupportedOperationException("and() is undefined for " + this.getClass().getName());
+	}
+
+	@Override
+	public void or(Filter filter) {
+		throw new UnsupportedOperationException("or() is undefined for " + this.getClass().getName());
+	}
+
+	@Override
+	public void xor(Filter filter) {
+		throw new UnsupportedOperationException("xor() is undefined for " + this.getClass().getName());
+	}
+
+	@Override
+	public void not() {
+		throw new UnsupportedOperationException("not() is undefined for " + this.getClass().getName());
+	}
+
+	/**
+	 * Lists the solution, one <code>r</code>-bit value per column.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder("[");
+		for (int i = 0; i < vectorSize; i++) {
+			if (i > 0) {
+				res.append(", ");
+			}
+			long value = 0;
+			int base = (i >>> 6) * resultBits;
+			for (int j = 0; j < resultBits; j++) {
+				value |= ((solution[base + j] >>> i) & 1) << j;
+			}
+			res.append(value);
+		}
+		return res.append(']').toString();
+	}
+
+	@Override
+	public Object clone() {
+		return new RibbonFilter(this);
+	}
+
+}
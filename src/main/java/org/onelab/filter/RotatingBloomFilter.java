@@ -7,6 +7,9 @@ package org.onelab.filter;
  * Licensed to the Apache Software Foundation (ASF).
  */
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import org.apache.hadoop.hbase.util.Hash;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,10 +22,24 @@ public class RotatingBloomFilter extends Filter {
 	protected static final String LINE_SEPARATOR = new String(new byte[]{Character.LINE_SEPARATOR});
 
 	protected BloomFilter[] filters;
+	protected int currentNumberOfBloomFilters;
+	protected int indexOfOldestBloomFilter;
 	protected int currentNumberOfKeys; 
 	protected int maximumNumberOfKeysPerFilter; 
 	protected int maximumNumberOfBloomFilters;
 
+	/**
+	 * The positions of the key being tested, computed once for all the rows.
+	 * Each thread has its own array, so that concurrent lookups do not
+	 * overwrite each other's positions and none allocates.
+	 */
+	private final ThreadLocal<int[]> positions = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[nbHash];
+		}
+	};
+
 	/**
 	 * Constructor.
 	 * <p>
@@ -36,14 +53,33 @@ public class RotatingBloomFilter extends Filter {
 	 */
 	public RotatingBloomFilter(int vectorSize, int nbHash, int hashType, 
 			int maximumNumberOfKeysPerFilter, int maximumNumberOfBloomFilters) {
-		super(vectorSize, nbHash, hashType);
+		this(vectorSize, nbHash, hashType, HashFunction.CHAINED_HASHING, 
+				maximumNumberOfKeysPerFilter, maximumNumberOfBloomFilters);
+	}
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds an empty Rotating Bloom filter.
+	 * 
+	 * @param vectorSize The number of bits in the vector.
+	 * @param nbHash The number of hash function to consider.
+	 * @param hashType type of the hashing function (see {@link Hash}).
+	 * @param hashScheme scheme used to derive the positions of a key (see {@link HashFunction}).
+	 * @param maximumNumberOfKeysPerFilter The threshold for the maximum number of keys to record in a rotating Bloom filter row.
+	 * @param maximumNumberOfBloomFilters The threshold for the maximum number of rows.
+	 */
+	public RotatingBloomFilter(int vectorSize, int nbHash, int hashType, int hashScheme, 
+			int maximumNumberOfKeysPerFilter, int maximumNumberOfBloomFilters) {
+		super(vectorSize, nbHash, hashType, hashScheme);
 
 		this.maximumNumberOfKeysPerFilter = maximumNumberOfKeysPerFilter;
 		this.maximumNumberOfBloomFilters = maximumNumberOfBloomFilters;
 		this.currentNumberOfKeys = 0;
 
 		filters = new BloomFilter[1];
-		filters[0] = new BloomFilter(this.vectorSize, this.nbHash, this.hashType);
+		filters[0] = new BloomFilter(this.vectorSize, this.nbHash, this.hashType, this.hashScheme);
+		currentNumberOfBloomFilters = 1;
 	}
 
 	@Override
@@ -52,18 +88,12 @@ public class RotatingBloomFilter extends Filter {
 			throw new IllegalArgumentException("Key can not be null");
 		}
 
-		BloomFilter bf = getActiveStandardBF();
-
-		if (bf == null) {
-			addRow();
-			bf = filters[filters.length - 1];
-			currentNumberOfKeys = 0;
-		}
-
-		bf.add(key);
+		nextRow().add(key);
 
 		currentNumberOfKeys++;
-		LOG.debug("Added key \"{}\" to BloomFilter in position {}, current number of keys incremented at {}", new Object[] { new String(key.getBytes()), (filters.length - 1), currentNumberOfKeys } );
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Added key \"{}\" to BloomFilter in position {}, current number of keys incremented at {}", new Object[] { new String(key.getBytes()), (currentNumberOfBloomFilters - 1), currentNumberOfKeys } );
+		}
 	}
 
 	@Override
@@ -72,39 +102,128 @@ public class RotatingBloomFilter extends Filter {
 			return false;
 		}
 
-		for (int i = 0; i < filters.length; i++) {
-			if (filters[i].membershipTest(key)) {
+		int i;
+		if (currentNumberOfBloomFilters == 1) {
+			// a single row tests each position as soon as it is computed
+			i = getRow(0).membershipTest(key) ? 0 : -1;
+		} else {
+			int[] positions = this.positions.get();
+			hash.hash(key, positions);
+			i = find(positions);
+		}
+		if (i >= 0) {
+			if (LOG.isDebugEnabled()) {
 				LOG.debug("Found a match for keyword \"{}\" in the BloomFilter in position {}", new String(key.getBytes()), i);
-				return true;
 			}
+			return true;
 		}
 
 		return false;
 	}
 
+	@Override
+	public void add(byte[] bytes, int offset, int length) {
+		HashFunction.checkSlice(bytes, offset, length);
+		nextRow().add(bytes, offset, length);
+		currentNumberOfKeys++;
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		if (currentNumberOfBloomFilters == 1) {
+			return getRow(0).membershipTest(bytes, offset, length);
+		}
+
+		int[] positions = this.positions.get();
+		hash.hash(bytes, offset, length, positions);
+		return find(positions) >= 0;
+	}
+
+	@Override
+	public void add(ByteBuffer buffer, int offset, int length) {
+		HashFunction.checkSlice(buffer, offset, length);
+		nextRow().add(buffer, offset, length);
+		currentNumberOfKeys++;
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		if (currentNumberOfBloomFilters == 1) {
+			return getRow(0).membershipTest(buffer, offset, length);
+		}
+
+		int[] positions = this.positions.get();
+		hash.hash(buffer, offset, length, positions);
+		return find(positions) >= 0;
+	}
+
 	/**
-	 * Adds a new row to <i>this</i> rotating Bloom filter.
+	 * @return The row receiving the next key, after adding or rotating a row if the active one is full.
 	 */
-	private void addRow() {
-		BloomFilter[] tmp;
-		if ( filters.length < maximumNumberOfBloomFilters ) { // add new rows
-			tmp = new BloomFilter[filters.length + 1];
+	private BloomFilter nextRow() {
+		BloomFilter bf = getActiveStandardBF();
 
-			for (int i = 0; i < filters.length; i++) {
-				tmp[i] = (BloomFilter) filters[i].clone();
+		if (bf == null) {
+			addRow();
+			bf = getRow(currentNumberOfBloomFilters - 1);
+			currentNumberOfKeys = 0;
+		}
+		return bf;
+	}
+
+	/**
+	 * @param positions  The positions of a key, computed once for all the rows.
+	 * @return The age rank of the first row holding the key, -1 if there is none.
+	 */
+	private int find(int[] positions) {
+		for (int i = 0; i < currentNumberOfBloomFilters; i++) {
+			if (getRow(i).membershipTest(positions)) {
+				return i;
 			}
-			LOG.debug("Increased the size of array of Bloom filters to {}", tmp.length);
-		} else { // rotate, drop the oldest row (i.e. i=0)
-			tmp = new BloomFilter[filters.length];
+		}
+		return -1;
+	}
 
-			for (int i = 0; i < filters.length - 1; i++) {
-				tmp[i] = (BloomFilter) filters[i + 1].clone();
+	/**
+	 * Adds a new row to <i>this</i> rotating Bloom filter.
+	 * <p>
+	 * Until there are <code>maximumNumberOfBloomFilters</code> rows, a row is
+	 * allocated and the array holding them is doubled when it is full. From
+	 * then on, the array is a ring buffer: rotating clears the oldest row and
+	 * reuses it as the newest one, so it allocates nothing.
+	 */
+	private void addRow() {
+		if ( currentNumberOfBloomFilters < maximumNumberOfBloomFilters ) { // add new rows
+			if (currentNumberOfBloomFilters == filters.length) {
+				filters = Arrays.copyOf(filters, Math.min(2 * filters.length, maximumNumberOfBloomFilters));
 			}
-			LOG.debug("Rotating array of Bloom filters, size kept at {}", tmp.length);
+			filters[currentNumberOfBloomFilters++] = new BloomFilter(vectorSize, nbHash, hashType, hashScheme);
+			LOG.debug("Increased the number of Bloom filters to {}", currentNumberOfBloomFilters);
+		} else { // rotate, recycle the oldest row as the newest one
+			filters[indexOfOldestBloomFilter].bits.clear();
+			indexOfOldestBloomFilter = (indexOfOldestBloomFilter + 1) % currentNumberOfBloomFilters;
+			LOG.debug("Rotating array of Bloom filters, size kept at {}", currentNumberOfBloomFilters);
 		}
-		tmp[tmp.length - 1] = new BloomFilter(vectorSize, nbHash, hashType);			
+	}
 
-		filters = tmp;
+	/**
+	 * @param i  The age rank of the row, 0 being the oldest one.
+	 * @return The row of <i>this</i> rotating Bloom filter with that rank.
+	 */
+	private BloomFilter getRow(int i) {
+		int index = indexOfOldestBloomFilter + i;
+		if (index >= currentNumberOfBloomFilters) {
+			index -= currentNumberOfBloomFilters;
+		}
+		return filters[index];
 	}
 
 	/**
@@ -117,16 +236,18 @@ public class RotatingBloomFilter extends Filter {
 			return null;
 		}
 
-		LOG.debug("Active Bloom filter is now the BloomFilter in position {}", filters.length - 1);
-		return filters[filters.length - 1];
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Active Bloom filter is now the BloomFilter in position {}", currentNumberOfBloomFilters - 1);
+		}
+		return getRow(currentNumberOfBloomFilters - 1);
 	}
 
 	@Override
 	public String toString() {
 		StringBuilder res = new StringBuilder();
 
-		for (int i = 0; i < filters.length; i++) {
-			res.append(filters[i]);
+		for (int i = 0; i < currentNumberOfBloomFilters; i++) {
+			res.append(getRow(i));
 			res.append(LINE_SEPARATOR);
 		}
 		return res.toString();
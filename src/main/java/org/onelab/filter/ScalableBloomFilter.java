@@ -0,0 +1,396 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements a <i>scalable Bloom filter</i>, as defined by Almeida et al.
+ * <p>
+ * Like a {@link DynamicBloomFilter}, a scalable Bloom filter (SBF) adds a
+ * new Bloom filter, a <i>slice</i>, when the current one is full. Unlike it,
+ * slice <code>i</code> records <code>n<sub>0</sub> s<sup>i</sup></code> keys
+ * at an error ratio of <code>P (1 - r) r<sup>i</sup></code>, where
+ * <code>s</code> is the growth ratio and <code>r &lt; 1</code> the tightening
+ * ratio. The compound false positive rate, at most the sum of the slice
+ * error ratios, therefore stays below <code>P</code> however many keys are
+ * added, and the number of slices only grows logarithmically with it.
+ * <p>
+ * Each slice is sized for its error ratio <code>p</code> with
+ * <code>k = ceil(log<sub>2</sub>(1 / p))</code> hash functions and
+ * <code>n ln(1 / p) / (ln 2)<sup>2</sup></code> bits. As the number of hash
+ * functions grows with each slice, keys are hashed with
+ * {@link HashFunction#DOUBLE_HASHING} unless stated otherwise.
+ * <p>
+ * A slice is a {@link BloomFilter}, so it holds at most
+ * <code>Integer.MAX_VALUE</code> bits. Once a slice would need more, its
+ * size is capped there and it records as many keys as fit at its error
+ * ratio. Later slices keep tightening, so the bound on the false positive
+ * rate still holds and the filter takes keys without limit, a capped slice
+ * only recording a little fewer keys than the one before. The first slice
+ * must fit the cap: <code>initialCapacity</code> can be at most
+ * <code>Integer.MAX_VALUE (ln 2)<sup>2</sup> / ln(1 / p<sub>0</sub>)</code>,
+ * about 149 million keys for a 1% bound and the default tightening ratio.
+ *
+ * @see org.onelab.filter.Filter The general behavior of a filter
+ * @see org.onelab.filter.BloomFilter A Bloom filter
+ *
+ * @see <a href="http://gsd.di.uminho.pt/members/cbm/ps/dbloom.pdf">
+ * 			Scalable Bloom Filters</a>
+ */
+public class ScalableBloomFilter extends Filter {
+	/** The largest number of bits of a slice. */
+	static final int MAX_SLICE_BITS = Integer.MAX_VALUE;
+
+	/** The number of keys recorded by the first slice. */
+	protected final int initialCapacity;
+
+	/** The bound on the compound false positive rate. */
+	protected final double errorRate;
+
+	/** The ratio between the capacities of consecutive slices. */
+	protected final int growthRatio;
+
+	/** The ratio between the error ratios of consecutive slices. */
+	protected final double tighteningRatio;
+
+	/** The slices, only the first {@link #nbSlices} elements being used. */
+	protected BloomFilter[] slices;
+
+	/** The number of slices. */
+	protected int nbSlices;
+
+	/** The number of keys recorded in the last slice. */
+	protected int currentNbRecord;
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds an empty Scalable Bloom filter, doubling the capacity and
+	 * tightening the error ratio by 0.9 at each slice.
+	 *
+	 * @param initialCapacity  The number of keys recorded by the first slice.
+	 * @param errorRate  The bound on the false positive rate, between 0 and 1.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @throws IllegalArgumentException if the first slice would exceed <code>Integer.MAX_VALUE</code> bits.
+	 */
+	public ScalableBloomFilter(int initialCapacity, double errorRate, int hashType) {
+		this(initialCapacity, errorRate, 2, 0.9, hashType, HashFunction.DOUBLE_HASHING);
+	}
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds an empty Scalable Bloom filter.
+	 *
+	 * @param initialCapacity  The number of keys recorded by the first slice.
+	 * @param errorRate  The bound on the false positive rate, between 0 and 1.
+	 * @param growthRatio  The ratio between the capacities of consecutive slices, 2 or more.
+	 * @param tighteningRatio  The ratio between the error ratios of consecutive slices, between 0 and 1.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param hashScheme  scheme used to derive the positions of a key (see {@link HashFunction}).
+	 * @throws IllegalArgumentException if the first slice would exceed <code>Integer.MAX_VALUE</code> bits.
+	 */
+	public ScalableBloomFilter(int initialCapacity, double errorRate, int growthRatio,
+			double tighteningRatio, int hashType, int hashScheme) {
+		super(bitsFor(checkCapacity(initialCapacity, firstErrorRate(errorRate, tighteningRatio)),
+				firstErrorRate(errorRate, tighteningRatio)),
+				hashesFor(firstErrorRate(errorRate, tighteningRatio)), hashType, hashScheme);
+
+		if (growthRatio < 2) {
+			throw new IllegalArgumentException("growthRatio must be >= 2");
+		}
+
+		this.initialCapacity = initialCapacity;
+		this.errorRate = errorRate;
+		this.growthRatio = growthRatio;
+		this.tighteningRatio = tighteningRatio;
+		this.currentNbRecord = 0;
+
+		slices = new BloomFilter[4];
+		slices[0] = new BloomFilter(this.vectorSize, this.nbHash, this.hashType, this.hashScheme);
+		nbSlices = 1;
+	}
+
+	private static int checkCapacity(int initialCapacity, double p) {
+		if (initialCapacity <= 0) {
+			throw new IllegalArgumentException("initialCapacity must be > 0");
+		}
+		if (initialCapacity > maxCapacity(p)) {
+			throw new IllegalArgumentException("initialCapacity must be <= " + maxCapacity(p)
+					+ " for the first slice to fit " + MAX_SLICE_BITS + " bits");
+		}
+		return initialCapacity;
+	}
+
+	/**
+	 * @return The error ratio of the first slice.
+	 */
+	private static double firstErrorRate(double errorRate, double tighteningRatio) {
+		if (!(errorRate > 0 && errorRate < 1)) {
+			throw new IllegalArgumentException("errorRate must be > 0 and < 1");
+		}
+		if (!(tighteningRatio > 0 && tighteningRatio < 1)) {
+			throw new IllegalArgumentException("tighteningRatio must be > 0 and < 1");
+		}
+		return errorRate * (1 - tighteningRatio);
+	}
+
+	/**
+	 * @return The number of bits recording <code>capacity</code> keys at the
+	 *         error ratio <code>p</code>, at most {@link #MAX_SLICE_BITS}.
+	 */
+	private static int bitsFor(long capacity, double p) {
+		double bits = Math.ceil(capacity * -Math.log(p) / (Math.log(2) * Math.log(2)));
+		return (int) Math.max(1, Math.min(bits, MAX_SLICE_BITS));
+	}
+
+	/**
+	 * @return The number of keys {@link #MAX_SLICE_BITS} bits record at the error ratio <code>p</code>.
+	 */
+	private static long maxCapacity(double p) {
+		return Math.max(1, (long) (MAX_SLICE_BITS * Math.log(2) * Math.log(2) / -Math.log(p)));
+	}
+
+	/**
+	 * @return The number of hash functions reaching the error ratio <code>p</code>.
+	 */
+	private static int hashesFor(double p) {
+		return Math.max(1, (int) Math.ceil(-Math.log(p) / Math.log(2)));
+	}
+
+	@Override
+	public void add(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key can not be null");
+		}
+
+		nextSlice().add(key);
+
+		currentNbRecord++;
+	}
+
+	@Override
+	public boolean membershipTest(Key key) {
+		if (key == null) {
+			return false;
+		}
+
+		// the latest slices are the largest, so test them first
+		for (int i = nbSlices - 1; i >= 0; i--) {
+			if (slices[i].membershipTest(key)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public void add(byte[] bytes, int offset, int length) {
+		HashFunction.checkSlice(bytes, offset, length);
+		nextSlice().add(bytes, offset, length);
+		currentNbRecord++;
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		for (int i = nbSlices - 1; i >= 0; i--) {
+			if (slices[i].membershipTest(bytes, offset, length)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public void add(ByteBuffer buffer, int offset, int length) {
+		HashFunction.checkSlice(buffer, offset, length);
+		nextSlice().add(buffer, offset, length);
+		currentNbRecord++;
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		for (int i = nbSlices - 1; i >= 0; i--) {
+			if (slices[i].membershipTest(buffer, offset, length)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return The slice receiving the next key, after adding a slice if the last one is full.
+	 */
+	private BloomFilter nextSlice() {
+		if (currentNbRecord >= getSliceCapacity(nbSlices - 1)) {
+			addSlice();
+			currentNbRecord = 0;
+		}
+		return slices[nbSlices - 1];
+	}
+
+	/**
+	 * @param i  The slice index.
+	 * @return The number of keys recorded by slice <code>i</code>,
+	 *         <code>initialCapacity * growthRatio<sup>i</sup></code> unless
+	 *         the slice is capped at {@link #MAX_SLICE_BITS} bits.
+	 */
+	public long getSliceCapacity(int i) {
+		double capacity = initialCapacity * Math.pow(growthRatio, i);
+		return (long) Math.min(capacity, maxCapacity(getSliceErrorRate(i)));
+	}
+
+	/**
+	 * @param i  The slice index.
+	 * @return The error ratio of slice <code>i</code>.
+	 */
+	public double getSliceErrorRate(int i) {
+		return errorRate * (1 - tighteningRatio) * Math.pow(tighteningRatio, i);
+	}
+
+	/**
+	 * @return The bound on the false positive rate of <i>this</i> filter once
+	 *         all its slices are full, <code>1 - &prod;(1 - p<sub>i</sub>)</code>.
+	 */
+	public double getFalsePositiveBound() {
+		double none = 1;
+		for (int i = 0; i < nbSlices; i++) {
+			none *= 1 - getSliceErrorRate(i);
+		}
+		return 1 - none;
+	}
+
+	/**
+	 * @return The number of slices in <i>this</i> filter.
+	 */
+	public int getSliceCount() {
+		return nbSlices;
+	}
+
+	/**
+	 * Adds a new slice, larger and tighter than the last one.
+	 */
+	private void addSlice() {
+		double p = getSliceErrorRate(nbSlices);
+		BloomFilter slice = new BloomFilter(bitsFor(getSliceCapacity(nbSlices), p), hashesFor(p), hashType, hashScheme);
+
+		if (nbSlices == slices.length) {
+			slices = Arrays.copyOf(slices, 2 * nbSlices);
+		}
+		slices[nbSlices++] = slice;
+	}
+
+	@Override
+	public void and(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be and-ed");
+		}
+
+		ScalableBloomFilter sbf = (ScalableBloomFilter) filter;
+		for (int i = 0; i < nbSlices; i++) {
+			slices[i].and(sbf.slices[i]);
+		}
+	}
+
+	@Override
+	public void or(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be or-ed");
+		}
+
+		ScalableBloomFilter sbf = (ScalableBloomFilter) filter;
+		for (int i = 0; i < nbSlices; i++) {
+			slices[i].or(sbf.slices[i]);
+		}
+	}
+
+	@Override
+	public void xor(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be xor-ed");
+		}
+
+		ScalableBloomFilter sbf = (ScalableBloomFilter) filter;
+		for (int i = 0; i < nbSlices; i++) {
+			slices[i].xor(sbf.slices[i]);
+		}
+	}
+
+	@Override
+	public void not() {
+		for (int i = 0; i < nbSlices; i++) {
+			slices[i].not();
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder();
+
+		for (int i = 0; i < nbSlices; i++) {
+			res.append(slices[i]);
+			res.append(DynamicBloomFilter.LINE_SEPARATOR);
+		}
+		return res.toString();
+	}
+
+	@Override
+	public Object clone() {
+		ScalableBloomFilter sbf = new ScalableBloomFilter(initialCapacity, errorRate, growthRatio,
+				tighteningRatio, hashType, hashScheme);
+		sbf.currentNbRecord = this.currentNbRecord;
+		sbf.slices = new BloomFilter[this.slices.length];
+		sbf.nbSlices = this.nbSlices;
+		for (int i = 0; i < this.nbSlices; i++) {
+			sbf.slices[i] = (BloomFilter) this.slices[i].clone();
+		}
+		return sbf;
+	}
+
+	private boolean isCompatible(Filter filter) {
+		if (filter == null) return false;
+		if (filter.getClass() != this.getClass()) return false;
+		if (filter.hashType != this.hashType) return false;
+		if (filter.hashScheme != this.hashScheme) return false;
+
+		ScalableBloomFilter sbf = (ScalableBloomFilter) filter;
+		if (sbf.initialCapacity != this.initialCapacity) return false;
+		if (sbf.errorRate != this.errorRate) return false;
+		if (sbf.growthRatio != this.growthRatio) return false;
+		if (sbf.tighteningRatio != this.tighteningRatio) return false;
+		if (sbf.nbSlices != this.nbSlices) return false;
+
+		return true;
+	}
+
+}
@@ -0,0 +1,359 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements a <i>dynamic Bloom filter</i> whose bit matrix is stored
+ * transposed.
+ * <p>
+ * It records keys as a {@link DynamicBloomFilter} does, in rows of
+ * <code>nr</code> keys, but instead of one bit vector per row it keeps one
+ * bitmap per position, bit <code>r</code> of the bitmap of position
+ * <code>p</code> being bit <code>p</code> of row <code>r</code>. A membership
+ * test hashes the key once and ANDs the bitmaps of its <code>k</code>
+ * positions: a non-zero result names the rows that may hold the key. With up
+ * to 64 rows a test reads <code>k</code> words, whatever the number of rows;
+ * beyond, each bitmap is read sequentially, a word per 64 rows.
+ * <p>
+ * Bitmaps are sized for a multiple of 64 rows and doubled as rows are added,
+ * so appending a row is amortized constant time.
+ *
+ * @see org.onelab.filter.Filter The general behavior of a filter
+ * @see org.onelab.filter.DynamicBloomFilter The row-major dynamic Bloom filter
+ */
+public class TransposedDynamicBloomFilter extends Filter {
+	/**
+	 * The largest length of {@link #bitmaps}, some virtual machines reserving
+	 * a few header words in an array.
+	 */
+	static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Threshold for the maximum number of key to record in a dynamic Bloom filter row.
+	 */
+	protected final int nr;
+
+	/**
+	 * The number of keys recorded in the current standard active Bloom filter.
+	 */
+	protected int currentNbRecord;
+
+	/**
+	 * The number of rows in the matrix.
+	 */
+	protected int nbRows;
+
+	/**
+	 * The number of words of the bitmap of a position.
+	 */
+	protected int wordsPerPosition;
+
+	/**
+	 * The transposed matrix, the bitmap of position <code>p</code> taking the
+	 * words <code>p * wordsPerPosition</code> to
+	 * <code>(p + 1) * wordsPerPosition - 1</code>. Its length is at most
+	 * {@link #MAX_ARRAY_SIZE}, so the index of a word fits an <code>int</code>.
+	 */
+	protected long[] bitmaps;
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds an empty Dynamic Bloom filter.
+	 *
+	 * @param vectorSize  The number of bits in the vector.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param nr  The threshold for the maximum number of keys to record in a dynamic Bloom filter row.
+	 */
+	public TransposedDynamicBloomFilter(int vectorSize, int nbHash, int hashType, int nr) {
+		this(vectorSize, nbHash, hashType, HashFunction.CHAINED_HASHING, nr);
+	}
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds an empty Dynamic Bloom filter.
+	 *
+	 * @param vectorSize  The number of bits in the vector.
+	 * @param nbHash  The number of hash function to consider.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 * @param hashScheme  scheme used to derive the positions of a key (see {@link HashFunction}).
+	 * @param nr  The threshold for the maximum number of keys to record in a dynamic Bloom filter row.
+	 */
+	public TransposedDynamicBloomFilter(int vectorSize, int nbHash, int hashType, int hashScheme, int nr) {
+		super(vectorSize, nbHash, hashType, hashScheme);
+
+		this.nr = nr;
+		this.currentNbRecord = 0;
+		this.nbRows = 1;
+		this.wordsPerPosition = 1;
+		this.bitmaps = new long[bitmapsLength(this.vectorSize, 1)];
+	}
+
+	@Override
+	public void add(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key can not be null");
+		}
+
+		int[] positions = new int[nbHash];
+		hash.hash(key, positions);
+		add(positions);
+	}
+
+	@Override
+	public boolean membershipTest(Key key) {
+		if (key == null) {
+			return false;
+		}
+
+		// an array of this call's own, so that concurrent lookups do not
+		// overwrite each other's positions
+		int[] positions = new int[nbHash];
+		hash.hash(key, positions);
+		return membershipTest(positions);
+	}
+
+	@Override
+	public void add(byte[] bytes, int offset, int length) {
+		int[] positions = new int[nbHash];
+		hash.hash(bytes, offset, length, positions);
+		add(positions);
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		int[] positions = new int[nbHash];
+		hash.hash(bytes, offset, length, positions);
+		return membershipTest(positions);
+	}
+
+	@Override
+	public void add(ByteBuffer buffer, int offset, int length) {
+		int[] positions = new int[nbHash];
+		hash.hash(buffer, offset, length, positions);
+		add(positions);
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		int[] positions = new int[nbHash];
+		hash.hash(buffer, offset, length, positions);
+		return membershipTest(positions);
+	}
+
+	/**
+	 * Records a key given by its positions in the active row, adding a row
+	 * when the active one is full.
+	 */
+	private void add(int[] positions) {
+		if (currentNbRecord >= nr) {
+			addRow();
+			currentNbRecord = 0;
+		}
+
+		int row = nbRows - 1;
+		int word = row >>> 6;
+		long mask = 1L << row;
+		for (int i = 0; i < nbHash; i++) {
+			bitmaps[positions[i] * wordsPerPosition + word] |= mask;
+		}
+
+		currentNbRecord++;
+	}
+
+	/**
+	 * Determines whether a key given by its positions belongs to one of the
+	 * rows.
+	 */
+	private boolean membershipTest(int[] positions) {
+		for (int w = 0; w < wordsPerPosition; w++) {
+			long rows = -1L;
+			for (int i = 0; i < nbHash && rows != 0; i++) {
+				rows &= bitmaps[positions[i] * wordsPerPosition + w];
+			}
+			if (rows != 0) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public void and(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be and-ed");
+		}
+
+		long[] other = ((TransposedDynamicBloomFilter) filter).bitmaps;
+		for (int i = 0; i < bitmaps.length; i++) {
+			bitmaps[i] &= other[i];
+		}
+	}
+
+	@Override
+	public void or(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be or-ed");
+		}
+
+		long[] other = ((TransposedDynamicBloomFilter) filter).bitmaps;
+		for (int i = 0; i < bitmaps.length; i++) {
+			bitmaps[i] |= other[i];
+		}
+	}
+
+	@Override
+	public void xor(Filter filter) {
+		if (!isCompatible(filter)) {
+			throw new IllegalArgumentException("filters cannot be xor-ed");
+		}
+
+		long[] other = ((TransposedDynamicBloomFilter) filter).bitmaps;
+		for (int i = 0; i < bitmaps.length; i++) {
+			bitmaps[i] ^= other[i];
+		}
+	}
+
+	@Override
+	public void not() {
+		for (int p = 0; p < vectorSize; p++) {
+			for (int w = 0; w < wordsPerPosition; w++) {
+				bitmaps[p * wordsPerPosition + w] ^= rowMask(w);
+			}
+		}
+	}
+
+	/**
+	 * @return The number of rows in <i>this</i> dynamic Bloom filter.
+	 */
+	public int getRowCount() {
+		return nbRows;
+	}
+
+	/**
+	 * The rows are printed as a {@link DynamicBloomFilter} prints them.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder();
+
+		for (int r = 0; r < nbRows; r++) {
+			int word = r >>> 6;
+			long mask = 1L << r;
+			res.append('{');
+			boolean first = true;
+			for (int p = 0; p < vectorSize; p++) {
+				if ((bitmaps[p * wordsPerPosition + word] & mask) != 0) {
+					if (!first) {
+						res.append(", ");
+					}
+					res.append(p);
+					first = false;
+				}
+			}
+			res.append('}');
+			res.append(DynamicBloomFilter.LINE_SEPARATOR);
+		}
+		return res.toString();
+	}
+
+	@Override
+	public Object clone() {
+		TransposedDynamicBloomFilter dbf = new TransposedDynamicBloomFilter(vectorSize, nbHash, hashType, hashScheme, nr);
+		dbf.currentNbRecord = this.currentNbRecord;
+		dbf.nbRows = this.nbRows;
+		dbf.wordsPerPosition = this.wordsPerPosition;
+		dbf.bitmaps = this.bitmaps.clone();
+		return dbf;
+	}
+
+	/**
+	 * Adds a new row to <i>this</i> dynamic Bloom filter, doubling the bitmaps
+	 * when they have no room left.
+	 * 
+	 * @throws IllegalStateException if the doubled bitmaps do not fit an array.
+	 */
+	private void addRow() {
+		if (nbRows == wordsPerPosition * Long.SIZE) {
+			int words = 2 * wordsPerPosition;
+			long[] tmp = new long[bitmapsLength(vectorSize, words)];
+			for (int p = 0; p < vectorSize; p++) {
+				System.arraycopy(bitmaps, p * wordsPerPosition, tmp, p * words, wordsPerPosition);
+			}
+			bitmaps = tmp;
+			wordsPerPosition = words;
+		}
+
+		nbRows++;
+	}
+
+	/**
+	 * @param vectorSize  The number of positions.
+	 * @param words  The number of words of the bitmap of a position.
+	 * @return The length of the transposed matrix.
+	 * @throws IllegalStateException if the matrix does not fit an array.
+	 */
+	static int bitmapsLength(int vectorSize, int words) {
+		long length = (long) vectorSize * words;
+		if (length > MAX_ARRAY_SIZE) {
+			throw new IllegalStateException("cannot hold " + (words * Long.SIZE) + " rows of "
+					+ vectorSize + " bits, the matrix would exceed " + MAX_ARRAY_SIZE + " words");
+		}
+		return (int) length;
+	}
+
+	/**
+	 * @return The mask of the rows in use among the 64 rows of word <code>w</code> of a bitmap.
+	 */
+	private long rowMask(int w) {
+		int rows = nbRows - (w << 6);
+		if (rows >= Long.SIZE) return -1L;
+		if (rows <= 0) return 0L;
+		return -1L >>> (Long.SIZE - rows);
+	}
+
+	private boolean isCompatible(Filter filter) {
+		if (filter == null) return false;
+		if (filter.getClass() != this.getClass()) return false;
+		if (filter.vectorSize != this.vectorSize) return false;
+		if (filter.nbHash != this.nbHash) return false;
+		if (filter.hashType != this.hashType) return false;
+		if (filter.hashScheme != this.hashScheme) return false;
+		if (((TransposedDynamicBloomFilter)filter).nbRows != this.nbRows) return false;
+		if (((TransposedDynamicBloomFilter)filter).wordsPerPosition != this.wordsPerPosition) return false;
+		if (((TransposedDynamicBloomFilter)filter).nr != this.nr) return false;
+
+		return true;
+	}
+
+}
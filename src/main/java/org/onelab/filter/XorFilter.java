@@ -0,0 +1,343 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onelab.filter;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.apache.hadoop.hbase.util.Hash;
+
+/**
+ * Implements an immutable <i>xor filter</i> with 8-bit fingerprints, as
+ * defined by Graf and Lemire.
+ * <p>
+ * The filter is built once from a set of keys and can then only be queried.
+ * It stores a table of about <code>1.23 n</code> 8-bit fingerprints split in
+ * three blocks, filled so that the fingerprint of each key is the exclusive
+ * or of one entry per block, the three entries being derived from the hash of
+ * the key. A membership test thus reads exactly three bytes, and a key costs
+ * about 9.84 bits for a false positive rate of about 0.39%, where a Bloom
+ * filter would need about 11.5 bits.
+ * <p>
+ * Building the table may fail for a given hash seed, in which case it is
+ * retried with another seed; the expected number of attempts is close to one.
+ * Keys added more than once are only stored once. Adding keys after
+ * construction and the logical operations are not supported.
+ *
+ * @see org.onelab.filter.Filter The general behavior of a filter
+ *
+ * @see <a href="https://arxiv.org/abs/1912.08258">
+ * 			Xor Filters: Faster and Smaller Than Bloom and Cuckoo Filters</a>
+ */
+public class XorFilter extends Filter {
+	/** The number of keys in the filter. */
+	protected final int size;
+
+	/** The number of fingerprints in each of the three blocks. */
+	protected final int blockLength;
+
+	/** The seed mixed with the hash of each key, chosen at construction. */
+	protected final long seed;
+
+	/** The fingerprints, three blocks of {@link #blockLength} entries. */
+	protected final byte[] fingerprints;
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds a xor filter holding the specified keys.
+	 *
+	 * @param keys  The keys.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 */
+	public XorFilter(Key[] keys, int hashType) {
+		this(keys == null ? null : Arrays.asList(keys), hashType);
+	}
+
+	/**
+	 * Constructor.
+	 * <p>
+	 * Builds a xor filter holding the specified keys.
+	 *
+	 * @param keys  The keys.
+	 * @param hashType  type of the hashing function (see {@link Hash}).
+	 */
+	public XorFilter(Collection<Key> keys, int hashType) {
+		super(capacity(keys), 3, hashType);
+
+		long[] hashes = new long[keys.size()];
+		int n = 0;
+		for (Key key : keys) {
+			hashes[n++] = hash64(key);
+		}
+		// a key added twice would never peel
+		Arrays.sort(hashes);
+		int distinct = 0;
+		for (int i = 0; i < n; i++) {
+			if (i == 0 || hashes[i] != hashes[i - 1]) {
+				hashes[distinct++] = hashes[i];
+			}
+		}
+
+		this.size = distinct;
+		this.blockLength = this.vectorSize / 3;
+		this.fingerprints = new byte[3 * blockLength];
+
+		long[] stackHashes = new long[distinct];
+		int[] stackIndexes = new int[distinct];
+		long s = 0x9e3779b97f4a7c15L;
+		while (!peel(hashes, distinct, s, stackHashes, stackIndexes)) {
+			s = mix(s);
+		}
+		this.seed = s;
+
+		// assign the entries in reverse peeling order, each key owning the
+		// entry it was peeled from
+		for (int i = distinct - 1; i >= 0; i--) {
+			long h = stackHashes[i];
+			int found = stackIndexes[i];
+			int h0 = h0(h), h1 = h1(h), h2 = h2(h);
+			fingerprints[found] = 0;
+			fingerprints[found] = (byte) (fingerprint(h) ^ fingerprints[h0] ^ fingerprints[h1] ^ fingerprints[h2]);
+		}
+	}
+
+	/**
+	 * Copy constructor, the copy sharing the immutable table.
+	 */
+	private XorFilter(XorFilter other) {
+		super(other.vectorSize, other.nbHash, other.hashType);
+
+		this.size = other.size;
+		this.blockLength = other.blockLength;
+		this.seed = other.seed;
+		this.fingerprints = other.fingerprints;
+	}
+
+	/**
+	 * @return The number of fingerprints for the keys, a multiple of 3.
+	 */
+	private static int capacity(Collection<Key> keys) {
+		if (keys == null) {
+			throw new IllegalArgumentException("keys may not be null");
+		}
+		long capacity = 32 + (long) Math.ceil(1.23 * keys.size());
+		if (capacity > Integer.MAX_VALUE - 2) {
+			throw new IllegalArgumentException("too many keys");
+		}
+		return (int) (capacity / 3 * 3);
+	}
+
+	/**
+	 * Orders the keys so that each one owns an entry no key after it maps to.
+	 *
+	 * @return <code>false</code> if the keys cannot be ordered with this seed.
+	 */
+	private boolean peel(long[] keyHashes, int n, long s, long[] stackHashes, int[] stackIndexes) {
+		int capacity = 3 * blockLength;
+		int[] counts = new int[capacity];
+		long[] xors = new long[capacity];
+		for (int i = 0; i < n; i++) {
+			long h = mix(keyHashes[i] + s);
+			int h0 = h0(h), h1 = h1(h), h2 = h2(h);
+			counts[h0]++;
+			xors[h0] ^= h;
+			counts[h1]++;
+			xors[h1] ^= h;
+			counts[h2]++;
+			xors[h2] ^= h;
+		}
+
+		int[] queue = new int[capacity];
+		int queued = 0;
+		for (int i = 0; i < capacity; i++) {
+			if (counts[i] == 1) {
+				queue[queued++] = i;
+			}
+		}
+
+		int stacked = 0;
+		while (queued > 0) {
+			int index = queue[--queued];
+			if (counts[index] != 1) {
+				continue;
+			}
+			long h = xors[index];
+			stackHashes[stacked] = h;
+			stackIndexes[stacked] = index;
+			stacked++;
+
+			int h0 = h0(h), h1 = h1(h), h2 = h2(h);
+			queued = unlink(h0, h, counts, xors, queue, queued);
+			queued = unlink(h1, h, counts, xors, queue, queued);
+			queued = unlink(h2, h, counts, xors, queue, queued);
+		}
+
+		return stacked == n;
+	}
+
+	/**
+	 * Removes a key from an entry, queueing the entry if a single key is left.
+	 *
+	 * @return The new queue length.
+	 */
+	private static int unlink(int index, long h, int[] counts, long[] xors, int[] queue, int queued) {
+		counts[index]--;
+		xors[index] ^= h;
+		if (counts[index] == 1) {
+			queue[queued++] = index;
+		}
+		return queued;
+	}
+
+	/**
+	 * Not supported, a xor filter is immutable.
+	 */
+	@Override
+	public void add(Key key) {
+		throw new UnsupportedOperationException("add() is undefined for " + this.getClass().getName());
+	}
+
+	@Override
+	public boolean membershipTest(Key key) {
+		if (key == null) {
+			return false;
+		}
+
+		return membershipTestHash(hash64(key));
+	}
+
+	@Override
+	public boolean membershipTest(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return false;
+		}
+
+		HashFunction.checkSlice(bytes, offset, length);
+		return membershipTestHash(hash.hashFunction.hash64(bytes, offset, length, 0));
+	}
+
+	@Override
+	public boolean membershipTest(ByteBuffer buffer, int offset, int length) {
+		if (buffer == null) {
+			return false;
+		}
+
+		HashFunction.checkSlice(buffer, offset, length);
+		return membershipTestHash(hash.hashFunction.hash64(buffer, offset, length, 0));
+	}
+
+	/**
+	 * Determines whether a key given by its 64-bit hash belongs to <i>this</i> filter.
+	 */
+	private boolean membershipTestHash(long keyHash) {
+		long h = mix(keyHash + seed);
+		return fingerprint(h) == (byte) (fingerprints[h0(h)] ^ fingerprints[h1(h)] ^ fingerprints[h2(h)]);
+	}
+
+	/**
+	 * @return The number of keys in <i>this</i> filter.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private long hash64(Key key) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key can not be null");
+		}
+		byte[] b = key.getBytes();
+		if (b == null || b.length == 0) {
+			throw new IllegalArgumentException("key length must be > 0");
+		}
+		return hash.hashFunction.hash64(b, b.length, 0);
+	}
+
+	private int h0(long h) {
+		return reduce((int) h, blockLength);
+	}
+
+	private int h1(long h) {
+		return reduce((int) Long.rotateLeft(h, 21), blockLength) + blockLength;
+	}
+
+	private int h2(long h) {
+		return reduce((int) Long.rotateLeft(h, 42), blockLength) + 2 * blockLength;
+	}
+
+	/** @return <code>hash</code> mapped to <code>[0, n)</code> without a division. */
+	private static int reduce(int hash, int n) {
+		return (int) (((hash & 0xffffffffL) * n) >>> 32);
+	}
+
+	private static byte fingerprint(long h) {
+		return (byte) (h ^ (h >>> 32));
+	}
+
+	/** The finalizer of MurmurHash3. */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	@Override
+	public void and(Filter filter) {
+		throw new UnsupportedOperationException("and() is undefined for " + this.getClass().getName());
+	}
+
+	@Override
+	public void or(Filter filter) {
+		throw new UnsupportedOperationException("or() is undefined for " + this.getClass().getName());
+	}
+
+	@Override
+	public void xor(Filter filter) {
+		throw new UnsupportedOperationException("xor() is undefined for " + this.getClass().getName());
+	}
+
+	@Override
+	public void not() {
+		throw new UnsupportedOperationException("not() is undefined for " + this.getClass().getName());
+	}
+
+	/**
+	 * Lists the fingerprints, as unsigned bytes.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder("[");
+		for (int i = 0; i < fingerprints.length; i++) {
+			if (i > 0) {
+				res.append(", ");
+			}
+			res.append(fingerprints[i] & 0xff);
+		}
+		return res.append(']').toString();
+	}
+
+	@Override
+	public Object clone() {
+		return new XorFilter(this);
+	}
+
+}
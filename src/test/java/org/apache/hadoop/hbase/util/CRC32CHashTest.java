@@ -0,0 +1,65 @@
+package org.apache.hadoop.hbase.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class CRC32CHashTest {
+
+	/** CRC32C("123456789") is 0xe3069283. */
+	private static final byte[] CHECK = "123456789".getBytes();
+
+	@Test
+	public void testGetInstance() {
+		Hash hash = CRC32CHash.getInstance();
+		assertNotNull(hash);
+		assertSame(hash, CRC32CHash.getInstance());
+		assertSame(hash, Hash.getInstance(Hash.CRC32C_HASH));
+	}
+
+	@Test
+	public void testHash64() {
+		Hash hash = new CRC32CHash();
+		// finalizer of (seed << 32 | 0xe3069283)
+		assertEquals(0x4fc00c5a8b0f8f6aL, hash.hash64(CHECK, CHECK.length, 0));
+		assertEquals(0xe3b75337aa09a73eL, hash.hash64(CHECK, CHECK.length, 1));
+		assertEquals(0x4f743710f159d3bbL, hash.hash64(CHECK, CHECK.length, -1));
+		assertFalse(hash.hash64(CHECK, CHECK.length, 0) == hash.hash64(CHECK, CHECK.length - 1, 0));
+	}
+
+	@Test
+	public void testHash() {
+		Hash hash = CRC32CHash.getInstance();
+		assertEquals(0x8b0f8f6a, hash.hash(CHECK, CHECK.length, 0));
+		assertEquals(hash.hash(CHECK, CHECK.length, -1), hash.hash(CHECK));
+	}
+
+	@Test
+	public void testRepeatedHashesDoNotCarryState() throws Exception {
+		final Hash hash = CRC32CHash.getInstance();
+		final ByteBuffer direct = ByteBuffer.allocateDirect(CHECK.length + 2);
+		direct.put((byte) 0).put(CHECK).put((byte) 0).flip();
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0x4fc00c5a8b0f8f6aL, hash.hash64(CHECK, CHECK.length, 0));
+			assertEquals(0x4fc00c5a8b0f8f6aL, hash.hash64(direct, 1, CHECK.length, 0));
+		}
+
+		// another thread gets its own CRC
+		final long[] other = new long[1];
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				other[0] = hash.hash64(CHECK, 0, CHECK.length, 0);
+			}
+		};
+		thread.start();
+		thread.join();
+		assertEquals(0x4fc00c5a8b0f8f6aL, other[0]);
+	}
+
+}
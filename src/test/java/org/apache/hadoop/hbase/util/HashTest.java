@@ -1,8 +1,13 @@
 package org.apache.hadoop.hbase.util;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
 import org.junit.Test;
 
 public class HashTest {
@@ -34,6 +39,9 @@ public class HashTest {
 		assertEquals(Hash.MURMUR_HASH, MockHash.parseHashType("murmur"));
 		assertEquals(Hash.JENKINS_HASH, MockHash.parseHashType("JenkinS"));
 		assertEquals(Hash.MURMUR_HASH, MockHash.parseHashType("murMUR"));
+		assertEquals(Hash.MURMUR3_128, MockHash.parseHashType("murmur3"));
+		assertEquals(Hash.XXHASH64, MockHash.parseHashType("xxHash64"));
+		assertEquals(Hash.CRC32C_HASH, MockHash.parseHashType("CRC32C"));
 		assertEquals(Hash.INVALID_HASH, MockHash.parseHashType("ciao"));
 		assertEquals(Hash.INVALID_HASH, MockHash.parseHashType(null));
 	}
@@ -44,8 +52,11 @@ public class HashTest {
 		assertEquals(MurmurHash.getInstance(), MockHash.getInstance(Hash.MURMUR_HASH));
 		assertEquals(JenkinsHash.getInstance(), MockHash.getInstance(0));
 		assertEquals(MurmurHash.getInstance(), MockHash.getInstance(1));
+		assertEquals(MurmurHash3.getInstance(), MockHash.getInstance(Hash.MURMUR3_128));
+		assertEquals(XXHash64.getInstance(), MockHash.getInstance(Hash.XXHASH64));
+		assertEquals(CRC32CHash.getInstance(), MockHash.getInstance(Hash.CRC32C_HASH));
 		assertNull(MockHash.getInstance(-1));
-		assertNull(MockHash.getInstance(2));
+		assertNull(MockHash.getInstance(5));
 	}
 
 	@Test
@@ -81,4 +92,56 @@ public class HashTest {
 		assertEquals(3, hash.intval);
 	}
 
+	@Test
+	public void testHashSliceCopiesByDefault() {
+		MockHash hash = new MockHash();
+		byte[] bytes = new String("toto").getBytes();
+
+		assertEquals(1, hash.hash(bytes, 1, 2, 3));
+		assertArrayEquals(new String("ot").getBytes(), hash.bytes);
+		assertEquals(2, hash.length);
+		assertEquals(3, hash.intval);
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes);
+		assertEquals(1, hash.hash(direct, 2, 2, 4));
+		assertArrayEquals(new String("to").getBytes(), hash.bytes);
+		assertEquals(4, direct.position());
+	}
+
+	@Test
+	public void testSlicesMatchCopies() {
+		Random random = new Random(25);
+		for (int type = Hash.JENKINS_HASH; type <= Hash.CRC32C_HASH; type++) {
+			Hash hash = Hash.getInstance(type);
+			for (int length = 1; length <= 40; length++) {
+				int offset = random.nextInt(10);
+				byte[] bytes = new byte[offset + length + random.nextInt(10)];
+				random.nextBytes(bytes);
+				byte[] copy = Arrays.copyOfRange(bytes, offset, offset + length);
+				int seed = random.nextInt();
+				int expected = hash.hash(copy, length, seed);
+				long expected64 = hash.hash64(copy, length, seed);
+
+				ByteBuffer heap = ByteBuffer.wrap(bytes);
+				ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+				direct.put(bytes).position(3);
+				byte[] shifted = new byte[bytes.length + 1];
+				System.arraycopy(bytes, 0, shifted, 1, bytes.length);
+				ByteBuffer sliced = ByteBuffer.wrap(shifted, 1, bytes.length).slice();
+				ByteBuffer[] buffers = { heap, heap.asReadOnlyBuffer(), sliced, direct, direct.asReadOnlyBuffer() };
+
+				String message = "type " + type + ", length " + length;
+				assertEquals(message, expected, hash.hash(bytes, offset, length, seed));
+				assertEquals(message, expected64, hash.hash64(bytes, offset, length, seed));
+				for (ByteBuffer buffer : buffers) {
+					int position = buffer.position();
+					assertEquals(message, expected, hash.hash(buffer, offset, length, seed));
+					assertEquals(message, expected64, hash.hash64(buffer, offset, length, seed));
+					assertEquals(position, buffer.position());
+				}
+			}
+		}
+	}
+
 }
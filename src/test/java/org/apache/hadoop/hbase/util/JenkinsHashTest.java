@@ -40,6 +40,18 @@ public class JenkinsHashTest {
 		assertEquals(-644235423, hash.hash(bytes, bytes.length-2, 1));
 	}
 
+	@Test
+	public void testHash64() {
+		Hash hash = JenkinsHash.getInstance();
+		
+		byte[] bytes = "toto".getBytes();
+		assertEquals(-515368923, (int) (hash.hash64(bytes, bytes.length, -1) >>> 32));
+		assertEquals(-24554862, (int) (hash.hash64(bytes, bytes.length, 0) >>> 32));
+		assertEquals(1554336639, (int) (hash.hash64(bytes, bytes.length, 1) >>> 32));
+		assertEquals(-644235423, (int) (hash.hash64(bytes, bytes.length-2, 1) >>> 32));
+		assertEquals(0xdeadbeefL, hash.hash64(bytes, 0, 0) & 0xffffffffL);
+	}
+
 	@Test
 	public void testHash1() throws IOException {
 		InputStream in = this.getClass().getClassLoader().getResourceAsStream("lorem.txt");
@@ -0,0 +1,40 @@
+package org.apache.hadoop.hbase.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LegacyHashTest {
+
+	private static final int ROUNDS = 20000;
+
+	@Test
+	public void testJenkinsHash() {
+		check(JenkinsHash.getInstance(), LegacyJenkinsHash.getInstance());
+	}
+
+	@Test
+	public void testMurmurHash() {
+		check(MurmurHash.getInstance(), LegacyMurmurHash.getInstance());
+	}
+
+	/**
+	 * Compares both hashes on random keys of every length up to 100 bytes,
+	 * hashing a prefix of a longer array half of the time.
+	 */
+	private static void check(Hash hash, Hash legacy) {
+		Random rnd = new Random(42);
+		for (int i = 0; i < ROUNDS; i++) {
+			int length = i % 101;
+			byte[] bytes = new byte[rnd.nextBoolean() ? length : length + 1 + rnd.nextInt(16)];
+			rnd.nextBytes(bytes);
+			int seed = rnd.nextInt(4) == 0 ? rnd.nextInt(3) - 1 : rnd.nextInt();
+			String message = "length " + length + ", seed " + seed;
+			assertEquals(message, legacy.hash(bytes, length, seed), hash.hash(bytes, length, seed));
+			assertEquals(message, legacy.hash64(bytes, length, seed), hash.hash64(bytes, length, seed));
+		}
+	}
+
+}
@@ -0,0 +1,117 @@
+package org.apache.hadoop.hbase.util;
+
+/**
+ * The original port of MurmurHash 2.0 and MurmurHash64A, reading the input
+ * one byte at a time, kept to check that {@link MurmurHash} produces the same
+ * values.
+ */
+class LegacyMurmurHash extends Hash {
+  private static LegacyMurmurHash _instance = new LegacyMurmurHash();
+  
+  public static Hash getInstance() {
+    return _instance;
+  }
+  
+  public int hash(byte[] data, int length, int seed) {
+    int m = 0x5bd1e995;
+    int r = 24;
+
+    int h = seed ^ length;
+
+    int len_4 = length >> 2;
+
+    for (int i = 0; i < len_4; i++) {
+      int i_4 = i << 2;
+      int k = data[i_4 + 3];
+      k = k << 8;
+      k = k | (data[i_4 + 2] & 0xff);
+      k = k << 8;
+      k = k | (data[i_4 + 1] & 0xff);
+      k = k << 8;
+      k = k | (data[i_4 + 0] & 0xff);
+      k *= m;
+      k ^= k >>> r;
+      k *= m;
+      h *= m;
+      h ^= k;
+    }
+
+    // avoid calculating modulo
+    int len_m = len_4 << 2;
+    int left = length - len_m;
+
+    if (left != 0) {
+      if (left >= 3) {
+        h ^= (int) data[length - 3] << 16;
+      }
+      if (left >= 2) {
+        h ^= (int) data[length - 2] << 8;
+      }
+      if (left >= 1) {
+        h ^= (int) data[length - 1];
+      }
+
+      h *= m;
+    }
+
+    h ^= h >>> 13;
+    h *= m;
+    h ^= h >>> 15;
+
+    return h;
+  }
+
+  /**
+   * MurmurHash64A, the 64-bit variant of MurmurHash 2.0, computed in a single
+   * pass over the input. The seed is taken as an unsigned 32-bit value.
+   */
+  @Override
+  public long hash64(byte[] data, int length, int seed) {
+    long m = 0xc6a4a7935bd1e995L;
+    int r = 47;
+
+    long h = (seed & 0xffffffffL) ^ (length * m);
+
+    int len_8 = length >> 3;
+
+    for (int i = 0; i < len_8; i++) {
+      int i_8 = i << 3;
+      long k = data[i_8 + 7];
+      k = k << 8;
+      k = k | (data[i_8 + 6] & 0xff);
+      k = k << 8;
+      k = k | (data[i_8 + 5] & 0xff);
+      k = k << 8;
+      k = k | (data[i_8 + 4] & 0xff);
+      k = k << 8;
+      k = k | (data[i_8 + 3] & 0xff);
+      k = k << 8;
+      k = k | (data[i_8 + 2] & 0xff);
+      k = k << 8;
+      k = k | (data[i_8 + 1] & 0xff);
+      k = k << 8;
+      k = k | (data[i_8 + 0] & 0xff);
+      k *= m;
+      k ^= k >>> r;
+      k *= m;
+      h ^= k;
+      h *= m;
+    }
+
+    int len_m = len_8 << 3;
+    int left = length - len_m;
+
+    if (left != 0) {
+      for (int i = left - 1; i >= 0; i--) {
+        h ^= (long) (data[len_m + i] & 0xff) << (i << 3);
+      }
+      h *= m;
+    }
+
+    h ^= h >>> r;
+    h *= m;
+    h ^= h >>> r;
+
+    return h;
+  }
+}
@@ -0,0 +1,112 @@
+package org.apache.hadoop.hbase.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class MurmurHash3Test {
+
+	private static final byte[] FOX = "The quick brown fox jumps over the lazy dog".getBytes();
+
+	/** MurmurHash3_x64_128 of each prefix of {@link #FOX}, with a seed of 0. */
+	private static final long[][] PREFIXES = {
+		{ 0x0000000000000000L, 0x0000000000000000L }, // 0
+		{ 0x8c03777e9184689aL, 0x3ab5d6b4ba293e79L }, // 1
+		{ 0xd7dd0beaee68e3b9L, 0xa56fb69099026b97L }, // 2
+		{ 0x304f2652dcd66d9aL, 0xef385e5d15eabf42L }, // 3
+		{ 0xbd4301beaba07d9cL, 0xdfae3c4b8026dd1cL }, // 4
+		{ 0x6f7aac75205270feL, 0x76f5ebd390dac61fL }, // 5
+		{ 0x796e1100f3f66746L, 0xb2a07e0b1665ab1fL }, // 6
+		{ 0xf0d3843a5abcd5c9L, 0x9394b7f9c86d6073L }, // 7
+		{ 0x644baae4ad5b71cdL, 0x8eeef997e2881cdfL }, // 8
+		{ 0x37a06404b2a8f155L, 0xadbcc8ff3d6eccc0L }, // 9
+		{ 0x420e44df457484b8L, 0x9cabadd477515fe9L }, // 10
+		{ 0x87c320550739a882L, 0xfa91e8a5d66e7b9fL }, // 11
+		{ 0x61d6a1372f90f9cbL, 0xb66353ea7c002529L }, // 12
+		{ 0x3c600c93f99bfd3bL, 0xc3e13319056f26f4L }, // 13
+		{ 0xdcd216a95d6e6007L, 0x84c1eeb85c46c838L }, // 14
+		{ 0x48137cb864e39216L, 0xfd7baf64397ad64bL }, // 15
+		{ 0x9d1244f4af9b32c4L, 0x3d153c8b2c2a3aa6L }, // 16
+		{ 0x91f96376e757e9aeL, 0x9b44e58dae83eb0cL }, // 17
+		{ 0x4e85fa437c51ea55L, 0xab78a6c881f71c66L }, // 18
+		{ 0x85a60ea92caa4a2aL, 0xfde55440169b939eL }, // 19
+		{ 0xb9dce6db3c8c3cbfL, 0x689b6f71e0c7fa6eL }, // 20
+		{ 0x20f996ee33734f68L, 0x5908d0456c69f2ceL }, // 21
+		{ 0xef74c84e2d71c551L, 0x0edbb1a50e70ce5eL }, // 22
+		{ 0x25cc3b72e0851d67L, 0x937c3cfeaf07a94dL }, // 23
+		{ 0x71264eee42007ce5L, 0x32a8e9f120366d2bL }, // 24
+		{ 0xe48f444ca7740bd2L, 0x6ac81b382464ec36L }, // 25
+		{ 0x57a1942f3bec788eL, 0xaa18ef4be7a31844L }, // 26
+		{ 0x04bf77861f2fe51aL, 0x4bc4ddff57381b26L }, // 27
+		{ 0xfccf5dd1785bef0bL, 0x6a8339427a45d2d0L }, // 28
+		{ 0x3792e2c446d4f861L, 0xf442759b43112ab9L }, // 29
+		{ 0x89ac74e06f1c6a5dL, 0x4dd271890c8ebf03L }, // 30
+		{ 0x9b28b5ddd9c4c509L, 0x0d3c1cb80fe2f964L }, // 31
+		{ 0xdf6af91bb29bdacfL, 0x91a341c58df1f3a6L }, // 32
+		{ 0x68d135cdab7bb3ddL, 0xe617f8470728bb01L }, // 33
+		{ 0xcd700e4648853aaaL, 0x0a07f795bfad4c06L }, // 34
+		{ 0x02de7f197e4ab285L, 0xa2ba36a11a352e2bL }, // 35
+		{ 0xa2f2278ca9f6026dL, 0xeefbb6f61f3ccffcL }, // 36
+		{ 0x4fca2f8640b75d40L, 0xa86b5efb7671f7dcL }, // 37
+		{ 0x318942c2ef853379L, 0x4481aa8f0ac10b4aL }, // 38
+		{ 0x6905c88e62278d69L, 0x196d84469396924dL }, // 39
+		{ 0xe24636e0f1bdd992L, 0xdc2973433fbb4be5L }, // 40
+		{ 0x781185e3675d086fL, 0xcb7ff8502d7f8ef2L }, // 41
+		{ 0x1cb25671c9858a46L, 0xee9e7f533cf42933L }, // 42
+		{ 0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L }, // 43
+	};
+
+	@Test
+	public void testGetInstance() {
+		Hash hash = MurmurHash3.getInstance();
+		assertNotNull(hash);
+		assertSame(hash, MurmurHash3.getInstance());
+		assertSame(hash, Hash.getInstance(Hash.MURMUR3_128));
+	}
+
+	@Test
+	public void testHash128() {
+		MurmurHash3 hash = new MurmurHash3();
+		for (int length = 0; length <= FOX.length; length++) {
+			assertArrayEquals("length " + length, PREFIXES[length], hash.hash128(FOX, length, 0));
+		}
+		assertArrayEquals(new long[] { 0x691c1d73a800a18aL, 0x647d67096440b412L }, hash.hash128(FOX, FOX.length, -1));
+		assertArrayEquals(new long[] { 0x4610abe56eff5cb5L, 0x51622daa78f83583L }, hash.hash128(new byte[0], 0, 1));
+	}
+
+	@Test
+	public void testHash128Result() {
+		MurmurHash3 hash = new MurmurHash3();
+		long[] result = new long[3];
+		hash.hash128(FOX, FOX.length, 0, result);
+		assertEquals(PREFIXES[FOX.length][0], result[0]);
+		assertEquals(PREFIXES[FOX.length][1], result[1]);
+		assertEquals(0L, result[2]);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testHash128ShortResult() {
+		new MurmurHash3().hash128(FOX, FOX.length, 0, new long[1]);
+	}
+
+	@Test
+	public void testHash64() {
+		Hash hash = MurmurHash3.getInstance();
+		for (int length = 0; length <= FOX.length; length++) {
+			assertEquals(PREFIXES[length][0], hash.hash64(FOX, length, 0));
+		}
+	}
+
+	@Test
+	public void testHash() {
+		Hash hash = MurmurHash3.getInstance();
+		for (int length = 0; length <= FOX.length; length++) {
+			assertEquals((int) PREFIXES[length][0], hash.hash(FOX, length, 0));
+		}
+		assertEquals(hash.hash(FOX, FOX.length, -1), hash.hash(FOX));
+	}
+
+}
@@ -40,6 +40,18 @@ public class MurmurHashTest {
 		assertEquals(1443387981, hash.hash(bytes, bytes.length-2, 1));
 	}
 
+	@Test
+	public void testHash64() {
+		Hash hash = MurmurHash.getInstance();
+		
+		byte[] bytes = "The quick brown fox jumps over the lazy dog".getBytes();
+		for (int length = 0; length <= bytes.length; length++) {
+			assertEquals(hash.hash64(bytes, length, 0), hash.hash64(bytes, length, 0));
+			assertFalse(hash.hash64(bytes, length, 0) == hash.hash64(bytes, length, 1));
+		}
+		assertFalse(hash.hash64(bytes, 8, 0) == hash.hash64(bytes, 9, 0));
+	}
+
 	@Test
 	public void testHash1() throws IOException {
 		InputStream in = this.getClass().getClassLoader().getResourceAsStream("lorem.txt");
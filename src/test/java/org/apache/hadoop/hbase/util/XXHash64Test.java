@@ -0,0 +1,162 @@
+package org.apache.hadoop.hbase.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class XXHash64Test {
+
+	/** Byte <code>i</code> is <code>31 * i + 7</code>. */
+	private static final byte[] DATA = new byte[100];
+	static {
+		for (int i = 0; i < DATA.length; i++) {
+			DATA[i] = (byte) (31 * i + 7);
+		}
+	}
+
+	/** XXH64 of each prefix of {@link #DATA}, with a seed of 0. */
+	private static final long[] PREFIXES = {
+		0xef46db3751d8e999L, // 0
+		0xa96c7f0ce858bbb7L, // 1
+		0xac378c5993cd5f9aL, // 2
+		0x56e6957632a487f9L, // 3
+		0xc60d15b1e3ff8f04L, // 4
+		0x808815858624dd4eL, // 5
+		0xcf22b4e87e9bbd00L, // 6
+		0xafbefc3d6c6f9a8eL, // 7
+		0x3da5c7aa269683e0L, // 8
+		0x4b17a9ba9e215c09L, // 9
+		0x6b889090b8a922b8L, // 10
+		0x1fc070e44716bd8eL, // 11
+		0x8fe8ab1c1fd0666eL, // 12
+		0x0382284cc19c4abbL, // 13
+		0x1523f762201ba56eL, // 14
+		0xae2a37eb9357caa7L, // 15
+		0xa19ad429b02bc413L, // 16
+		0xfe9f0feb7eeedc09L, // 17
+		0xa44dbc53c815d4feL, // 18
+		0x3693e04c0dfc7dd2L, // 19
+		0x0bfbadb368e7f37cL, // 20
+		0xfe78683697d5c575L, // 21
+		0xb07142420c77fe7fL, // 22
+		0xe77b1fcea84118c3L, // 23
+		0x929438e5c2159ef9L, // 24
+		0x7e6c95919380459fL, // 25
+		0xaf2efe1aa0cf37dcL, // 26
+		0x8edaa24c28d12ec6L, // 27
+		0xa36b5c4091187d2aL, // 28
+		0xeb1fee1bf0954759L, // 29
+		0x6a54ebe6fe40b928L, // 30
+		0x4a74f3a1a39ad4a1L, // 31
+		0x8d57d6a4671cc43dL, // 32
+		0x62c9fd21ed857664L, // 33
+		0x42cce8a8f5fc5f1fL, // 34
+		0x85cbcf9e0d9cbecaL, // 35
+		0xa4475c606b0abc3cL, // 36
+		0x5d71d9fc4b676d9fL, // 37
+		0x88a74ab8eaeb0218L, // 38
+		0x1789542489e59cc4L, // 39
+		0x49b45332e280f187L, // 40
+		0xb410b48464dc1268L, // 41
+		0x9dacb790a1526540L, // 42
+		0x7c296a6b49b188e7L, // 43
+		0xa6b69c7cee5d5b54L, // 44
+		0xaa6aeb7198c8c81cL, // 45
+		0x7c4b5a84f7cd59f3L, // 46
+		0x05e3ab06c6bb0a6bL, // 47
+		0x9f31c521803da811L, // 48
+		0x9f787017de727118L, // 49
+		0xca2eee5cb9fb5469L, // 50
+		0x33a29bd165146948L, // 51
+		0x76d9caacc61b6870L, // 52
+		0xa7a6e96a5be18eb9L, // 53
+		0x4a6d8c8cb7ab9234L, // 54
+		0x2471440903895716L, // 55
+		0x69aea7699abf3484L, // 56
+		0x49e8d867c0ac8865L, // 57
+		0xd3928f8d2530d5eeL, // 58
+		0x8a1f4d8f4c9045feL, // 59
+		0xeafefbf83ab62c32L, // 60
+		0x1be3ba2ea41289beL, // 61
+		0x7acaef6ae2f7a5b6L, // 62
+		0x5c320a0d2707057fL, // 63
+		0x7bbabbc45729d17eL, // 64
+		0xf3980c34bae65dc1L, // 65
+		0x37082d58ba4215f9L, // 66
+		0x6acef358c3e521bdL, // 67
+		0x2c0a027bbf50ec18L, // 68
+		0x7d90ea5f45d705cbL, // 69
+		0x383a51c48c4f8f4cL, // 70
+		0x31bf591b718974d1L, // 71
+		0x4063b91780eca3e6L, // 72
+		0xfe37944ee4de1188L, // 73
+		0x62c6dce103a4f939L, // 74
+		0x68372688b22c91bdL, // 75
+		0x43a0f285258bfbd3L, // 76
+		0xdb97af1abc152d81L, // 77
+		0x1ef3d95869e00ae6L, // 78
+		0xf09091af6c3d95d5L, // 79
+		0x7fb26396efcaa30fL, // 80
+		0xf9bad4217aa6cfc7L, // 81
+		0xb6a5a7dcaac8d5d3L, // 82
+		0xea36b2cca41aa5dbL, // 83
+		0x9d023a6680a69206L, // 84
+		0x6da6c43a8402b3d5L, // 85
+		0x21b67dff095c57d5L, // 86
+		0x51389dfe4ea33d31L, // 87
+		0xf8c13e3ac3588869L, // 88
+		0x624408ea804d589cL, // 89
+		0xe02b69577487c15bL, // 90
+		0x4b92a391bc6cb1f1L, // 91
+		0x5a85982492327a09L, // 92
+		0x66962b5f6d39b1cdL, // 93
+		0x7521d2ac06453b07L, // 94
+		0x90f6cb6d1db41380L, // 95
+		0x1a4b207385051b55L, // 96
+		0xb8016eeff392be5dL, // 97
+		0xe2f2aea4f6c4a4c1L, // 98
+		0xede5c62df22ab2d0L, // 99
+		0xefa0ad2d3e70c151L, // 100
+	};
+
+	@Test
+	public void testGetInstance() {
+		Hash hash = XXHash64.getInstance();
+		assertNotNull(hash);
+		assertSame(hash, XXHash64.getInstance());
+		assertSame(hash, Hash.getInstance(Hash.XXHASH64));
+	}
+
+	@Test
+	public void testHash64() {
+		Hash hash = new XXHash64();
+		byte[] abc = "abc".getBytes();
+		byte[] fox = "The quick brown fox jumps over the lazy dog".getBytes();
+		assertEquals(0xef46db3751d8e999L, hash.hash64(abc, 0, 0));
+		assertEquals(0xd24ec4f1a98c6e5bL, hash.hash64(abc, 1, 0));
+		assertEquals(0x44bc2cf5ad770999L, hash.hash64(abc, 3, 0));
+		assertEquals(0x0b242d361fda71bcL, hash.hash64(fox, fox.length, 0));
+		assertEquals(0xdf5091b6dad2c6dbL, hash.hash64(fox, fox.length, 1));
+		assertEquals(0x87560817e8a1c0ffL, hash.hash64(fox, fox.length, -1));
+	}
+
+	@Test
+	public void testHash64Prefixes() {
+		Hash hash = XXHash64.getInstance();
+		for (int length = 0; length <= DATA.length; length++) {
+			assertEquals("length " + length, PREFIXES[length], hash.hash64(DATA, length, 0));
+		}
+	}
+
+	@Test
+	public void testHash() {
+		Hash hash = XXHash64.getInstance();
+		for (int length = 0; length <= DATA.length; length++) {
+			assertEquals((int) PREFIXES[length], hash.hash(DATA, length, 0));
+		}
+		assertEquals(hash.hash(DATA, DATA.length, -1), hash.hash(DATA));
+	}
+
+}
@@ -0,0 +1,201 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlockedBloomFilterTest {
+
+	private BlockedBloomFilter bf = null;
+	private static final int vectorSize = 10000;
+
+	@Before
+	public void setUp() throws Exception {
+		bf = new BlockedBloomFilter(vectorSize, Hash.JENKINS_HASH);
+	}
+
+	@Test
+	public void testBlockedBloomFilterConstructor() {
+		assertNotNull(bf);
+		assertEquals(10240, bf.vectorSize);
+		assertEquals(40, bf.blocks);
+		assertEquals(320, bf.words.length);
+		assertEquals(BlockedBloomFilter.WORDS_PER_BLOCK, bf.nbHash);
+		assertEquals(Hash.JENKINS_HASH, bf.hashType);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorZeroSize() {
+		new BlockedBloomFilter(0, Hash.JENKINS_HASH);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddNullKey() {
+		bf.add((Key) null);
+	}
+
+	@Test
+	public void testMembershipTestNullKey() {
+		assertFalse(bf.membershipTest((Key) null));
+	}
+
+	@Test
+	public void testAddKeyAndMembershipTest() throws UnsupportedEncodingException {
+		for (int i = 0; i < 500; i++) {
+			bf.add(new StringKey("key-" + i));
+		}
+		for (int i = 0; i < 500; i++) {
+			assertTrue(bf.membershipTest(new StringKey("key-" + i)));
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (bf.membershipTest(new StringKey("other-" + i))) {
+				falsePositives++;
+			}
+		}
+		// about 0.5% expected with m/n = 20 and 8 bits per key in 256-bit blocks
+		assertTrue(falsePositives < 300);
+	}
+
+	@Test
+	public void testKeyBitsInOneBlock() throws UnsupportedEncodingException {
+		bf.add(new StringKey("key"));
+		int block = -1;
+		for (int i = 0; i < bf.words.length; i++) {
+			if (bf.words[i] != 0) {
+				assertEquals(1, Integer.bitCount(bf.words[i]));
+				if (block < 0) {
+					block = i / BlockedBloomFilter.WORDS_PER_BLOCK;
+				}
+				assertEquals(block, i / BlockedBloomFilter.WORDS_PER_BLOCK);
+			}
+		}
+		assertTrue(block >= 0);
+	}
+
+	@Test
+	public void testSplitBlockLayout() {
+		BlockedBloomFilter filter = new BlockedBloomFilter(4 * BlockedBloomFilter.BLOCK_SIZE, Hash.JENKINS_HASH);
+		// a zero key sets bit 0 of each word, the high half 0x80000000 selects block 2 of 4
+		filter.addHash(0x8000000000000000L);
+		byte[] bitset = filter.toByteArray();
+		assertEquals(128, bitset.length);
+		for (int i = 0; i < bitset.length; i++) {
+			boolean lowByte = i >= 64 && i < 96 && i % 4 == 0;
+			assertEquals(lowByte ? 1 : 0, bitset[i]);
+		}
+		assertTrue(filter.membershipTestHash(0x8000000000000000L));
+		assertFalse(filter.membershipTestHash(0L));
+
+		// key 1 sets the top five bits of each salt
+		filter = new BlockedBloomFilter(BlockedBloomFilter.BLOCK_SIZE, Hash.JENKINS_HASH);
+		filter.addHash(1L);
+		assertEquals("{8, 40, 81, 116, 142, 165, 211, 235}", filter.toString());
+	}
+
+	@Test
+	public void testParquetHashing() throws UnsupportedEncodingException {
+		BlockedBloomFilter filter = new BlockedBloomFilter(vectorSize, Hash.XXHASH64);
+		filter.add(new StringKey("abc"));
+		// XXH64("abc") with a seed of 0, as computed by Parquet
+		BlockedBloomFilter parquet = new BlockedBloomFilter(vectorSize, Hash.JENKINS_HASH);
+		parquet.addHash(0x44bc2cf5ad770999L);
+		assertArrayEquals(parquet.toByteArray(), filter.toByteArray());
+		assertTrue(filter.membershipTestHash(0x44bc2cf5ad770999L));
+	}
+
+	@Test
+	public void testByteArrayRoundTrip() throws UnsupportedEncodingException {
+		for (int i = 0; i < 100; i++) {
+			bf.add(new StringKey("key-" + i));
+		}
+		byte[] bitset = bf.toByteArray();
+		BlockedBloomFilter copy = new BlockedBloomFilter(bitset, Hash.JENKINS_HASH);
+		assertEquals(bf.vectorSize, copy.vectorSize);
+		assertArrayEquals(bf.words, copy.words);
+		assertArrayEquals(bitset, copy.toByteArray());
+		for (int i = 0; i < 100; i++) {
+			assertTrue(copy.membershipTest(new StringKey("key-" + i)));
+		}
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testByteArrayBadLength() {
+		new BlockedBloomFilter(new byte[33], Hash.JENKINS_HASH);
+	}
+
+	@Test
+	public void testOr() throws UnsupportedEncodingException {
+		BlockedBloomFilter other = new BlockedBloomFilter(vectorSize, Hash.JENKINS_HASH);
+		bf.add(new StringKey("a"));
+		other.add(new StringKey("b"));
+		bf.or(other);
+		assertTrue(bf.membershipTest(new StringKey("a")));
+		assertTrue(bf.membershipTest(new StringKey("b")));
+	}
+
+	@Test
+	public void testAndXorNot() throws UnsupportedEncodingException {
+		BlockedBloomFilter other = (BlockedBloomFilter) bf.clone();
+		bf.add(new StringKey("a"));
+		other.add(new StringKey("a"));
+		other.add(new StringKey("b"));
+		bf.and(other);
+		assertTrue(bf.membershipTest(new StringKey("a")));
+
+		other.xor(other);
+		assertEquals("{}", other.toString());
+
+		other.not();
+		assertTrue(other.membershipTest(new StringKey("anything")));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testIncompatibleSize() {
+		bf.or(new BlockedBloomFilter(vectorSize * 2, Hash.JENKINS_HASH));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testIncompatibleType() {
+		bf.or(new BloomFilter(bf.vectorSize, 8, Hash.JENKINS_HASH));
+	}
+
+	@Test
+	public void testClone() throws UnsupportedEncodingException {
+		bf.add(new StringKey("a"));
+		BlockedBloomFilter copy = (BlockedBloomFilter) bf.clone();
+		assertArrayEquals(bf.words, copy.words);
+		copy.add(new StringKey("b"));
+		assertFalse(bf.toString().equals(copy.toString()));
+	}
+
+	@Test
+	public void testAddSliceAndMembershipTest() throws UnsupportedEncodingException {
+		BlockedBloomFilter keys = new BlockedBloomFilter(vectorSize, Hash.XXHASH64);
+		BlockedBloomFilter slices = new BlockedBloomFilter(vectorSize, Hash.XXHASH64);
+		for (int i = 0; i < 100; i++) {
+			byte[] record = ("[key-" + i + "]").getBytes("UTF-8");
+			ByteBuffer direct = ByteBuffer.allocateDirect(record.length);
+			direct.put(record);
+			keys.add(new StringKey("key-" + i));
+			slices.add(direct, 1, record.length - 2);
+			assertTrue(slices.membershipTest(record, 1, record.length - 2));
+		}
+		assertArrayEquals(keys.words, slices.words);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddEmptySlice() throws UnsupportedEncodingException {
+		bf.add("toto".getBytes("UTF-8"), 1, 0);
+	}
+
+}
@@ -6,6 +6,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -254,6 +255,12 @@ public class BloomFilterTest {
 		bf.and(null);
 	}
 	
+	@Test (expected=IllegalArgumentException.class)
+	public void testAndThrowsExceptionWhenFiltersAreIncompatible6() {
+		BloomFilter a = new BloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, HashFunction.DOUBLE_HASHING);
+		bf.and(a);
+	}
+	
 	@Test (expected=IllegalArgumentException.class)
 	public void testOrThrowsExceptionWhenFiltersAreIncompatible1() {
 		BloomFilter a = new BloomFilter(vectorSize + 1, numberHashFunctions, Hash.JENKINS_HASH);
@@ -301,6 +308,67 @@ public class BloomFilterTest {
 		assertEquals("{0, 3, 6, 7}", bf.toString());
 	}
 
+	@Test
+	public void testDoubleHashing() throws UnsupportedEncodingException {
+		BloomFilter a = new BloomFilter(1000, 4, Hash.JENKINS_HASH, HashFunction.DOUBLE_HASHING);
+		assertEquals(HashFunction.DOUBLE_HASHING, a.hashScheme);
+
+		for (int i = 0; i < 100; i++) {
+			a.add(new StringKey("key-" + i));
+		}
+		for (int i = 0; i < 100; i++) {
+			assertTrue(a.membershipTest(new StringKey("key-" + i)));
+		}
+
+		BloomFilter clone = (BloomFilter) a.clone();
+		assertEquals(HashFunction.DOUBLE_HASHING, clone.hashScheme);
+		assertEquals(a.bits, clone.bits);
+	}
+
+	@Test
+	public void testFalsePositiveRateCrc32c() throws UnsupportedEncodingException {
+		// keys sharing a 1 KB prefix, where a poorly mixed CRC would cluster
+		StringBuilder prefix = new StringBuilder();
+		for (int i = 0; i < 1024; i++) {
+			prefix.append((char) ('a' + i % 26));
+		}
+		int n = 10000;
+		int tests = 100000;
+		// (1 - e^(-kn/m))^k, 0.82% for 10 bits per key and 7 hashes
+		double expected = Math.pow(1 - Math.exp(-7.0 * n / (10 * n)), 7);
+		int[] schemes = { HashFunction.CHAINED_HASHING, HashFunction.DOUBLE_HASHING };
+		for (int scheme : schemes) {
+			for (String p : new String[] { "", prefix.toString() }) {
+				BloomFilter a = new BloomFilter(10 * n, 7, Hash.CRC32C_HASH, scheme);
+				for (int i = 0; i < n; i++) {
+					a.add(new StringKey(p + "key-" + i));
+				}
+				int falsePositives = 0;
+				for (int i = 0; i < tests; i++) {
+					if (a.membershipTest(new StringKey(p + "other-" + i))) {
+						falsePositives++;
+					}
+				}
+				double rate = (double) falsePositives / tests;
+				assertTrue("false positive rate: " + rate, rate > 0.75 * expected && rate < 1.25 * expected);
+			}
+		}
+	}
+
+	@Test
+	public void testMembershipTestPositions() throws UnsupportedEncodingException {
+		BloomFilter a = new BloomFilter(1000, 4, Hash.JENKINS_HASH);
+		for (int i = 0; i < 100; i++) {
+			a.add(new StringKey("key-" + i));
+		}
+		int[] positions = new int[4];
+		for (int i = 0; i < 200; i++) {
+			StringKey key = new StringKey((i % 2 == 0 ? "key-" : "other-") + i);
+			a.hash.hash(key, positions);
+			assertEquals(a.membershipTest(key), a.membershipTest(positions));
+		}
+	}
+
 	@Test
 	public void testClone() {
 		BloomFilter clone = (BloomFilter) bf.clone();
@@ -314,4 +382,46 @@ public class BloomFilterTest {
 		assertEquals(bf.bits, clone.bits);
 	}
 
+	@Test
+	public void testAddSliceAndMembershipTest() throws UnsupportedEncodingException {
+		int[] schemes = { HashFunction.CHAINED_HASHING, HashFunction.DOUBLE_HASHING };
+		for (int scheme : schemes) {
+			BloomFilter keys = new BloomFilter(1000, 4, Hash.MURMUR3_128, scheme);
+			BloomFilter slices = new BloomFilter(1000, 4, Hash.MURMUR3_128, scheme);
+			BloomFilter buffers = new BloomFilter(1000, 4, Hash.MURMUR3_128, scheme);
+			for (int i = 0; i < 100; i++) {
+				byte[] key = ("key-" + i).getBytes("UTF-8");
+				byte[] record = ("[key-" + i + "]").getBytes("UTF-8");
+				ByteBuffer direct = ByteBuffer.allocateDirect(record.length);
+				direct.put(record);
+
+				keys.add(new Key(key));
+				slices.add(record, 1, key.length);
+				buffers.add(direct, 1, key.length);
+				assertTrue(slices.membershipTest(direct, 1, key.length));
+				assertTrue(buffers.membershipTest(record, 1, key.length));
+			}
+			assertEquals(keys.bits, slices.bits);
+			assertEquals(keys.bits, buffers.bits);
+		}
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddSliceOutOfBounds() throws UnsupportedEncodingException {
+		bf.add("toto".getBytes("UTF-8"), 2, 3);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddBufferBeyondLimit() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+		buffer.limit(4);
+		bf.add(buffer, 2, 3);
+	}
+
+	@Test
+	public void testMembershipTestNullSlice() {
+		assertFalse(bf.membershipTest((byte[]) null, 0, 1));
+		assertFalse(bf.membershipTest((ByteBuffer) null, 0, 1));
+	}
+
 }
@@ -0,0 +1,163 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentBloomFilterTest {
+
+	private ConcurrentBloomFilter bf = null;
+	private static final int vectorSize = 10000;
+	private static final int numberHashFunctions = 4;
+
+	@Before
+	public void setUp() throws Exception {
+		bf = new ConcurrentBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH);
+	}
+
+	@Test
+	public void testConcurrentBloomFilterConstructor() {
+		assertNotNull(bf);
+		assertEquals(vectorSize, bf.vectorSize);
+		assertEquals(numberHashFunctions, bf.nbHash);
+		assertEquals(Hash.JENKINS_HASH, bf.hashType);
+		assertEquals(157, bf.words.length());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddNullKey() {
+		bf.add((Key) null);
+	}
+
+	@Test
+	public void testMembershipTestNullKey() {
+		assertFalse(bf.membershipTest((Key) null));
+	}
+
+	@Test
+	public void testSamePositionsAsBloomFilter() throws UnsupportedEncodingException {
+		BloomFilter reference = new BloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH);
+		for (int i = 0; i < 200; i++) {
+			bf.add(new StringKey("key-" + i));
+			reference.add(new StringKey("key-" + i));
+		}
+		assertEquals(reference.toString(), bf.toString());
+	}
+
+	@Test
+	public void testConcurrentAdd() throws Exception {
+		final int threads = 8;
+		final int keysPerThread = 500;
+		final ConcurrentBloomFilter filter = new ConcurrentBloomFilter(64 * threads * keysPerThread,
+				numberHashFunctions, Hash.MURMUR_HASH, HashFunction.DOUBLE_HASHING);
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] writers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			writers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < keysPerThread; i++) {
+							filter.add(new StringKey("key-" + id + "-" + i));
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			writers[t].start();
+		}
+		start.countDown();
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		assertTrue(errors.isEmpty());
+
+		BloomFilter reference = new BloomFilter(filter.vectorSize, numberHashFunctions,
+				Hash.MURMUR_HASH, HashFunction.DOUBLE_HASHING);
+		for (int t = 0; t < threads; t++) {
+			for (int i = 0; i < keysPerThread; i++) {
+				StringKey key = new StringKey("key-" + t + "-" + i);
+				assertTrue(filter.membershipTest(key));
+				reference.add(key);
+			}
+		}
+		assertEquals(reference.toString(), filter.toString());
+	}
+
+	@Test
+	public void testAndOrXor() throws UnsupportedEncodingException {
+		ConcurrentBloomFilter other = new ConcurrentBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH);
+		bf.add(new StringKey("a"));
+		other.add(new StringKey("b"));
+		bf.or(other);
+		assertTrue(bf.membershipTest(new StringKey("a")));
+		assertTrue(bf.membershipTest(new StringKey("b")));
+
+		bf.and(other);
+		assertEquals(other.toString(), bf.toString());
+
+		bf.xor(other);
+		assertEquals("{}", bf.toString());
+	}
+
+	@Test
+	public void testNot() {
+		ConcurrentBloomFilter filter = new ConcurrentBloomFilter(70, 2, Hash.JENKINS_HASH);
+		filter.not();
+		assertEquals(-1L, filter.words.get(0));
+		assertEquals(0x3fL, filter.words.get(1));
+		filter.not();
+		assertEquals("{}", filter.toString());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testIncompatible() {
+		bf.or(new BloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH));
+	}
+
+	@Test
+	public void testClone() throws UnsupportedEncodingException {
+		bf.add(new StringKey("a"));
+		ConcurrentBloomFilter copy = (ConcurrentBloomFilter) bf.clone();
+		assertEquals(bf.toString(), copy.toString());
+		copy.add(new StringKey("b"));
+		assertFalse(bf.toString().equals(copy.toString()));
+	}
+
+	@Test
+	public void testAddSliceAndMembershipTest() throws UnsupportedEncodingException {
+		BloomFilter reference = new BloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH);
+		for (int i = 0; i < 200; i++) {
+			byte[] record = ("[key-" + i + "]").getBytes("UTF-8");
+			ByteBuffer direct = ByteBuffer.allocateDirect(record.length);
+			direct.put(record);
+			if (i % 2 == 0) {
+				bf.add(record, 1, record.length - 2);
+			} else {
+				bf.add(direct, 1, record.length - 2);
+			}
+			reference.add(new StringKey("key-" + i));
+			assertTrue(bf.membershipTest(direct, 1, record.length - 2));
+		}
+		assertEquals(reference.toString(), bf.toString());
+		assertFalse(bf.membershipTest((byte[]) null, 0, 1));
+	}
+
+}
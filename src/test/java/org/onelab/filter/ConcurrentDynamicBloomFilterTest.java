@@ -0,0 +1,233 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.onelab.filter.DynamicBloomFilter.LINE_SEPARATOR;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentDynamicBloomFilterTest {
+
+	private ConcurrentDynamicBloomFilter bf = null;
+	private static final int vectorSize = 8;
+	private static final int numberHashFunctions = 2;
+	private static final int maximumNumberOfKeysPerFilter = 2;
+
+	@Before
+	public void setUp() throws Exception {
+		bf = new ConcurrentDynamicBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter);
+	}
+
+	@Test
+	public void testConcurrentDynamicBloomFilterConstructor() {
+		assertNotNull(bf);
+		assertEquals(vectorSize, bf.vectorSize);
+		assertEquals(numberHashFunctions, bf.nbHash);
+		assertEquals(Hash.JENKINS_HASH, bf.hashType);
+		assertEquals(maximumNumberOfKeysPerFilter, bf.nr);
+		assertEquals(1, bf.getRowCount());
+		assertEquals(0, bf.matrix.get().currentNbRecord.get());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddNullKey() {
+		bf.add((Key) null);
+	}
+
+	@Test
+	public void testMembershipTestNullKey() {
+		assertFalse(bf.membershipTest((Key) null));
+	}
+
+	@Test
+	public void testAddRows() throws UnsupportedEncodingException {
+		bf.add(new StringKey("a"));
+		bf.add(new StringKey("b"));
+		assertEquals(1, bf.getRowCount());
+		bf.add(new StringKey("c"));
+		assertEquals(2, bf.getRowCount());
+		assertEquals(1, bf.matrix.get().currentNbRecord.get());
+		assertTrue(bf.membershipTest(new StringKey("a")));
+		assertTrue(bf.membershipTest(new StringKey("c")));
+	}
+
+	@Test
+	public void testSameRowsAsDynamicBloomFilter() throws UnsupportedEncodingException {
+		DynamicBloomFilter reference = new DynamicBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter);
+		for (int i = 0; i < 7; i++) {
+			bf.add(new StringKey("key-" + i));
+			reference.add(new StringKey("key-" + i));
+		}
+		assertEquals(reference.toString(), bf.toString());
+	}
+
+	@Test
+	public void testConcurrentAdd() throws Exception {
+		final int threads = 8;
+		final int keysPerThread = 1000;
+		final int keysPerRow = 100;
+		final ConcurrentDynamicBloomFilter filter = new ConcurrentDynamicBloomFilter(1000, 4,
+				Hash.MURMUR_HASH, keysPerRow);
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] writers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			writers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < keysPerThread; i++) {
+							StringKey key = new StringKey("key-" + id + "-" + i);
+							filter.add(key);
+							if (!filter.membershipTest(key)) {
+								throw new AssertionError("key lost: " + key);
+							}
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			writers[t].start();
+		}
+		start.countDown();
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		assertTrue(errors.toString(), errors.isEmpty());
+
+		// every row but the active one records exactly keysPerRow keys
+		assertEquals(threads * keysPerThread / keysPerRow, filter.getRowCount());
+		for (int t = 0; t < threads; t++) {
+			for (int i = 0; i < keysPerThread; i++) {
+				assertTrue(filter.membershipTest(new StringKey("key-" + t + "-" + i)));
+			}
+		}
+	}
+
+	@Test
+	public void testOr() throws UnsupportedEncodingException {
+		ConcurrentDynamicBloomFilter other = new ConcurrentDynamicBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter);
+		bf.add(new StringKey("a"));
+		other.add(new StringKey("b"));
+		bf.or(other);
+		assertTrue(bf.membershipTest(new StringKey("b")));
+
+		bf.xor(bf);
+		assertEquals("{}" + LINE_SEPARATOR, bf.toString());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testIncompatibleRows() throws UnsupportedEncodingException {
+		ConcurrentDynamicBloomFilter other = new ConcurrentDynamicBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter);
+		for (int i = 0; i < 3; i++) {
+			other.add(new StringKey("key-" + i));
+		}
+		bf.and(other);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testIncompatibleType() {
+		bf.or(new DynamicBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter));
+	}
+
+	@Test
+	public void testClone() throws UnsupportedEncodingException {
+		for (int i = 0; i < 3; i++) {
+			bf.add(new StringKey("key-" + i));
+		}
+		ConcurrentDynamicBloomFilter copy = (ConcurrentDynamicBloomFilter) bf.clone();
+		assertEquals(bf.toString(), copy.toString());
+		assertEquals(2, copy.getRowCount());
+		assertEquals(1, copy.matrix.get().currentNbRecord.get());
+		copy.add(new StringKey("key-3"));
+		assertEquals(2, copy.getRowCount());
+		assertEquals(2, bf.getRowCount());
+		assertFalse(bf.toString().equals(copy.toString()));
+	}
+
+	@Test
+	public void testAddSliceAndMembershipTest() throws UnsupportedEncodingException {
+		SliceAsserts.assertSlicesMatchKeys(new ConcurrentDynamicBloomFilter(1000, 4, Hash.MURMUR_HASH, 100),
+				new ConcurrentDynamicBloomFilter(1000, 4, Hash.MURMUR_HASH, 100), 300);
+	}
+
+	@Test
+	public void testAddSliceOutOfBoundsReservesNoSlot() throws UnsupportedEncodingException {
+		ConcurrentDynamicBloomFilter filter = new ConcurrentDynamicBloomFilter(1000, 4, Hash.MURMUR_HASH, 1);
+		byte[] record = SliceAsserts.record(0);
+		try {
+			filter.add(SliceAsserts.direct(record), 1, record.length);
+			fail("slice out of bounds accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		// the only slot of the row is still free for the next key
+		filter.add(new StringKey("toto"));
+		assertEquals(1, filter.getRowCount());
+	}
+
+	@Test
+	public void testConcurrentAddBuildsOneRowPerRollover() throws Exception {
+		final int threads = 8;
+		final int keysPerThread = 200;
+		final AtomicInteger built = new AtomicInteger();
+		final ConcurrentDynamicBloomFilter filter = new ConcurrentDynamicBloomFilter(1000, 4, Hash.MURMUR_HASH, 10) {
+			@Override
+			ConcurrentBloomFilter newRow() {
+				built.incrementAndGet();
+				// widen the window in which other writers reach the row end
+				Thread.yield();
+				return super.newRow();
+			}
+		};
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] writers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			writers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < keysPerThread; i++) {
+							filter.add(new StringKey("key-" + id + "-" + i));
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			writers[t].start();
+		}
+		start.countDown();
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		assertTrue(errors.toString(), errors.isEmpty());
+
+		// writers racing past the end of a row wait for a single new row
+		assertEquals(threads * keysPerThread / 10, filter.getRowCount());
+		assertEquals(filter.getRowCount(), built.get());
+	}
+
+}
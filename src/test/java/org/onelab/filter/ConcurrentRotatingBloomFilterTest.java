@@ -0,0 +1,307 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.onelab.filter.RotatingBloomFilter.LINE_SEPARATOR;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentRotatingBloomFilterTest {
+
+	private ConcurrentRotatingBloomFilter bf = null;
+	private static final int vectorSize = 8;
+	private static final int numberHashFunctions = 2;
+	private static final int maximumNumberOfKeysPerFilter = 2;
+	private static final int maximumNumberOfBloomFilters = 6;
+
+	@Before
+	public void setUp() throws Exception {
+		bf = new ConcurrentRotatingBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter, maximumNumberOfBloomFilters);
+	}
+
+	@Test
+	public void testConcurrentRotatingBloomFilter() {
+		assertNotNull(bf);
+		assertEquals(vectorSize, bf.vectorSize);
+		assertEquals(numberHashFunctions, bf.nbHash);
+		assertEquals(Hash.JENKINS_HASH, bf.hashType);
+		assertEquals(maximumNumberOfKeysPerFilter, bf.maximumNumberOfKeysPerFilter);
+		assertEquals(maximumNumberOfBloomFilters, bf.maximumNumberOfBloomFilters);
+		assertEquals(0, bf.filters.get().currentNbRecord.get());
+		assertEquals(1, bf.getRowCount());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddNullKey() {
+		bf.add((Key)null);
+	}
+
+	@Test
+	public void testMembershipTest() {
+		assertFalse(bf.membershipTest((Key)null));
+	}
+
+	@Test
+	public void testSameRowsAsRotatingBloomFilter() throws UnsupportedEncodingException {
+		RotatingBloomFilter reference = new RotatingBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter, maximumNumberOfBloomFilters);
+		int n = maximumNumberOfKeysPerFilter * maximumNumberOfBloomFilters * 2;
+		for (int i = 0; i < n; i++) {
+			bf.add(new StringKey("word-" + i));
+			reference.add(new StringKey("word-" + i));
+			assertEquals(reference.currentNumberOfBloomFilters, bf.getRowCount());
+			assertEquals(reference.toString(), bf.toString());
+		}
+	}
+
+	@Test
+	public void testToString() throws UnsupportedEncodingException {
+		assertEquals("{}" + LINE_SEPARATOR, bf.toString());
+		bf.add(new StringKey("toto"));
+		assertEquals("{0, 6}" + LINE_SEPARATOR, bf.toString());
+	}
+
+	@Test
+	public void testConcurrentAddAndMembershipTest() throws Exception {
+		final int threads = 4;
+		final int keysPerThread = 2000;
+		final int keysPerRow = 200;
+		final int rows = 4;
+		final ConcurrentRotatingBloomFilter filter = new ConcurrentRotatingBloomFilter(2000, 4,
+				Hash.MURMUR_HASH, keysPerRow, rows);
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicBoolean done = new AtomicBoolean();
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] writers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			writers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < keysPerThread; i++) {
+							filter.add(new StringKey("key-" + id + "-" + i));
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			writers[t].start();
+		}
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				try {
+					start.await();
+					while (!done.get()) {
+						filter.membershipTest(new StringKey("probe"));
+						assertTrue(filter.getRowCount() <= rows);
+					}
+				} catch (Throwable e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				}
+			}
+		};
+		reader.start();
+		start.countDown();
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		done.set(true);
+		reader.join();
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(rows, filter.getRowCount());
+		// the rows before the active one each hold keysPerRow keys, none lost
+		int found = 0;
+		for (int t = 0; t < threads; t++) {
+			for (int i = 0; i < keysPerThread; i++) {
+				if (filter.membershipTest(new StringKey("key-" + t + "-" + i))) {
+					found++;
+				}
+			}
+		}
+		assertTrue(found >= (rows - 1) * keysPerRow);
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testAnd() {
+		bf.and(null);
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testOr() {
+		bf.or(null);
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testXor() {
+		bf.xor(null);
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testNot() {
+		bf.not();
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testClone() {
+		bf.clone();
+	}
+
+	@Test
+	public void testAddToRotatedRow() throws Exception {
+		// a single row of a single key, so that any other add drops it
+		final ConcurrentRotatingBloomFilter filter = new ConcurrentRotatingBloomFilter(1000, 4,
+				Hash.MURMUR_HASH, 1, 1);
+		final CountDownLatch reserved = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		// blocks the writer after it reserved its slot, before it hashes the key
+		final Key slow = new Key("slow".getBytes("UTF-8")) {
+			@Override
+			public byte[] getBytes() {
+				if (reserved.getCount() > 0) {
+					reserved.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return super.getBytes();
+			}
+		};
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					filter.add(slow);
+				} catch (Throwable e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				}
+			}
+		};
+		writer.start();
+		reserved.await();
+		filter.add(new StringKey("other"));
+		release.countDown();
+		writer.join();
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertTrue(filter.membershipTest(slow));
+	}
+
+	@Test
+	public void testAddSliceAndMembershipTest() throws UnsupportedEncodingException {
+		SliceAsserts.assertSlicesMatchKeys(new ConcurrentRotatingBloomFilter(1000, 4, Hash.MURMUR_HASH, 100, 10),
+				new ConcurrentRotatingBloomFilter(1000, 4, Hash.MURMUR_HASH, 100, 10), 300);
+	}
+
+	@Test
+	public void testConcurrentAddSlice() throws Exception {
+		final int threads = 4;
+		final int keysPerThread = 500;
+		// enough rows for no key to be rotated out
+		final ConcurrentRotatingBloomFilter filter = new ConcurrentRotatingBloomFilter(1000, 4,
+				Hash.MURMUR_HASH, 50, 100);
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] writers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			writers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = id * keysPerThread; i < (id + 1) * keysPerThread; i++) {
+							byte[] record = SliceAsserts.record(i);
+							filter.add(SliceAsserts.direct(record), 1, record.length - 2);
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			writers[t].start();
+		}
+		start.countDown();
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		assertTrue(errors.toString(), errors.isEmpty());
+
+		assertEquals(threads * keysPerThread / 50, filter.getRowCount());
+		for (int i = 0; i < threads * keysPerThread; i++) {
+			assertTrue(filter.membershipTest(new StringKey("key-" + i)));
+		}
+	}
+
+	@Test
+	public void testConcurrentAddBuildsOneRowPerRollover() throws Exception {
+		final int threads = 8;
+		final int keysPerThread = 200;
+		final AtomicInteger built = new AtomicInteger();
+		final ConcurrentRotatingBloomFilter filter = new ConcurrentRotatingBloomFilter(1000, 4, Hash.MURMUR_HASH, 10, 1000) {
+			@Override
+			ConcurrentBloomFilter newRow() {
+				built.incrementAndGet();
+				// widen the window in which other writers reach the row end
+				Thread.yield();
+				return super.newRow();
+			}
+		};
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] writers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			writers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < keysPerThread; i++) {
+							filter.add(new StringKey("key-" + id + "-" + i));
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			writers[t].start();
+		}
+		start.countDown();
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		assertTrue(errors.toString(), errors.isEmpty());
+
+		// writers racing past the end of a row wait for a single new row
+		assertEquals(threads * keysPerThread / 10, filter.getRowCount());
+		assertEquals(filter.getRowCount(), built.get());
+	}
+
+}
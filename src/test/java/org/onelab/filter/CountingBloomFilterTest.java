@@ -0,0 +1,212 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CountingBloomFilterTest {
+
+	private CountingBloomFilter bf = null;
+	private static final int vectorSize = 8;
+	private static final int numberHashFunctions = 2;
+
+	@Before
+	public void setUp() throws Exception {
+		bf = new CountingBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH);
+	}
+
+	@Test
+	public void testCountingBloomFilterConstructor() {
+		assertNotNull(bf);
+		assertEquals(vectorSize, bf.vectorSize);
+		assertEquals(numberHashFunctions, bf.nbHash);
+		assertEquals(Hash.JENKINS_HASH, bf.hashType);
+		assertEquals(1, bf.buckets.length);
+		assertEquals(3, new CountingBloomFilter(33, numberHashFunctions, Hash.JENKINS_HASH).buckets.length);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddNullKey() {
+		bf.add((Key) null);
+	}
+
+	@Test
+	public void testMembershipTestNullKey() {
+		assertFalse(bf.membershipTest((Key) null));
+	}
+
+	@Test
+	public void testToString() throws UnsupportedEncodingException {
+		assertEquals("0 0 0 0 0 0 0 0", bf.toString());
+		bf.add(new StringKey("toto"));
+		assertEquals("1 0 0 0 0 0 1 0", bf.toString());
+		bf.add(new StringKey("toto"));
+		assertEquals("2 0 0 0 0 0 2 0", bf.toString());
+	}
+
+	@Test
+	public void testAddAndDelete() throws UnsupportedEncodingException {
+		CountingBloomFilter filter = new CountingBloomFilter(10000, 4, Hash.MURMUR_HASH);
+		for (int i = 0; i < 500; i++) {
+			filter.add(new StringKey("key-" + i));
+		}
+		for (int i = 0; i < 500; i++) {
+			assertTrue(filter.membershipTest(new StringKey("key-" + i)));
+		}
+		for (int i = 0; i < 500; i += 2) {
+			filter.delete(new StringKey("key-" + i));
+		}
+		for (int i = 1; i < 500; i += 2) {
+			assertTrue(filter.membershipTest(new StringKey("key-" + i)));
+		}
+		for (int i = 1; i < 500; i += 2) {
+			filter.delete(new StringKey("key-" + i));
+		}
+		for (int i = 0; i < filter.buckets.length; i++) {
+			assertEquals(0L, filter.buckets[i]);
+		}
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testDeleteNotMember() throws UnsupportedEncodingException {
+		bf.delete(new StringKey("toto"));
+	}
+
+	@Test
+	public void testSaturation() throws UnsupportedEncodingException {
+		StringKey key = new StringKey("toto");
+		for (int i = 0; i < 20; i++) {
+			bf.add(key);
+		}
+		assertEquals(15, bf.approximateCount(key));
+		assertEquals("15 0 0 0 0 0 15 0", bf.toString());
+		for (int i = 0; i < 20; i++) {
+			bf.delete(key);
+		}
+		// saturated buckets are never decremented
+		assertTrue(bf.membershipTest(key));
+		assertEquals(15, bf.approximateCount(key));
+	}
+
+	@Test
+	public void testApproximateCount() throws UnsupportedEncodingException {
+		StringKey key = new StringKey("toto");
+		assertEquals(0, bf.approximateCount(key));
+		bf.add(key);
+		bf.add(key);
+		bf.add(key);
+		assertEquals(3, bf.approximateCount(key));
+	}
+
+	@Test
+	public void testApproximateCountNeverUnderestimates() throws UnsupportedEncodingException {
+		CountingBloomFilter filter = new CountingBloomFilter(200, 4, Hash.MURMUR_HASH);
+		for (int i = 0; i < 100; i++) {
+			for (int j = 0; j < i % 5; j++) {
+				filter.add(new StringKey("key-" + i));
+			}
+		}
+		for (int i = 0; i < 100; i++) {
+			int count = filter.approximateCount(new StringKey("key-" + i));
+			assertTrue(count >= i % 5);
+			assertTrue(count <= 15);
+		}
+	}
+
+	@Test
+	public void testToBloomFilter() throws UnsupportedEncodingException {
+		CountingBloomFilter filter = new CountingBloomFilter(1000, 4, Hash.JENKINS_HASH);
+		BloomFilter expected = new BloomFilter(1000, 4, Hash.JENKINS_HASH);
+		for (int i = 0; i < 100; i++) {
+			filter.add(new StringKey("key-" + i));
+			filter.add(new StringKey("key-" + i));
+			expected.add(new StringKey("key-" + i));
+		}
+		for (int i = 0; i < 100; i += 3) {
+			filter.delete(new StringKey("key-" + i));
+		}
+		BloomFilter projected = filter.toBloomFilter();
+		assertEquals(expected.bits, projected.bits);
+		assertEquals(expected.toString(), projected.toString());
+		for (int i = 0; i < 100; i++) {
+			StringKey key = new StringKey("key-" + i);
+			assertTrue(projected.membershipTest(key));
+		}
+	}
+
+	@Test
+	public void testAndOr() throws UnsupportedEncodingException {
+		CountingBloomFilter other = new CountingBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH);
+		bf.add(new StringKey("toto"));
+		bf.add(new StringKey("toto"));
+		other.add(new StringKey("toto"));
+		other.add(new StringKey("lulu"));
+
+		CountingBloomFilter and = (CountingBloomFilter) bf.clone();
+		and.and(other);
+		assertEquals("1 0 0 0 0 0 1 0", and.toString());
+
+		bf.or(other);
+		assertEquals("3 0 0 1 0 0 3 1", bf.toString());
+		bf.delete(new StringKey("lulu"));
+		assertEquals("3 0 0 0 0 0 3 0", bf.toString());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testIncompatible() {
+		bf.or(new BloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH));
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testXor() {
+		bf.xor(bf);
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testNot() {
+		bf.not();
+	}
+
+	@Test
+	public void testClone() throws UnsupportedEncodingException {
+		bf.add(new StringKey("toto"));
+		CountingBloomFilter clone = (CountingBloomFilter) bf.clone();
+		assertEquals(bf.toString(), clone.toString());
+		clone.delete(new StringKey("toto"));
+		assertTrue(bf.membershipTest(new StringKey("toto")));
+	}
+
+	@Test
+	public void testAddSlice() throws UnsupportedEncodingException {
+		byte[] record = "[toto]".getBytes("UTF-8");
+		ByteBuffer direct = ByteBuffer.allocateDirect(record.length);
+		direct.put(record);
+
+		bf.add(record, 1, 4);
+		assertTrue(bf.membershipTest(new StringKey("toto")));
+		assertTrue(bf.membershipTest(direct, 1, 4));
+		assertEquals(6, direct.position());
+		bf.add(direct, 1, 4);
+		assertEquals(2, bf.approximateCount(new StringKey("toto")));
+		assertFalse(bf.membershipTest((ByteBuffer) null, 0, 1));
+	}
+
+	@Test
+	public void testAddSliceAndMembershipTest() throws UnsupportedEncodingException {
+		CountingBloomFilter keys = new CountingBloomFilter(1000, 4, Hash.MURMUR_HASH);
+		CountingBloomFilter slices = new CountingBloomFilter(1000, 4, Hash.MURMUR_HASH);
+		SliceAsserts.assertSlicesMatchKeys(keys, slices, 100);
+
+		// the slices increment the same buckets as the keys
+		assertEquals(keys.toString(), slices.toString());
+	}
+
+}
@@ -0,0 +1,197 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CuckooFilterTest {
+
+	private CuckooFilter cf = null;
+	private static final int capacity = 10000;
+
+	@Before
+	public void setUp() throws Exception {
+		cf = new CuckooFilter(capacity, Hash.MURMUR_HASH);
+	}
+
+	@Test
+	public void testCuckooFilterConstructor() {
+		assertNotNull(cf);
+		assertEquals(4096, cf.vectorSize);
+		assertEquals(4096, cf.buckets.length);
+		assertEquals(4095, cf.bucketMask);
+		assertEquals(0, cf.size());
+		assertFalse(cf.isFull());
+		assertEquals(1, new CuckooFilter(1, Hash.MURMUR_HASH).buckets.length);
+		assertEquals(2, new CuckooFilter(5, Hash.MURMUR_HASH).buckets.length);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorCapacity() {
+		new CuckooFilter(0, Hash.MURMUR_HASH);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddNullKey() {
+		cf.add((Key) null);
+	}
+
+	@Test
+	public void testMembershipTestNullKey() {
+		assertFalse(cf.membershipTest((Key) null));
+	}
+
+	@Test
+	public void testAddAndMembershipTest() throws UnsupportedEncodingException {
+		List<Key> keys = new ArrayList<Key>();
+		for (int i = 0; i < capacity; i++) {
+			keys.add(new StringKey("key-" + i));
+		}
+		cf.add(keys);
+		assertEquals(capacity, cf.size());
+		assertFalse(cf.isFull());
+		for (Key key : keys) {
+			assertTrue(cf.membershipTest(key));
+		}
+
+		int falsePositives = 0;
+		int tests = 100000;
+		for (int i = 0; i < tests; i++) {
+			if (cf.membershipTest(new StringKey("other-" + i))) {
+				falsePositives++;
+			}
+		}
+		// 2 * 4 / 2^16 = 0.012% at most
+		assertTrue("false positives: " + falsePositives, falsePositives < tests / 1000);
+	}
+
+	@Test
+	public void testDelete() throws UnsupportedEncodingException {
+		for (int i = 0; i < capacity; i++) {
+			cf.add(new StringKey("key-" + i));
+		}
+		for (int i = 0; i < capacity; i += 2) {
+			cf.delete(new StringKey("key-" + i));
+		}
+		assertEquals(capacity / 2, cf.size());
+		for (int i = 1; i < capacity; i += 2) {
+			assertTrue(cf.membershipTest(new StringKey("key-" + i)));
+		}
+		for (int i = 1; i < capacity; i += 2) {
+			cf.delete(new StringKey("key-" + i));
+		}
+		assertEquals(0, cf.size());
+		assertEquals("{}", cf.toString());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testDeleteNotMember() throws UnsupportedEncodingException {
+		cf.delete(new StringKey("key"));
+	}
+
+	@Test
+	public void testFull() throws UnsupportedEncodingException {
+		CuckooFilter small = new CuckooFilter(100, Hash.MURMUR_HASH);
+		int added = 0;
+		try {
+			while (true) {
+				small.add(new StringKey("key-" + added));
+				added++;
+			}
+		} catch (IllegalStateException e) {
+			// expected once the filter is full
+		}
+		assertTrue(small.isFull());
+		assertEquals(added, small.size());
+		assertTrue(added > 4 * small.buckets.length * 0.9);
+		assertTrue(added <= 4 * small.buckets.length + 1);
+		// no key is lost, even the one that did not fit
+		for (int i = 0; i < added; i++) {
+			assertTrue(small.membershipTest(new StringKey("key-" + i)));
+		}
+
+		// deleting frees room again
+		for (int i = 0; i < 10; i++) {
+			small.delete(new StringKey("key-" + i));
+		}
+		assertFalse(small.isFull());
+		small.add(new StringKey("again"));
+		assertTrue(small.membershipTest(new StringKey("again")));
+		for (int i = 10; i < added; i++) {
+			assertTrue(small.membershipTest(new StringKey("key-" + i)));
+		}
+	}
+
+	@Test
+	public void testClone() throws UnsupportedEncodingException {
+		cf.add(new StringKey("a"));
+		CuckooFilter clone = (CuckooFilter) cf.clone();
+		assertEquals(cf.toString(), clone.toString());
+		assertEquals(1, clone.size());
+		clone.delete(new StringKey("a"));
+		assertTrue(cf.membershipTest(new StringKey("a")));
+		assertFalse(clone.membershipTest(new StringKey("a")));
+	}
+
+	@Test
+	public void testUnsupported() {
+		try {
+			cf.and(cf);
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			cf.or(cf);
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			cf.xor(cf);
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			cf.not();
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
+	@Test
+	public void testAddSliceAndMembershipTest() throws UnsupportedEncodingException {
+		CuckooFilter keys = new CuckooFilter(1000, Hash.MURMUR_HASH);
+		CuckooFilter slices = new CuckooFilter(1000, Hash.MURMUR_HASH);
+		SliceAsserts.assertSlicesMatchKeys(keys, slices, 300);
+
+		assertEquals(keys.toString(), slices.toString());
+	}
+
+	@Test
+	public void testAddSliceToFullFilter() throws UnsupportedEncodingException {
+		CuckooFilter small = new CuckooFilter(4, Hash.MURMUR_HASH);
+		int added = 0;
+		try {
+			// one key more than the slots can be held as the victim
+			while (added <= 4 * small.buckets.length + 1) {
+				byte[] record = SliceAsserts.record(added);
+				small.add(record, 1, record.length - 2);
+				added++;
+			}
+			fail("full filter accepted a slice");
+		} catch (IllegalStateException e) {
+			// expected once the filter is full
+		}
+		assertTrue(small.isFull());
+	}
+
+}
@@ -0,0 +1,115 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DirectBitArrayTest {
+
+	private DirectBitArray bits = null;
+
+	@Before
+	public void setUp() throws Exception {
+		bits = new DirectBitArray(130);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		bits.close();
+		bits = null;
+	}
+
+	@Test
+	public void testConstructor() {
+		assertEquals(130, bits.bitSize());
+		assertEquals(3, bits.wordCount());
+		assertEquals(1, bits.pages.length);
+		assertTrue(bits.pages[0].isDirect());
+		assertEquals(24, bits.pages[0].capacity());
+		assertEquals(0, bits.cardinality());
+		assertFalse(bits.isClosed());
+	}
+
+	@Test
+	public void testPageCount() {
+		assertEquals(1, DirectBitArray.pageCount(1));
+		assertEquals(1, DirectBitArray.pageCount(DirectBitArray.PAGE_SIZE));
+		assertEquals(2, DirectBitArray.pageCount(DirectBitArray.PAGE_SIZE + 1L));
+		assertEquals(16, DirectBitArray.pageCount(16L * DirectBitArray.PAGE_SIZE));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorWithMismatchingPages() {
+		new DirectBitArray(130, new ByteBuffer[2]);
+	}
+
+	@Test
+	public void testSetAndGet() {
+		bits.set(0);
+		bits.set(63);
+		bits.set(64);
+		bits.set(129);
+
+		assertTrue(bits.get(0));
+		assertFalse(bits.get(1));
+		assertTrue(bits.get(63));
+		assertTrue(bits.get(64));
+		assertFalse(bits.get(65));
+		assertTrue(bits.get(129));
+		assertEquals(4, bits.cardinality());
+		assertEquals("{0, 63, 64, 129}", bits.toString());
+
+		bits.clear();
+		assertEquals(0, bits.cardinality());
+	}
+
+	@Test
+	public void testLogicalOperationsWithHeapVector() {
+		LongBitArray heap = new LongBitArray(130);
+		heap.set(1);
+		heap.set(100);
+		bits.set(100);
+		bits.set(120);
+
+		bits.or(heap);
+		assertEquals("{1, 100, 120}", bits.toString());
+		bits.and(heap);
+		assertEquals(heap, bits);
+		assertEquals(bits, heap);
+		bits.xor(heap);
+		assertEquals(0, bits.cardinality());
+		bits.not();
+		assertEquals(130, bits.cardinality());
+
+		heap.or(bits);
+		assertEquals(130, heap.cardinality());
+	}
+
+	@Test
+	public void testClose() {
+		bits.set(3);
+		bits.close();
+		assertTrue(bits.isClosed());
+		bits.close();
+		assertTrue(bits.isClosed());
+	}
+
+	@Test (expected=IllegalStateException.class)
+	public void testGetAfterClose() {
+		bits.close();
+		bits.get(3);
+	}
+
+	@Test (expected=IllegalStateException.class)
+	public void testSetAfterClose() {
+		bits.close();
+		bits.set(3);
+	}
+
+}
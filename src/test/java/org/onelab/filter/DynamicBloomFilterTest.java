@@ -3,13 +3,17 @@ package org.onelab.filter;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.onelab.filter.DynamicBloomFilter.LINE_SEPARATOR;
 
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.hbase.util.Hash;
 import org.junit.After;
@@ -41,7 +45,7 @@ public class DynamicBloomFilterTest {
 		assertEquals(Hash.JENKINS_HASH, bf.hashType);
 		assertEquals(maximumNumberOfKeysPerFilter, bf.nr);
 		assertEquals(0, bf.currentNbRecord);
-		assertEquals(1, bf.matrix.length);
+		assertEquals(1, bf.nbRows);
 		assertNotNull(bf.matrix[0]);
 		assertTrue(bf.matrix[0] instanceof Filter);
 		assertTrue(bf.matrix[0] instanceof BloomFilter);
@@ -97,21 +101,21 @@ public class DynamicBloomFilterTest {
 	    
 	    bf.add(k1);
 	    assertEquals(1, bf.currentNbRecord);
-	    assertEquals(1, bf.matrix.length);
+	    assertEquals(1, bf.nbRows);
 	    assertTrue(bf.matrix[0].membershipTest(k1));
 	    assertFalse(bf.membershipTest(k4)); // no collision at this point
 	    assertFalse(bf.matrix[0].membershipTest(k4)); 
 
 	    bf.add(k2);
 	    assertEquals(2, bf.currentNbRecord);
-	    assertEquals(1, bf.matrix.length);
+	    assertEquals(1, bf.nbRows);
 	    assertTrue(bf.matrix[0].membershipTest(k2));
 	    assertTrue(bf.membershipTest(k4)); // this now collides
 	    assertTrue(bf.matrix[0].membershipTest(k4)); 
 
 	    bf.add(k3);
 	    assertEquals(1, bf.currentNbRecord);
-	    assertEquals(2, bf.matrix.length);
+	    assertEquals(2, bf.nbRows);
 	    assertFalse(bf.matrix[0].membershipTest(k3));
 	    assertTrue(bf.matrix[1].membershipTest(k3));
 	    assertTrue(bf.membershipTest(k4)); // this now collides
@@ -399,4 +403,109 @@ public class DynamicBloomFilterTest {
 		assertEquals(bf.matrix[0].bits, clone.matrix[0].bits);
 	}
 
+	@Test
+	public void testAddRowKeepsRows() throws UnsupportedEncodingException {
+		BloomFilter first = bf.matrix[0];
+		for (int i = 0; i < 5 * maximumNumberOfKeysPerFilter; i++) {
+			bf.add(new StringKey("key-" + i));
+		}
+		assertEquals(5, bf.getRowCount());
+		assertEquals(8, bf.matrix.length);
+		assertSame(first, bf.matrix[0]);
+	}
+
+	@Test
+	public void testConcurrentMembershipTest() throws Exception {
+		final int threads = 8;
+		final int keys = 2000;
+		final DynamicBloomFilter filter = new DynamicBloomFilter(10000, 8, Hash.MURMUR_HASH, 100);
+		for (int i = 0; i < keys; i++) {
+			filter.add(new StringKey("key-" + i));
+		}
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger falseNegatives = new AtomicInteger();
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] readers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			readers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int round = 0; round < 20; round++) {
+							for (int i = 0; i < keys; i++) {
+								if (!filter.membershipTest(new StringKey("key-" + i))) {
+									falseNegatives.incrementAndGet();
+								}
+							}
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			readers[t].start();
+		}
+		start.countDown();
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertTrue(errors.isEmpty());
+		assertEquals(0, falseNegatives.get());
+	}
+
+	@Test
+	public void testAddSliceAndMembershipTest() throws UnsupportedEncodingException {
+		SliceAsserts.assertSlicesMatchKeys(new DynamicBloomFilter(1000, 4, Hash.MURMUR_HASH, 100),
+				new DynamicBloomFilter(1000, 4, Hash.MURMUR_HASH, 100), 300);
+	}
+
+	@Test
+	public void testAddSliceOutOfBoundsAddsNoRow() throws UnsupportedEncodingException {
+		DynamicBloomFilter filter = new DynamicBloomFilter(1000, 4, Hash.MURMUR_HASH, 1);
+		filter.add(new StringKey("toto"));
+		byte[] record = SliceAsserts.record(0);
+		try {
+			filter.add(record, 1, record.length);
+			fail("slice out of bounds accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			filter.add(SliceAsserts.direct(record), 1, record.length);
+			fail("slice out of bounds accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		// the active row is full, but the slices were rejected before a row was added
+		assertEquals(1, filter.getRowCount());
+	}
+
+	@Test
+	public void testMembershipTestHashesOnce() throws UnsupportedEncodingException {
+		DynamicBloomFilter filter = new DynamicBloomFilter(1000, 4, Hash.MURMUR_HASH, 10);
+		final AtomicInteger hashes = new AtomicInteger();
+		Key key = new Key("toto".getBytes("UTF-8")) {
+			@Override
+			public byte[] getBytes() {
+				hashes.incrementAndGet();
+				return super.getBytes();
+			}
+		};
+
+		assertFalse(filter.membershipTest(key));
+		assertEquals(1, hashes.get());
+
+		for (int i = 0; i < 50; i++) {
+			filter.add(new StringKey("key-" + i));
+		}
+		assertEquals(5, filter.getRowCount());
+		hashes.set(0);
+		assertFalse(filter.membershipTest(key));
+		// the positions are computed once and tested against every row
+		assertEquals(1, hashes.get());
+	}
+
 }
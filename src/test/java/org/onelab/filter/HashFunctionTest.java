@@ -1,7 +1,9 @@
 package org.onelab.filter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.UnsupportedEncodingException;
 
@@ -18,6 +20,23 @@ public class HashFunctionTest {
 		assertEquals(8, f.maxValue);
 		assertEquals(2, f.nbHash);
 		assertEquals(Hash.getInstance(Hash.JENKINS_HASH), f.hashFunction);
+		assertEquals(HashFunction.CHAINED_HASHING, f.hashScheme);
+	}
+
+	@Test
+	public void testHashFunctionWithScheme() {
+		HashFunction f = new HashFunction(8, 2, Hash.JENKINS_HASH, HashFunction.DOUBLE_HASHING);
+		
+		assertNotNull(f);
+		assertEquals(8, f.maxValue);
+		assertEquals(2, f.nbHash);
+		assertEquals(Hash.getInstance(Hash.JENKINS_HASH), f.hashFunction);
+		assertEquals(HashFunction.DOUBLE_HASHING, f.hashScheme);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testHashFunctionWithUnknownScheme() {
+		new HashFunction(8, 2, Hash.JENKINS_HASH, 42);
 	}
 
 	@Test (expected=IllegalArgumentException.class)
@@ -103,5 +122,110 @@ public class HashFunctionTest {
 		assertEquals(0, h1[1]);
 	}
 
-}
+	@Test
+	public void testHashDoubleHashing() throws UnsupportedEncodingException {
+		HashFunction f = new HashFunction(1000, 5, Hash.JENKINS_HASH, HashFunction.DOUBLE_HASHING);
+		
+		Key k1 = new StringKey("toto");
+		byte[] b = k1.getBytes();
+		long h = Hash.getInstance(Hash.JENKINS_HASH).hash64(b, b.length, 0);
+		int h1 = (int) (h >>> 32);
+		int h2 = (int) h;
+
+		int[] r = f.hash(k1);
+		assertEquals(5, r.length);
+		for (int i = 0; i < r.length; i++) {
+			int combined = h1 + i * h2;
+			assertEquals((combined < 0 ? ~combined : combined) % 1000, r[i]);
+		}
+	}
 
+	@Test
+	public void testHashDoubleHashingRange() throws UnsupportedEncodingException {
+		HashFunction f = new HashFunction(7, 16, Hash.MURMUR_HASH, HashFunction.DOUBLE_HASHING);
+		
+		for (int i = 0; i < 1000; i++) {
+			int[] r = f.hash(new StringKey("key-" + i));
+			assertEquals(16, r.length);
+			for (int j = 0; j < r.length; j++) {
+				assertTrue(r[j] >= 0 && r[j] < 7);
+			}
+		}
+	}
+
+	@Test
+	public void testHashDoubleHashingMurmur3() throws UnsupportedEncodingException {
+		HashFunction f = new HashFunction(1000, 8, Hash.MURMUR3_128, HashFunction.DOUBLE_HASHING);
+		Key key = new StringKey("key");
+		long h = Hash.getInstance(Hash.MURMUR3_128).hash64(key.getBytes(), key.getBytes().length, 0);
+		int[] r = f.hash(key);
+		for (int i = 0; i < r.length; i++) {
+			int combined = (int) (h >>> 32) + i * (int) h;
+			assertEquals((combined < 0 ? ~combined : combined) % 1000, r[i]);
+		}
+	}
+
+	@Test
+	public void testSecondHashNeverZero() {
+		// a 64-bit hash whose low half is 0 would put every position on h1
+		assertTrue(HashFunction.secondHash(0x12345678L << 32) != 0);
+		// other hashes keep their low half, and so their positions
+		assertEquals(-1, HashFunction.secondHash(-1L));
+		assertEquals(0x2a, HashFunction.secondHash(0x2aL));
+	}
+
+	@Test
+	public void testHashIntoBuffer() throws UnsupportedEncodingException {
+		HashFunction f = new HashFunction(8, 2, Hash.JENKINS_HASH);
+		
+		int[] result = new int[] { -1, -1, -1 };
+		f.hash(new StringKey("toto"), result);
+		assertEquals(6, result[0]);
+		assertEquals(0, result[1]);
+		assertEquals(-1, result[2]);
+
+		f.hash(new StringKey("lula"), result);
+		assertEquals(3, result[0]);
+		assertEquals(4, result[1]);
+		assertEquals(-1, result[2]);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testHashIntoShortBuffer() throws UnsupportedEncodingException {
+		HashFunction f = new HashFunction(8, 2, Hash.JENKINS_HASH);
+		f.hash(new StringKey("toto"), new int[1]);
+	}
+
+	@Test
+	public void testHashWithProbe() throws UnsupportedEncodingException {
+		HashFunction f = new HashFunction(1000, 6, Hash.MURMUR_HASH, HashFunction.DOUBLE_HASHING);
+		Key k = new StringKey("toto");
+		final int[] expected = f.hash(k);
+
+		RecordingProbe all = new RecordingProbe(expected.length);
+		assertTrue(f.hash(k, all));
+		assertEquals(expected.length, all.count);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], all.positions[i]);
+		}
+
+		RecordingProbe first = new RecordingProbe(1);
+		assertFalse(f.hash(k, first));
+		assertEquals(2, first.count);
+		assertEquals(expected[0], first.positions[0]);
+	}
+
+	static class RecordingProbe implements HashFunction.Probe {
+		final int[] positions = new int[16];
+		final int accepted;
+		int count = 0;
+
+		RecordingProbe(int accepted) { this.accepted = accepted; }
+
+		public boolean visit(int position) {
+			positions[count++] = position;
+			return count <= accepted;
+		}
+	}
+
+}
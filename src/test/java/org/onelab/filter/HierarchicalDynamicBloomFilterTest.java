@@ -0,0 +1,243 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HierarchicalDynamicBloomFilterTest {
+
+	private HierarchicalDynamicBloomFilter bf = null;
+	private DynamicBloomFilter reference = null;
+	private static final int vectorSize = 100;
+	private static final int numberHashFunctions = 3;
+	private static final int maximumNumberOfKeysPerFilter = 2;
+	private static final int groupSize = 4;
+
+	@Before
+	public void setUp() throws Exception {
+		bf = new HierarchicalDynamicBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter, groupSize);
+		reference = new DynamicBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter);
+	}
+
+	private void addKeys(int n) throws UnsupportedEncodingException {
+		for (int i = 0; i < n; i++) {
+			bf.add(new StringKey("key-" + i));
+			reference.add(new StringKey("key-" + i));
+		}
+	}
+
+	private void assertSameMembership(DynamicBloomFilter expected, DynamicBloomFilter actual) throws UnsupportedEncodingException {
+		for (int i = 0; i < 1000; i++) {
+			StringKey key = new StringKey((i % 2 == 0 ? "key-" : "other-") + i / 2);
+			assertEquals(expected.membershipTest(key), actual.membershipTest(key));
+		}
+	}
+
+	@Test
+	public void testHierarchicalDynamicBloomFilterConstructor() {
+		assertNotNull(bf);
+		assertEquals(groupSize, bf.groupSize);
+		assertEquals(1, bf.getRowCount());
+		assertEquals(1, bf.getLevelCount());
+		assertEquals(1, bf.levels.get(0).size());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorGroupSize() {
+		new HierarchicalDynamicBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter, 1);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddNullKey() {
+		bf.add((Key) null);
+	}
+
+	@Test
+	public void testMembershipTestNullKey() {
+		assertFalse(bf.membershipTest((Key) null));
+	}
+
+	@Test
+	public void testLevels() throws Exception {
+		addKeys(2 * groupSize);
+		assertEquals(1, bf.getLevelCount());
+		addKeys(1);
+		// 5 rows, so 2 summaries at level 0
+		assertEquals(1, bf.getLevelCount());
+		assertEquals(2, bf.levels.get(0).size());
+
+		// 150 rows: 38, 10 then 3 summaries
+		setUp();
+		addKeys(300);
+		assertEquals(150, bf.getRowCount());
+		assertEquals(3, bf.getLevelCount());
+		assertEquals(38, bf.levels.get(0).size());
+		assertEquals(10, bf.levels.get(1).size());
+		assertEquals(3, bf.levels.get(2).size());
+	}
+
+	@Test
+	public void testIncrementalSummaries() throws UnsupportedEncodingException {
+		addKeys(300);
+		// summaries maintained key by key match summaries rebuilt from the rows
+		HierarchicalDynamicBloomFilter clone = (HierarchicalDynamicBloomFilter) bf.clone();
+		for (int l = 0; l < bf.getLevelCount(); l++) {
+			assertEquals(clone.levels.get(l).size(), bf.levels.get(l).size());
+			for (int i = 0; i < bf.levels.get(l).size(); i++) {
+				assertEquals(clone.levels.get(l).get(i).bits, bf.levels.get(l).get(i).bits);
+			}
+		}
+	}
+
+	@Test
+	public void testSameMembershipAsDynamicBloomFilter() throws UnsupportedEncodingException {
+		addKeys(300);
+		assertEquals(reference.toString(), bf.toString());
+		for (int i = 0; i < 300; i++) {
+			assertTrue(bf.membershipTest(new StringKey("key-" + i)));
+		}
+		assertSameMembership(reference, bf);
+	}
+
+	@Test
+	public void testLogicalOperations() throws UnsupportedEncodingException {
+		addKeys(40);
+		HierarchicalDynamicBloomFilter other = new HierarchicalDynamicBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter, groupSize);
+		DynamicBloomFilter otherReference = new DynamicBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter);
+		for (int i = 0; i < 40; i++) {
+			other.add(new StringKey("other-" + i));
+			otherReference.add(new StringKey("other-" + i));
+		}
+
+		bf.or(other);
+		reference.or(otherReference);
+		assertSameMembership(reference, bf);
+
+		bf.not();
+		reference.not();
+		assertSameMembership(reference, bf);
+
+		bf.xor(other);
+		reference.xor(otherReference);
+		assertSameMembership(reference, bf);
+
+		bf.and(other);
+		reference.and(otherReference);
+		assertSameMembership(reference, bf);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testIncompatible() {
+		bf.or(reference);
+	}
+
+	@Test
+	public void testClone() throws UnsupportedEncodingException {
+		addKeys(30);
+		HierarchicalDynamicBloomFilter clone = (HierarchicalDynamicBloomFilter) bf.clone();
+		assertEquals(bf.toString(), clone.toString());
+		assertEquals(bf.getLevelCount(), clone.getLevelCount());
+		clone.add(new StringKey("extra-1"));
+		clone.add(new StringKey("extra-2"));
+		assertEquals(bf.getRowCount() + 1, clone.getRowCount());
+		assertTrue(clone.membershipTest(new StringKey("extra-2")));
+	}
+
+	@Test
+	public void testConcurrentMembershipTest() throws Exception {
+		final int threads = 8;
+		final int keys = 2000;
+		final HierarchicalDynamicBloomFilter filter = new HierarchicalDynamicBloomFilter(10000, 8, Hash.MURMUR_HASH, 100, groupSize);
+		for (int i = 0; i < keys; i++) {
+			filter.add(new StringKey("key-" + i));
+		}
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger falseNegatives = new AtomicInteger();
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] readers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			readers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int round = 0; round < 20; round++) {
+							for (int i = 0; i < keys; i++) {
+								if (!filter.membershipTest(new StringKey("key-" + i))) {
+									falseNegatives.incrementAndGet();
+								}
+							}
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			readers[t].start();
+		}
+		start.countDown();
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertTrue(errors.isEmpty());
+		assertEquals(0, falseNegatives.get());
+	}
+
+	@Test
+	public void testAddSliceUpdatesSummaries() throws UnsupportedEncodingException {
+		HierarchicalDynamicBloomFilter keys = new HierarchicalDynamicBloomFilter(1000, 4, Hash.MURMUR_HASH, 10, 2);
+		HierarchicalDynamicBloomFilter slices = new HierarchicalDynamicBloomFilter(1000, 4, Hash.MURMUR_HASH, 10, 2);
+		SliceAsserts.assertSlicesMatchKeys(keys, slices, 300);
+
+		assertEquals(keys.getLevelCount(), slices.getLevelCount());
+		for (int l = 0; l < keys.getLevelCount(); l++) {
+			assertEquals(keys.levels.get(l).toString(), slices.levels.get(l).toString());
+		}
+	}
+
+	@Test
+	public void testMissSkipsRows() throws UnsupportedEncodingException {
+		// rows sized for 1% false positives at nr keys, so about half set
+		HierarchicalDynamicBloomFilter filter = new HierarchicalDynamicBloomFilter(9586, 7, Hash.MURMUR_HASH, 1000, 2);
+		for (int i = 0; i < 4000; i++) {
+			filter.add(new StringKey("key-" + i));
+		}
+		assertEquals(4, filter.getRowCount());
+
+		final AtomicInteger probes = new AtomicInteger();
+		for (int r = 0; r < filter.getRowCount(); r++) {
+			BloomFilter row = new BloomFilter(9586, 7, Hash.MURMUR_HASH) {
+				@Override
+				boolean membershipTest(int[] positions) {
+					probes.incrementAndGet();
+					return super.membershipTest(positions);
+				}
+			};
+			row.bits.or(filter.matrix[r].bits);
+			filter.matrix[r] = row;
+		}
+
+		int misses = 1000;
+		for (int i = 0; i < misses; i++) {
+			filter.membershipTest(new StringKey("other-" + i));
+		}
+		// a summary of 2 half-set rows is about 75% set, so it lets about
+		// 0.75^7 = 13% of the misses through to its rows
+		assertTrue(probes.get() > 0);
+		assertTrue(probes.get() < misses * filter.getRowCount() / 4);
+	}
+
+}
@@ -0,0 +1,114 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LargeBloomFilterTest {
+
+	private LargeBloomFilter bf = null;
+	private static final long bitSize = 10000;
+	private static final int numberHashFunctions = 4;
+
+	@Before
+	public void setUp() throws Exception {
+		bf = new LargeBloomFilter(bitSize, numberHashFunctions, Hash.JENKINS_HASH);
+	}
+
+	@Test
+	public void testLargeBloomFilterConstructor() {
+		assertNotNull(bf);
+		assertEquals(bitSize, bf.getBitSize());
+		assertEquals(bitSize, bf.vectorSize);
+		assertEquals(numberHashFunctions, bf.nbHash);
+		assertEquals(Hash.JENKINS_HASH, bf.hashType);
+		assertEquals(bitSize, bf.bits.bitSize());
+		assertNull(bf.hash);
+		assertEquals(HashFunction.DOUBLE_HASHING, bf.hashScheme);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddNullKey() {
+		bf.add((Key) null);
+	}
+
+	@Test
+	public void testMembershipTestNullKey() {
+		assertFalse(bf.membershipTest((Key) null));
+	}
+
+	@Test
+	public void testAddKeyAndMembershipTest() throws UnsupportedEncodingException {
+		for (int i = 0; i < 500; i++) {
+			bf.add(new StringKey("key-" + i));
+		}
+		for (int i = 0; i < 500; i++) {
+			assertTrue(bf.membershipTest(new StringKey("key-" + i)));
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (bf.membershipTest(new StringKey("other-" + i))) {
+				falsePositives++;
+			}
+		}
+		// about 2.4% expected with m/n = 20 and k = 4
+		assertTrue(falsePositives < 500);
+	}
+
+	@Test
+	public void testOrAndClone() throws UnsupportedEncodingException {
+		LargeBloomFilter a = new LargeBloomFilter(bitSize, numberHashFunctions, Hash.JENKINS_HASH);
+		a.add(new StringKey("toto"));
+		bf.add(new StringKey("lulu"));
+
+		LargeBloomFilter c = (LargeBloomFilter) bf.clone();
+		assertEquals(bf.bits, c.bits);
+
+		c.or(a);
+		assertTrue(c.membershipTest(new StringKey("toto")));
+		assertTrue(c.membershipTest(new StringKey("lulu")));
+
+		c.and(a);
+		assertEquals(a.bits, c.bits);
+
+		c.xor(a);
+		assertEquals(0, c.bits.cardinality());
+
+		c.not();
+		assertEquals(bitSize, c.bits.cardinality());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testOrThrowsExceptionWhenFiltersAreIncompatible1() {
+		bf.or(new LargeBloomFilter(bitSize + 1, numberHashFunctions, Hash.JENKINS_HASH));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testOrThrowsExceptionWhenFiltersAreIncompatible2() {
+		bf.or(new LargeBloomFilter(bitSize, numberHashFunctions, Hash.MURMUR_HASH));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testOrThrowsExceptionWhenFiltersAreIncompatible3() {
+		bf.or(new BloomFilter((int) bitSize, numberHashFunctions, Hash.JENKINS_HASH));
+	}
+
+	@Test
+	public void testAddSliceAndMembershipTest() throws UnsupportedEncodingException {
+		LargeBloomFilter keys = new LargeBloomFilter(10000, 4, Hash.MURMUR_HASH);
+		LargeBloomFilter slices = new LargeBloomFilter(10000, 4, Hash.MURMUR_HASH);
+		SliceAsserts.assertSlicesMatchKeys(keys, slices, 300);
+
+		// the slices are hashed to the same long positions as the keys
+		assertEquals(keys.toString(), slices.toString());
+	}
+
+}
@@ -0,0 +1,114 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LongBitArrayTest {
+
+	@Test
+	public void testConstructor() {
+		LongBitArray bits = new LongBitArray(130);
+		assertEquals(130, bits.bitSize());
+		assertEquals(3, bits.words.length);
+		assertEquals(0, bits.cardinality());
+		assertEquals("{}", bits.toString());
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorWithZeroSize() {
+		new LongBitArray(0);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorWithTooLargeSize() {
+		new LongBitArray(LongBitArray.MAX_BIT_SIZE + 1);
+	}
+
+	@Test
+	public void testMaxBitSize() {
+		assertEquals(Integer.MAX_VALUE - 8, LongBitArray.MAX_BIT_SIZE / Long.SIZE);
+		assertEquals(0, LongBitArray.MAX_BIT_SIZE % Long.SIZE);
+	}
+
+	@Test
+	public void testSetAndGet() {
+		LongBitArray bits = new LongBitArray(130);
+		bits.set(0);
+		bits.set(63);
+		bits.set(64);
+		bits.set(129);
+
+		assertTrue(bits.get(0));
+		assertFalse(bits.get(1));
+		assertTrue(bits.get(63));
+		assertTrue(bits.get(64));
+		assertFalse(bits.get(65));
+		assertTrue(bits.get(129));
+		assertEquals(4, bits.cardinality());
+		assertEquals("{0, 63, 64, 129}", bits.toString());
+
+		bits.clear();
+		assertEquals(0, bits.cardinality());
+	}
+
+	@Test
+	public void testNextSetBit() {
+		LongBitArray bits = new LongBitArray(200);
+		bits.set(5);
+		bits.set(130);
+
+		assertEquals(5, bits.nextSetBit(0));
+		assertEquals(5, bits.nextSetBit(5));
+		assertEquals(130, bits.nextSetBit(6));
+		assertEquals(-1, bits.nextSetBit(131));
+		assertEquals(-1, bits.nextSetBit(200));
+	}
+
+	@Test
+	public void testLogicalOperations() {
+		LongBitArray a = new LongBitArray(70);
+		a.set(1);
+		a.set(65);
+		LongBitArray b = new LongBitArray(70);
+		b.set(2);
+		b.set(65);
+
+		LongBitArray c = new LongBitArray(70);
+		c.or(a);
+		c.and(b);
+		assertEquals("{65}", c.toString());
+
+		c.or(a);
+		c.xor(b);
+		assertEquals("{1, 2}", c.toString());
+
+		c.not();
+		assertEquals(68, c.cardinality());
+		assertFalse(c.get(1));
+		assertFalse(c.get(2));
+		assertTrue(c.get(69));
+		assertEquals(-1, c.nextSetBit(70));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testOrWithDifferentSize() {
+		new LongBitArray(70).or(new LongBitArray(71));
+	}
+
+	@Test
+	public void testEquals() {
+		LongBitArray a = new LongBitArray(70);
+		LongBitArray b = new LongBitArray(70);
+		assertEquals(a, b);
+		a.set(3);
+		assertFalse(a.equals(b));
+		b.set(3);
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+		assertFalse(a.equals(new LongBitArray(71)));
+	}
+
+}
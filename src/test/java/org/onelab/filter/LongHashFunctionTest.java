@@ -0,0 +1,83 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.Test;
+
+public class LongHashFunctionTest {
+
+	@Test
+	public void testLongHashFunction() {
+		LongHashFunction f = new LongHashFunction(8L << 32, 2, Hash.JENKINS_HASH);
+
+		assertNotNull(f);
+		assertEquals(8L << 32, f.maxValue);
+		assertEquals(2, f.nbHash);
+		assertEquals(Hash.getInstance(Hash.JENKINS_HASH), f.hashFunction);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testLongHashFunctionWithNegativeValue1() {
+		new LongHashFunction(-8, 2, Hash.JENKINS_HASH);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testLongHashFunctionWithNegativeValue2() {
+		new LongHashFunction(8, -2, Hash.JENKINS_HASH);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testLongHashFunctionWithUnknownHashType() {
+		new LongHashFunction(8, 2, Hash.INVALID_HASH);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testHashWithIllegalArgument() {
+		new LongHashFunction(8, 2, Hash.JENKINS_HASH).hash(null);
+	}
+
+	@Test
+	public void testHashIsDeterministic() throws UnsupportedEncodingException {
+		LongHashFunction f = new LongHashFunction(1000, 4, Hash.MURMUR_HASH);
+
+		long[] h1 = f.hash(new StringKey("toto"));
+		long[] h2 = new long[5];
+		f.hash(new StringKey("toto"), h2);
+		assertEquals(4, h1.length);
+		for (int i = 0; i < h1.length; i++) {
+			assertEquals(h1[i], h2[i]);
+		}
+		assertEquals(0, h2[4]);
+	}
+
+	@Test
+	public void testHashCoversLongRange() throws UnsupportedEncodingException {
+		long maxValue = 5L << 32;
+		LongHashFunction f = new LongHashFunction(maxValue, 8, Hash.JENKINS_HASH);
+
+		boolean beyondInt = false;
+		for (int i = 0; i < 100; i++) {
+			long[] r = f.hash(new StringKey("key-" + i));
+			for (int j = 0; j < r.length; j++) {
+				assertTrue(r[j] >= 0 && r[j] < maxValue);
+				beyondInt |= r[j] > Integer.MAX_VALUE;
+			}
+		}
+		assertTrue(beyondInt);
+	}
+
+	@Test
+	public void testSecondHashNeverZero() {
+		// the finalizer maps 0 to 0, which would put every position on h1
+		assertTrue(LongHashFunction.secondHash(0) != 0);
+		for (long h1 = 1; h1 < 1000; h1++) {
+			assertTrue(LongHashFunction.secondHash(h1) != 0);
+		}
+	}
+
+}
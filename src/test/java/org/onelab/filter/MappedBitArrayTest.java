@@ -0,0 +1,84 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedBitArrayTest {
+
+	private File file = null;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("mapped-bits", ".bin");
+		file.deleteOnExit();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private MappedBitArray map(long position, long bitSize, FileChannel.MapMode mode) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw");
+		try {
+			return new MappedBitArray(raf.getChannel(), position, bitSize, mode);
+		} finally {
+			raf.close();
+		}
+	}
+
+	@Test
+	public void testSetForceAndReopen() throws IOException {
+		MappedBitArray bits = map(16, 130, FileChannel.MapMode.READ_WRITE);
+		assertEquals(16 + 24, file.length());
+		bits.set(0);
+		bits.set(64);
+		bits.set(129);
+		bits.force();
+		bits.close();
+		assertTrue(bits.isClosed());
+
+		MappedBitArray reopened = map(16, 130, FileChannel.MapMode.READ_ONLY);
+		try {
+			assertEquals("{0, 64, 129}", reopened.toString());
+			assertTrue(reopened.get(64));
+			assertFalse(reopened.get(65));
+		} finally {
+			reopened.close();
+		}
+	}
+
+	@Test
+	public void testLittleEndianLayout() throws IOException {
+		MappedBitArray bits = map(0, 64, FileChannel.MapMode.READ_WRITE);
+		bits.set(0);
+		bits.set(9);
+		bits.close();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			assertEquals(0x01, raf.read());
+			assertEquals(0x02, raf.read());
+		} finally {
+			raf.close();
+		}
+	}
+
+	@Test (expected=IllegalStateException.class)
+	public void testForceAfterClose() throws IOException {
+		MappedBitArray bits = map(0, 64, FileChannel.MapMode.READ_WRITE);
+		bits.close();
+		bits.force();
+	}
+
+}
@@ -0,0 +1,183 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedBloomFilterTest {
+
+	private static final long bitSize = 10000;
+	private static final int numberHashFunctions = 4;
+	private File file = null;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("mapped-filter", ".bf");
+		file.deleteOnExit();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.delete();
+	}
+
+	@Test
+	public void testCreate() throws IOException {
+		MappedBloomFilter bf = MappedBloomFilter.create(file, bitSize, numberHashFunctions, Hash.MURMUR_HASH);
+		try {
+			assertEquals(file, bf.getFile());
+			assertEquals(bitSize, bf.getBitSize());
+			assertEquals(numberHashFunctions, bf.nbHash);
+			assertEquals(Hash.MURMUR_HASH, bf.hashType);
+			assertEquals(0, bf.bits.cardinality());
+			assertEquals(MappedBloomFilter.HEADER_SIZE + 157 * 8, file.length());
+		} finally {
+			bf.close();
+		}
+	}
+
+	@Test
+	public void testCreateAddAndOpen() throws IOException {
+		LargeBloomFilter heap = new LargeBloomFilter(bitSize, numberHashFunctions, Hash.JENKINS_HASH);
+		MappedBloomFilter bf = MappedBloomFilter.create(file, bitSize, numberHashFunctions, Hash.JENKINS_HASH);
+		for (int i = 0; i < 500; i++) {
+			bf.add(new StringKey("key-" + i));
+			heap.add(new StringKey("key-" + i));
+		}
+		bf.force();
+		bf.close();
+		assertTrue(bf.isClosed());
+
+		MappedBloomFilter reopened = MappedBloomFilter.open(file, false);
+		try {
+			assertEquals(bitSize, reopened.getBitSize());
+			assertEquals(numberHashFunctions, reopened.nbHash);
+			assertEquals(Hash.JENKINS_HASH, reopened.hashType);
+			for (int i = 0; i < 500; i++) {
+				assertTrue(reopened.membershipTest(new StringKey("key-" + i)));
+			}
+			assertEquals(heap.bits, reopened.bits);
+		} finally {
+			reopened.close();
+		}
+	}
+
+	@Test
+	public void testWritersShareTheFile() throws IOException {
+		MappedBloomFilter a = MappedBloomFilter.create(file, bitSize, numberHashFunctions, Hash.JENKINS_HASH);
+		MappedBloomFilter b = MappedBloomFilter.open(file, true);
+		try {
+			a.add(new StringKey("toto"));
+			assertTrue(b.membershipTest(new StringKey("toto")));
+			b.add(new StringKey("lulu"));
+			assertTrue(a.membershipTest(new StringKey("lulu")));
+		} finally {
+			a.close();
+			b.close();
+		}
+	}
+
+	@Test (expected=ReadOnlyBufferException.class)
+	public void testAddToReadOnlyFilter() throws IOException {
+		MappedBloomFilter.create(file, bitSize, numberHashFunctions, Hash.JENKINS_HASH).close();
+		MappedBloomFilter bf = MappedBloomFilter.open(file, false);
+		try {
+			bf.add(new StringKey("toto"));
+		} finally {
+			bf.close();
+		}
+	}
+
+	@Test
+	public void testClone() throws IOException {
+		MappedBloomFilter bf = MappedBloomFilter.create(file, bitSize, numberHashFunctions, Hash.JENKINS_HASH);
+		bf.add(new StringKey("toto"));
+		OffHeapBloomFilter clone = (OffHeapBloomFilter) bf.clone();
+		try {
+			assertFalse(clone instanceof MappedBloomFilter);
+			assertEquals(bf.bits, clone.bits);
+		} finally {
+			clone.close();
+			bf.close();
+		}
+	}
+
+	@Test (expected=IOException.class)
+	public void testOpenNotAFilter() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.write(new byte[MappedBloomFilter.HEADER_SIZE]);
+		raf.close();
+		MappedBloomFilter.open(file, false);
+	}
+
+	@Test (expected=IOException.class)
+	public void testOpenTruncatedFilter() throws IOException {
+		MappedBloomFilter.create(file, bitSize, numberHashFunctions, Hash.JENKINS_HASH).close();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(file.length() - 8);
+		raf.close();
+		MappedBloomFilter.open(file, false);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testCreateWithUnknownHashType() throws IOException {
+		MappedBloomFilter.create(file, bitSize, numberHashFunctions, Hash.INVALID_HASH);
+	}
+
+	@Test (expected=IOException.class)
+	public void testOpenTooLongFilter() throws IOException {
+		MappedBloomFilter.create(file, bitSize, numberHashFunctions, Hash.JENKINS_HASH).close();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(file.length() + 8);
+		raf.close();
+		MappedBloomFilter.open(file, false);
+	}
+
+	@Test (expected=IOException.class)
+	public void testOpenWithNegativeBitSize() throws IOException {
+		openCorrupted(8, ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, -1L));
+	}
+
+	@Test (expected=IOException.class)
+	public void testOpenWithHugeBitSize() throws IOException {
+		openCorrupted(8, ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, Long.MAX_VALUE));
+	}
+
+	@Test (expected=IOException.class)
+	public void testOpenWithZeroHashFunctions() throws IOException {
+		openCorrupted(16, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 0));
+	}
+
+	@Test (expected=IOException.class)
+	public void testOpenWithUnknownHashType() throws IOException {
+		openCorrupted(20, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, Hash.INVALID_HASH));
+	}
+
+	/**
+	 * Writes <code>value</code> over the header of a new filter at
+	 * <code>position</code>, then opens the filter.
+	 */
+	private void openCorrupted(long position, ByteBuffer value) throws IOException {
+		MappedBloomFilter.create(file, bitSize, numberHashFunctions, Hash.JENKINS_HASH).close();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.getChannel().write(value, position);
+		} finally {
+			raf.close();
+		}
+		MappedBloomFilter.open(file, false).close();
+	}
+
+}
@@ -0,0 +1,94 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapBloomFilterTest {
+
+	private OffHeapBloomFilter bf = null;
+	private static final long bitSize = 10000;
+	private static final int numberHashFunctions = 4;
+
+	@Before
+	public void setUp() throws Exception {
+		bf = new OffHeapBloomFilter(bitSize, numberHashFunctions, Hash.JENKINS_HASH);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		bf.close();
+		bf = null;
+	}
+
+	@Test
+	public void testOffHeapBloomFilterConstructor() {
+		assertNotNull(bf);
+		assertEquals(bitSize, bf.getBitSize());
+		assertEquals(numberHashFunctions, bf.nbHash);
+		assertEquals(Hash.JENKINS_HASH, bf.hashType);
+		assertTrue(bf.bits instanceof DirectBitArray);
+		assertFalse(bf.isClosed());
+	}
+
+	@Test
+	public void testAddKeyAndMembershipTest() throws UnsupportedEncodingException {
+		LargeBloomFilter heap = new LargeBloomFilter(bitSize, numberHashFunctions, Hash.JENKINS_HASH);
+		for (int i = 0; i < 500; i++) {
+			bf.add(new StringKey("key-" + i));
+			heap.add(new StringKey("key-" + i));
+		}
+		for (int i = 0; i < 500; i++) {
+			assertTrue(bf.membershipTest(new StringKey("key-" + i)));
+		}
+		// same positions as the heap version
+		assertEquals(heap.bits, bf.bits);
+	}
+
+	@Test
+	public void testOrWithHeapFilter() throws UnsupportedEncodingException {
+		LargeBloomFilter heap = new LargeBloomFilter(bitSize, numberHashFunctions, Hash.JENKINS_HASH);
+		heap.add(new StringKey("toto"));
+
+		bf.or(heap);
+		assertTrue(bf.membershipTest(new StringKey("toto")));
+
+		heap.add(new StringKey("lulu"));
+		heap.and(bf);
+		assertTrue(heap.membershipTest(new StringKey("toto")));
+	}
+
+	@Test
+	public void testClone() throws UnsupportedEncodingException {
+		bf.add(new StringKey("toto"));
+		OffHeapBloomFilter clone = (OffHeapBloomFilter) bf.clone();
+		try {
+			assertTrue(clone.bits instanceof DirectBitArray);
+			assertEquals(bf.bits, clone.bits);
+		} finally {
+			clone.close();
+		}
+	}
+
+	@Test (expected=IllegalStateException.class)
+	public void testAddAfterClose() throws UnsupportedEncodingException {
+		bf.close();
+		assertTrue(bf.isClosed());
+		bf.add(new StringKey("toto"));
+	}
+
+	@Test (expected=IllegalStateException.class)
+	public void testMembershipTestAfterClose() throws UnsupportedEncodingException {
+		bf.close();
+		bf.membershipTest(new StringKey("toto"));
+	}
+
+}
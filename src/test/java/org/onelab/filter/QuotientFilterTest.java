@@ -0,0 +1,300 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QuotientFilterTest {
+
+	private QuotientFilter qf = null;
+	private static final int quotientBits = 14;
+	private static final int remainderBits = 10;
+
+	@Before
+	public void setUp() throws Exception {
+		qf = new QuotientFilter(quotientBits, remainderBits, Hash.MURMUR_HASH);
+	}
+
+	@Test
+	public void testQuotientFilterConstructor() {
+		assertNotNull(qf);
+		assertEquals(1 << quotientBits, qf.vectorSize);
+		assertEquals(13, qf.slotBits);
+		assertEquals((13 << quotientBits) / 64, qf.slots.length);
+		assertEquals(0, qf.size());
+		assertEquals(1, new QuotientFilter(3, 3, Hash.MURMUR_HASH).slots.length);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorQuotientBits() {
+		new QuotientFilter(0, 8, Hash.MURMUR_HASH);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorRemainderBits() {
+		new QuotientFilter(10, 55, Hash.MURMUR_HASH);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddNullKey() {
+		qf.add((Key) null);
+	}
+
+	@Test
+	public void testMembershipTestNullKey() {
+		assertFalse(qf.membershipTest((Key) null));
+	}
+
+	@Test
+	public void testAddAndMembershipTest() throws UnsupportedEncodingException {
+		int n = 12000;
+		List<Key> keys = keys("key-", n);
+		qf.add(keys);
+		assertEquals(n, qf.size());
+		for (Key key : keys) {
+			assertTrue(qf.membershipTest(key));
+		}
+
+		int falsePositives = 0;
+		int tests = 100000;
+		for (int i = 0; i < tests; i++) {
+			if (qf.membershipTest(new StringKey("other-" + i))) {
+				falsePositives++;
+			}
+		}
+		// 0.73 / 2^10 = 0.07%
+		assertTrue("false positives: " + falsePositives, falsePositives < tests / 500);
+	}
+
+	@Test
+	public void testFull() throws UnsupportedEncodingException {
+		QuotientFilter small = new QuotientFilter(3, 8, Hash.MURMUR_HASH);
+		small.add(keys("key-", 8));
+		assertEquals(8, small.size());
+		for (Key key : keys("key-", 8)) {
+			assertTrue(small.membershipTest(key));
+		}
+		try {
+			small.add(new StringKey("key-8"));
+			fail("a full filter should reject a key");
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	@Test
+	public void testDelete() throws UnsupportedEncodingException {
+		List<Key> keys = keys("key-", 10000);
+		qf.add(keys);
+		for (int i = 0; i < 5000; i++) {
+			qf.delete(keys.get(i));
+		}
+		assertEquals(5000, qf.size());
+		for (int i = 5000; i < 10000; i++) {
+			assertTrue(qf.membershipTest(keys.get(i)));
+		}
+		for (int i = 5000; i < 10000; i++) {
+			qf.delete(keys.get(i));
+		}
+		assertEquals(0, qf.size());
+		assertEquals("{}", qf.toString());
+		for (int i = 0; i < qf.slots.length; i++) {
+			assertEquals(0L, qf.slots[i]);
+		}
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testDeleteNotMember() throws UnsupportedEncodingException {
+		qf.delete(new StringKey("key"));
+	}
+
+	@Test
+	public void testDuplicates() throws UnsupportedEncodingException {
+		Key key = new StringKey("key");
+		qf.add(key);
+		qf.add(key);
+		assertEquals(2, qf.size());
+		qf.delete(key);
+		assertTrue(qf.membershipTest(key));
+		qf.delete(key);
+		assertFalse(qf.membershipTest(key));
+	}
+
+	@Test
+	public void testRandomAddAndDelete() throws UnsupportedEncodingException {
+		// few remainder bits and a small table: long clusters that wrap around
+		QuotientFilter small = new QuotientFilter(8, 2, Hash.MURMUR_HASH);
+		List<Key> keys = keys("key-", 64);
+		List<Key> added = new ArrayList<Key>();
+		Random rnd = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			if (added.size() < 240 && (added.isEmpty() || rnd.nextInt(3) != 0)) {
+				Key key = keys.get(rnd.nextInt(keys.size()));
+				small.add(key);
+				added.add(key);
+			} else {
+				small.delete(added.remove(rnd.nextInt(added.size())));
+			}
+			assertEquals(added.size(), small.size());
+			if (i % 97 == 0) {
+				for (Key key : added) {
+					assertTrue(small.membershipTest(key));
+				}
+			}
+		}
+		while (!added.isEmpty()) {
+			small.delete(added.remove(added.size() - 1));
+		}
+		for (int i = 0; i < small.slots.length; i++) {
+			assertEquals(0L, small.slots[i]);
+		}
+	}
+
+	@Test
+	public void testExpand() throws UnsupportedEncodingException {
+		List<Key> keys = keys("key-", 12000);
+		qf.add(keys);
+		String fingerprints = qf.toString();
+		qf.expand();
+		assertEquals(1 << (quotientBits + 1), qf.vectorSize);
+		assertEquals(quotientBits + 1, qf.quotientBits);
+		assertEquals(remainderBits - 1, qf.remainderBits);
+		assertEquals(12000, qf.size());
+		assertEquals(fingerprints, qf.toString());
+		for (Key key : keys) {
+			assertTrue(qf.membershipTest(key));
+		}
+		qf.delete(keys.get(0));
+		assertEquals(11999, qf.size());
+	}
+
+	@Test (expected=IllegalStateException.class)
+	public void testExpandLastBit() {
+		new QuotientFilter(8, 1, Hash.MURMUR_HASH).expand();
+	}
+
+	@Test
+	public void testOr() throws UnsupportedEncodingException {
+		QuotientFilter other = new QuotientFilter(quotientBits, remainderBits, Hash.MURMUR_HASH);
+		List<Key> keys = keys("key-", 8000);
+		List<Key> others = keys("other-", 8000);
+		qf.add(keys);
+		other.add(others);
+		qf.or(other);
+		assertEquals(16000, qf.size());
+		assertEquals(quotientBits + 1, qf.quotientBits);
+		for (Key key : keys) {
+			assertTrue(qf.membershipTest(key));
+		}
+		for (Key key : others) {
+			assertTrue(qf.membershipTest(key));
+		}
+	}
+
+	@Test
+	public void testOrExpanded() throws UnsupportedEncodingException {
+		QuotientFilter other = new QuotientFilter(quotientBits - 2, remainderBits + 2, Hash.MURMUR_HASH);
+		List<Key> others = keys("other-", 1000);
+		other.add(others);
+		qf.or(other);
+		assertEquals(1000, qf.size());
+		for (Key key : others) {
+			assertTrue(qf.membershipTest(key));
+		}
+	}
+
+	@Test
+	public void testOrTooLarge() throws UnsupportedEncodingException {
+		// 12 + 12 fingerprints cannot fit 16 slots, and remainders are down to one bit
+		QuotientFilter small = new QuotientFilter(4, 1, Hash.MURMUR_HASH);
+		QuotientFilter other = new QuotientFilter(4, 1, Hash.MURMUR_HASH);
+		small.add(keys("key-", 12));
+		other.add(keys("other-", 12));
+		String fingerprints = small.toString();
+		try {
+			small.or(other);
+			fail("union should not fit");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(12, small.size());
+		assertEquals(4, small.quotientBits);
+		assertEquals(fingerprints, small.toString());
+	}
+
+	@Test
+	public void testFingerprintsSorted() throws UnsupportedEncodingException {
+		// small tables fill up to their last slot, so clusters often wrap around
+		Random random = new Random(19);
+		for (int trial = 0; trial < 1000; trial++) {
+			QuotientFilter small = new QuotientFilter(4, 6, Hash.MURMUR_HASH);
+			small.add(keys("key-" + random.nextInt() + "-", 12 + random.nextInt(5)));
+			String fingerprints = small.toString();
+			String[] values = fingerprints.substring(1, fingerprints.length() - 1).split(", ");
+			for (int i = 1; i < values.length; i++) {
+				assertTrue(fingerprints, Long.parseLong(values[i - 1]) <= Long.parseLong(values[i]));
+			}
+		}
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testOrIncompatible() {
+		qf.or(new QuotientFilter(quotientBits, remainderBits + 1, Hash.MURMUR_HASH));
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testAnd() {
+		qf.and(qf);
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testXor() {
+		qf.xor(qf);
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testNot() {
+		qf.not();
+	}
+
+	@Test
+	public void testClone() throws UnsupportedEncodingException {
+		List<Key> keys = keys("key-", 100);
+		qf.add(keys);
+		QuotientFilter clone = (QuotientFilter) qf.clone();
+		assertEquals(qf.toString(), clone.toString());
+		clone.delete(keys.get(0));
+		assertEquals(100, qf.size());
+		assertTrue(qf.membershipTest(keys.get(0)));
+	}
+
+	private static List<Key> keys(String prefix, int n) throws UnsupportedEncodingException {
+		List<Key> keys = new ArrayList<Key>();
+		for (int i = 0; i < n; i++) {
+			keys.add(new StringKey(prefix + i));
+		}
+		return keys;
+	}
+
+	@Test
+	public void testAddSliceAndMembershipTest() throws UnsupportedEncodingException {
+		QuotientFilter keys = new QuotientFilter(10, 8, Hash.MURMUR_HASH);
+		QuotientFilter slices = new QuotientFilter(10, 8, Hash.MURMUR_HASH);
+		SliceAsserts.assertSlicesMatchKeys(keys, slices, 300);
+
+		// the slices are stored as the same fingerprints as the keys
+		assertEquals(keys.size(), slices.size());
+		assertEquals(keys.toString(), slices.toString());
+	}
+
+}
@@ -0,0 +1,152 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RibbonFilterTest {
+
+	private RibbonFilter rf = null;
+	private List<Key> keys = null;
+	private static final int numberOfKeys = 10000;
+	private static final int resultBits = 7;
+
+	@Before
+	public void setUp() throws Exception {
+		keys = new ArrayList<Key>();
+		for (int i = 0; i < numberOfKeys; i++) {
+			keys.add(new StringKey("key-" + i));
+		}
+		rf = new RibbonFilter(keys, resultBits, Hash.MURMUR_HASH);
+	}
+
+	@Test
+	public void testRibbonFilterConstructor() {
+		assertNotNull(rf);
+		assertEquals(numberOfKeys, rf.size());
+		assertEquals(resultBits, rf.resultBits);
+		assertEquals(Hash.MURMUR_HASH, rf.hashType);
+		assertEquals(11064, rf.vectorSize);
+		assertEquals(173 * resultBits, rf.solution.length);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorNullKeys() {
+		new RibbonFilter((Key[]) null, resultBits, Hash.MURMUR_HASH);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorNullKey() {
+		new RibbonFilter(new Key[] { null }, resultBits, Hash.MURMUR_HASH);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorResultBits() {
+		new RibbonFilter(new Key[0], 33, Hash.MURMUR_HASH);
+	}
+
+	@Test
+	public void testMembershipTestNullKey() {
+		assertFalse(rf.membershipTest((Key) null));
+	}
+
+	@Test
+	public void testMembershipTest() throws UnsupportedEncodingException {
+		for (Key key : keys) {
+			assertTrue(rf.membershipTest(key));
+		}
+		int falsePositives = 0;
+		int tests = 100000;
+		for (int i = 0; i < tests; i++) {
+			if (rf.membershipTest(new StringKey("other-" + i))) {
+				falsePositives++;
+			}
+		}
+		// 1 / 128 = 0.78% expected
+		assertTrue("false positives: " + falsePositives, falsePositives > tests / 200 && falsePositives < tests / 100);
+	}
+
+	@Test
+	public void testResultBits() throws UnsupportedEncodingException {
+		for (int bits = 1; bits <= 32; bits += 31) {
+			RibbonFilter filter = new RibbonFilter(keys, bits, Hash.JENKINS_HASH);
+			for (Key key : keys) {
+				assertTrue(filter.membershipTest(key));
+			}
+		}
+	}
+
+	@Test
+	public void testArrayAndDuplicates() throws UnsupportedEncodingException {
+		Key[] array = new Key[] { new StringKey("a"), new StringKey("b"), new StringKey("a") };
+		RibbonFilter filter = new RibbonFilter(array, 16, Hash.JENKINS_HASH);
+		assertEquals(2, filter.size());
+		assertTrue(filter.membershipTest(new StringKey("a")));
+		assertTrue(filter.membershipTest(new StringKey("b")));
+		assertFalse(filter.membershipTest(new StringKey("c")));
+	}
+
+	@Test
+	public void testEmpty() {
+		RibbonFilter filter = new RibbonFilter(new Key[0], 8, Hash.JENKINS_HASH);
+		assertEquals(0, filter.size());
+		assertEquals(64, filter.vectorSize);
+		assertEquals(8, filter.solution.length);
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testAdd() throws UnsupportedEncodingException {
+		rf.add(new StringKey("key"));
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testOr() {
+		rf.or(rf);
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testNot() {
+		rf.not();
+	}
+
+	@Test
+	public void testToString() throws UnsupportedEncodingException {
+		RibbonFilter filter = new RibbonFilter(new Key[] { new StringKey("a") }, 4, Hash.JENKINS_HASH);
+		String s = filter.toString();
+		assertTrue(s.startsWith("[") && s.endsWith("]"));
+		assertEquals(65, s.split(", ").length);
+	}
+
+	@Test
+	public void testClone() {
+		RibbonFilter clone = (RibbonFilter) rf.clone();
+		assertEquals(rf.size(), clone.size());
+		assertEquals(rf.seed, clone.seed);
+		assertSame(rf.solution, clone.solution);
+		for (Key key : keys) {
+			assertTrue(clone.membershipTest(key));
+		}
+	}
+
+	@Test
+	public void testMembershipTestSlice() throws UnsupportedEncodingException {
+		SliceAsserts.assertSliceMembership(rf, numberOfKeys);
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testAddSlice() throws UnsupportedEncodingException {
+		byte[] record = SliceAsserts.record(numberOfKeys);
+		rf.add(SliceAsserts.direct(record), 1, record.length - 2);
+	}
+
+}
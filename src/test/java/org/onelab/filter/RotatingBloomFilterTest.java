@@ -3,10 +3,15 @@ package org.onelab.filter;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.onelab.filter.RotatingBloomFilter.LINE_SEPARATOR;
 
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.hbase.util.Hash;
 import org.junit.After;
@@ -40,7 +45,7 @@ public class RotatingBloomFilterTest {
 		assertEquals(maximumNumberOfKeysPerFilter, bf.maximumNumberOfKeysPerFilter);
 		assertEquals(maximumNumberOfBloomFilters, bf.maximumNumberOfBloomFilters);
 		assertEquals(0, bf.currentNumberOfKeys);
-		assertEquals(1, bf.filters.length);
+		assertEquals(1, bf.currentNumberOfBloomFilters);
 		assertNotNull(bf.filters[0]);
 		assertTrue(bf.filters[0] instanceof Filter);
 		assertTrue(bf.filters[0] instanceof BloomFilter);
@@ -70,21 +75,21 @@ public class RotatingBloomFilterTest {
 	    
 	    bf.add(k1);
 	    assertEquals(1, bf.currentNumberOfKeys);
-	    assertEquals(1, bf.filters.length);
+	    assertEquals(1, bf.currentNumberOfBloomFilters);
 	    assertTrue(bf.filters[0].membershipTest(k1));
 	    assertFalse(bf.membershipTest(k4)); // no collision at this point
 	    assertFalse(bf.filters[0].membershipTest(k4)); 
 
 	    bf.add(k2);
 	    assertEquals(2, bf.currentNumberOfKeys);
-	    assertEquals(1, bf.filters.length);
+	    assertEquals(1, bf.currentNumberOfBloomFilters);
 	    assertTrue(bf.filters[0].membershipTest(k2));
 	    assertTrue(bf.membershipTest(k4)); // this now collides
 	    assertTrue(bf.filters[0].membershipTest(k4)); 
 
 	    bf.add(k3);
 	    assertEquals(1, bf.currentNumberOfKeys);
-	    assertEquals(2, bf.filters.length);
+	    assertEquals(2, bf.currentNumberOfBloomFilters);
 	    assertFalse(bf.filters[0].membershipTest(k3));
 	    assertTrue(bf.filters[1].membershipTest(k3));
 	    assertTrue(bf.membershipTest(k4)); // this now collides
@@ -108,9 +113,9 @@ public class RotatingBloomFilterTest {
 			assertEquals(i % maximumNumberOfKeysPerFilter + 1, bf.currentNumberOfKeys);
 			// before maximumNumberOfBloomFilters we add new rows
 			if ( i / maximumNumberOfKeysPerFilter < maximumNumberOfBloomFilters ) {
-				assertEquals(i / maximumNumberOfKeysPerFilter + 1, bf.filters.length);				
+				assertEquals(i / maximumNumberOfKeysPerFilter + 1, bf.currentNumberOfBloomFilters);				
 			} else { // after maximumNumberOfBloomFilters we start rotating
-				assertEquals(maximumNumberOfBloomFilters, bf.filters.length);
+				assertEquals(maximumNumberOfBloomFilters, bf.currentNumberOfBloomFilters);
 			}
 			checkMembership(bf, i, n);
 		}
@@ -175,4 +180,116 @@ public class RotatingBloomFilterTest {
 		bf.clone();
 	}
 
+	@Test
+	public void testRotationRecyclesOldestRow() throws UnsupportedEncodingException {
+		for (int i = 0; i < maximumNumberOfKeysPerFilter * maximumNumberOfBloomFilters; i++) {
+			bf.add(new StringKey("word-" + i));
+		}
+		assertEquals(maximumNumberOfBloomFilters, bf.filters.length);
+		BloomFilter[] rows = bf.filters.clone();
+		String before = bf.toString();
+
+		bf.add(new StringKey("rotate"));
+		assertEquals(maximumNumberOfBloomFilters, bf.currentNumberOfBloomFilters);
+		assertEquals(1, bf.indexOfOldestBloomFilter);
+		for (int i = 0; i < rows.length; i++) {
+			assertSame(rows[i], bf.filters[i]);
+		}
+		// the oldest row was cleared and now only holds the new key
+		BloomFilter expected = new BloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH);
+		expected.add(new StringKey("rotate"));
+		assertEquals(expected.bits, bf.filters[0].bits);
+		String after = bf.toString();
+		assertEquals(before.substring(before.indexOf(LINE_SEPARATOR) + 1),
+				after.substring(0, after.length() - expected.toString().length() - 1));
+	}
+
+	@Test
+	public void testConcurrentMembershipTest() throws Exception {
+		final int threads = 8;
+		final int keys = 2000;
+		final RotatingBloomFilter filter = new RotatingBloomFilter(10000, 8, Hash.MURMUR_HASH, 100, 100);
+		for (int i = 0; i < keys; i++) {
+			filter.add(new StringKey("key-" + i));
+		}
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger falseNegatives = new AtomicInteger();
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] readers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			readers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int round = 0; round < 20; round++) {
+							for (int i = 0; i < keys; i++) {
+								if (!filter.membershipTest(new StringKey("key-" + i))) {
+									falseNegatives.incrementAndGet();
+								}
+							}
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			readers[t].start();
+		}
+		start.countDown();
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertTrue(errors.isEmpty());
+		assertEquals(0, falseNegatives.get());
+	}
+
+	@Test
+	public void testAddSliceAndMembershipTest() throws UnsupportedEncodingException {
+		SliceAsserts.assertSlicesMatchKeys(new RotatingBloomFilter(1000, 4, Hash.MURMUR_HASH, 100, 10),
+				new RotatingBloomFilter(1000, 4, Hash.MURMUR_HASH, 100, 10), 300);
+	}
+
+	@Test
+	public void testAddSliceRotates() throws UnsupportedEncodingException {
+		RotatingBloomFilter filter = new RotatingBloomFilter(1000, 4, Hash.MURMUR_HASH, 10, 2);
+		for (int i = 0; i < 30; i++) {
+			byte[] record = SliceAsserts.record(i);
+			filter.add(SliceAsserts.direct(record), 1, record.length - 2);
+		}
+
+		// slices count towards the rows like keys, so the first 10 were rotated out
+		assertEquals(2, filter.currentNumberOfBloomFilters);
+		assertFalse(filter.membershipTest(new StringKey("key-0")));
+		assertTrue(filter.membershipTest(new StringKey("key-10")));
+		assertTrue(filter.membershipTest(new StringKey("key-29")));
+	}
+
+	@Test
+	public void testMembershipTestHashesOnce() throws UnsupportedEncodingException {
+		RotatingBloomFilter filter = new RotatingBloomFilter(1000, 4, Hash.MURMUR_HASH, 10, 10);
+		final AtomicInteger hashes = new AtomicInteger();
+		Key key = new Key("toto".getBytes("UTF-8")) {
+			@Override
+			public byte[] getBytes() {
+				hashes.incrementAndGet();
+				return super.getBytes();
+			}
+		};
+
+		assertFalse(filter.membershipTest(key));
+		assertEquals(1, hashes.get());
+
+		for (int i = 0; i < 50; i++) {
+			filter.add(new StringKey("key-" + i));
+		}
+		assertEquals(5, filter.currentNumberOfBloomFilters);
+		hashes.set(0);
+		assertFalse(filter.membershipTest(key));
+		// the positions are computed once and tested against every row
+		assertEquals(1, hashes.get());
+	}
+
 }
@@ -0,0 +1,173 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScalableBloomFilterTest {
+
+	private ScalableBloomFilter bf = null;
+	private static final int initialCapacity = 100;
+	private static final double errorRate = 0.01;
+
+	@Before
+	public void setUp() throws Exception {
+		bf = new ScalableBloomFilter(initialCapacity, errorRate, Hash.MURMUR_HASH);
+	}
+
+	@Test
+	public void testScalableBloomFilterConstructor() {
+		assertNotNull(bf);
+		assertEquals(initialCapacity, bf.initialCapacity);
+		assertEquals(2, bf.growthRatio);
+		assertEquals(0.9, bf.tighteningRatio, 0);
+		assertEquals(HashFunction.DOUBLE_HASHING, bf.hashScheme);
+		assertEquals(1, bf.getSliceCount());
+		// p0 = 0.001: k = 10, m = 100 * ln(1000) / ln(2)^2
+		assertEquals(10, bf.nbHash);
+		assertEquals(1438, bf.vectorSize);
+		assertEquals(bf.vectorSize, bf.slices[0].vectorSize);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorCapacity() {
+		new ScalableBloomFilter(0, errorRate, Hash.MURMUR_HASH);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorErrorRate() {
+		new ScalableBloomFilter(initialCapacity, 1, Hash.MURMUR_HASH);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorTighteningRatio() {
+		new ScalableBloomFilter(initialCapacity, errorRate, 2, 1, Hash.MURMUR_HASH, HashFunction.DOUBLE_HASHING);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorGrowthRatio() {
+		new ScalableBloomFilter(initialCapacity, errorRate, 1, 0.9, Hash.MURMUR_HASH, HashFunction.DOUBLE_HASHING);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddNullKey() {
+		bf.add((Key) null);
+	}
+
+	@Test
+	public void testMembershipTestNullKey() {
+		assertFalse(bf.membershipTest((Key) null));
+	}
+
+	@Test
+	public void testGrowth() throws UnsupportedEncodingException {
+		for (int i = 0; i < initialCapacity; i++) {
+			bf.add(new StringKey("key-" + i));
+		}
+		assertEquals(1, bf.getSliceCount());
+		bf.add(new StringKey("key-" + initialCapacity));
+		assertEquals(2, bf.getSliceCount());
+		assertEquals(11, bf.slices[1].nbHash);
+		assertEquals(200, bf.getSliceCapacity(1));
+
+		// 100 + 200 + ... + 102400 >= 200000 keys in 11 slices
+		for (int i = initialCapacity + 1; i < 200000; i++) {
+			bf.add(new StringKey("key-" + i));
+		}
+		assertEquals(11, bf.getSliceCount());
+		assertTrue(bf.getFalsePositiveBound() < errorRate);
+	}
+
+	@Test
+	public void testCappedSlices() {
+		ScalableBloomFilter sbf = new ScalableBloomFilter(1000000, 0.01, Hash.MURMUR_HASH);
+		double ln2 = Math.log(2) * Math.log(2);
+		long previous = 0;
+		for (int i = 0; i < 100; i++) {
+			long capacity = sbf.getSliceCapacity(i);
+			double bits = capacity * -Math.log(sbf.getSliceErrorRate(i)) / ln2;
+			assertTrue("slice " + i + " needs " + bits + " bits", bits <= ScalableBloomFilter.MAX_SLICE_BITS);
+			if (i < 8) {
+				assertEquals(1000000L << i, capacity);
+			} else {
+				// capped slices shrink slowly as their error ratio tightens
+				assertTrue(capacity < previous || i == 8);
+				assertTrue(capacity > 10000000);
+			}
+			previous = capacity;
+		}
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorCapacityTooLarge() {
+		// the first slice records 2 billion keys at 0.1%, about 29 billion bits
+		new ScalableBloomFilter(2000000000, 0.01, Hash.MURMUR_HASH);
+	}
+
+	@Test
+	public void testFalsePositiveRate() throws UnsupportedEncodingException {
+		int n = 50000;
+		for (int i = 0; i < n; i++) {
+			bf.add(new StringKey("key-" + i));
+		}
+		for (int i = 0; i < n; i++) {
+			assertTrue(bf.membershipTest(new StringKey("key-" + i)));
+		}
+		int falsePositives = 0;
+		int tests = 100000;
+		for (int i = 0; i < tests; i++) {
+			if (bf.membershipTest(new StringKey("other-" + i))) {
+				falsePositives++;
+			}
+		}
+		assertTrue("false positive rate " + (double) falsePositives / tests,
+				falsePositives < errorRate * tests);
+	}
+
+	@Test
+	public void testOrAndClone() throws UnsupportedEncodingException {
+		ScalableBloomFilter other = new ScalableBloomFilter(initialCapacity, errorRate, Hash.MURMUR_HASH);
+		bf.add(new StringKey("a"));
+		other.add(new StringKey("b"));
+		bf.or(other);
+		assertTrue(bf.membershipTest(new StringKey("b")));
+
+		ScalableBloomFilter clone = (ScalableBloomFilter) bf.clone();
+		assertEquals(bf.toString(), clone.toString());
+		clone.and(other);
+		assertFalse(clone.membershipTest(new StringKey("a")));
+		assertTrue(bf.membershipTest(new StringKey("a")));
+
+		clone.xor(other);
+		assertFalse(clone.membershipTest(new StringKey("b")));
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testIncompatibleSlices() throws UnsupportedEncodingException {
+		ScalableBloomFilter other = new ScalableBloomFilter(initialCapacity, errorRate, Hash.MURMUR_HASH);
+		for (int i = 0; i <= initialCapacity; i++) {
+			other.add(new StringKey("key-" + i));
+		}
+		bf.or(other);
+	}
+
+	@Test
+	public void testAddSliceAndMembershipTest() throws UnsupportedEncodingException {
+		ScalableBloomFilter keys = new ScalableBloomFilter(100, 0.01, Hash.MURMUR_HASH);
+		ScalableBloomFilter slices = new ScalableBloomFilter(100, 0.01, Hash.MURMUR_HASH);
+		SliceAsserts.assertSlicesMatchKeys(keys, slices, 300);
+
+		// slices fill the slices of the filter like keys do
+		assertTrue(slices.getSliceCount() > 1);
+		assertEquals(keys.getSliceCount(), slices.getSliceCount());
+		assertEquals(keys.toString(), slices.toString());
+	}
+
+}
@@ -0,0 +1,115 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+/**
+ * Checks of the slice and buffer methods of {@link Filter}, shared by the
+ * tests of the filters overriding them. Keys are <code>key-i</code>, and a
+ * slice holds the key inside the brackets of <code>[key-i]</code>.
+ */
+final class SliceAsserts {
+
+	private SliceAsserts() {
+	}
+
+	/**
+	 * Adds the first <code>n</code> keys to <code>keys</code> as {@link Key}s,
+	 * and to <code>slices</code> in turn as slices of an array, of a heap
+	 * buffer and of a direct buffer. Then checks that each filter finds the
+	 * keys added to the other.
+	 */
+	static void assertSlicesMatchKeys(Filter keys, Filter slices, int n) throws UnsupportedEncodingException {
+		for (int i = 0; i < n; i++) {
+			keys.add(new StringKey("key-" + i));
+			byte[] record = record(i);
+			if (i % 3 == 0) {
+				slices.add(record, 1, record.length - 2);
+			} else if (i % 3 == 1) {
+				slices.add(heap(record), 1, record.length - 2);
+			} else {
+				slices.add(direct(record), 1, record.length - 2);
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			assertTrue(slices.membershipTest(new StringKey("key-" + i)));
+		}
+		assertSliceMembership(keys, n);
+	}
+
+	/**
+	 * Checks that <code>filter</code> finds its first <code>n</code> keys in
+	 * slices of an array, of a heap buffer and of a direct buffer, leaving
+	 * the position of the buffers alone. Also checks that null is never a
+	 * member and that slices out of bounds are rejected.
+	 */
+	static void assertSliceMembership(Filter filter, int n) throws UnsupportedEncodingException {
+		for (int i = 0; i < n; i++) {
+			byte[] record = record(i);
+			ByteBuffer heap = heap(record);
+			ByteBuffer direct = direct(record);
+
+			assertTrue(filter.membershipTest(record, 1, record.length - 2));
+			assertTrue(filter.membershipTest(heap, 1, record.length - 2));
+			assertTrue(filter.membershipTest(direct, 1, record.length - 2));
+			assertEquals(0, heap.position());
+			assertEquals(0, direct.position());
+		}
+		assertFalse(filter.membershipTest((byte[]) null, 0, 1));
+		assertFalse(filter.membershipTest((ByteBuffer) null, 0, 1));
+
+		byte[] record = record(0);
+		ByteBuffer direct = direct(record);
+		direct.limit(record.length - 1);
+		assertOutOfBounds(filter, record, -1, 2);
+		assertOutOfBounds(filter, record, 1, record.length);
+		assertOutOfBounds(filter, record, 1, 0);
+		assertOutOfBounds(filter, direct, 1, record.length - 1);
+	}
+
+	private static void assertOutOfBounds(Filter filter, byte[] bytes, int offset, int length) {
+		try {
+			filter.membershipTest(bytes, offset, length);
+			fail("slice [" + offset + ", +" + length + ") accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private static void assertOutOfBounds(Filter filter, ByteBuffer buffer, int offset, int length) {
+		try {
+			filter.membershipTest(buffer, offset, length);
+			fail("slice [" + offset + ", +" + length + ") accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/** @return The bytes of <code>[key-i]</code>. */
+	static byte[] record(int i) throws UnsupportedEncodingException {
+		return ("[key-" + i + "]").getBytes("UTF-8");
+	}
+
+	/** @return A heap buffer holding <code>record</code>, whose array starts past the buffer. */
+	static ByteBuffer heap(byte[] record) {
+		byte[] padded = new byte[record.length + 3];
+		System.arraycopy(record, 0, padded, 3, record.length);
+		ByteBuffer buffer = ByteBuffer.wrap(padded);
+		buffer.position(3);
+		return buffer.slice();
+	}
+
+	/** @return A direct buffer holding <code>record</code>, at position 0. */
+	static ByteBuffer direct(byte[] record) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(record.length);
+		buffer.put(record);
+		buffer.flip();
+		return buffer;
+	}
+
+}
@@ -0,0 +1,208 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.onelab.filter.DynamicBloomFilter.LINE_SEPARATOR;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransposedDynamicBloomFilterTest {
+
+	private TransposedDynamicBloomFilter bf = null;
+	private static final int vectorSize = 8;
+	private static final int numberHashFunctions = 2;
+	private static final int maximumNumberOfKeysPerFilter = 2;
+
+	@Before
+	public void setUp() throws Exception {
+		bf = new TransposedDynamicBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter);
+	}
+
+	@Test
+	public void testTransposedDynamicBloomFilterConstructor() {
+		assertNotNull(bf);
+		assertEquals(vectorSize, bf.vectorSize);
+		assertEquals(numberHashFunctions, bf.nbHash);
+		assertEquals(Hash.JENKINS_HASH, bf.hashType);
+		assertEquals(maximumNumberOfKeysPerFilter, bf.nr);
+		assertEquals(0, bf.currentNbRecord);
+		assertEquals(1, bf.getRowCount());
+		assertEquals(1, bf.wordsPerPosition);
+		assertEquals(vectorSize, bf.bitmaps.length);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testAddNullKey() {
+		bf.add((Key) null);
+	}
+
+	@Test
+	public void testMembershipTestNullKey() {
+		assertFalse(bf.membershipTest((Key) null));
+	}
+
+	@Test
+	public void testToString() throws UnsupportedEncodingException {
+		assertEquals("{}" + LINE_SEPARATOR, bf.toString());
+		bf.add(new StringKey("toto"));
+		assertEquals("{0, 6}" + LINE_SEPARATOR, bf.toString());
+	}
+
+	@Test
+	public void testSameRowsAsDynamicBloomFilter() throws UnsupportedEncodingException {
+		TransposedDynamicBloomFilter filter = new TransposedDynamicBloomFilter(100, 3, Hash.MURMUR_HASH, 2);
+		DynamicBloomFilter reference = new DynamicBloomFilter(100, 3, Hash.MURMUR_HASH, 2);
+		// 150 rows, so that the bitmaps grow past one word
+		for (int i = 0; i < 300; i++) {
+			filter.add(new StringKey("key-" + i));
+			reference.add(new StringKey("key-" + i));
+		}
+		assertEquals(reference.getRowCount(), filter.getRowCount());
+		assertEquals(4, filter.wordsPerPosition);
+		assertEquals(reference.toString(), filter.toString());
+
+		for (int i = 0; i < 300; i++) {
+			assertTrue(filter.membershipTest(new StringKey("key-" + i)));
+		}
+		for (int i = 0; i < 1000; i++) {
+			StringKey key = new StringKey("other-" + i);
+			assertEquals(reference.membershipTest(key), filter.membershipTest(key));
+		}
+	}
+
+	@Test
+	public void testAndOrXor() throws UnsupportedEncodingException {
+		TransposedDynamicBloomFilter other = new TransposedDynamicBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter);
+		bf.add(new StringKey("toto"));
+		other.add(new StringKey("lulu"));
+		bf.or(other);
+		assertEquals("{0, 3, 6, 7}" + LINE_SEPARATOR, bf.toString());
+
+		bf.and(other);
+		assertEquals(other.toString(), bf.toString());
+
+		bf.xor(other);
+		assertEquals("{}" + LINE_SEPARATOR, bf.toString());
+	}
+
+	@Test
+	public void testNot() throws UnsupportedEncodingException {
+		for (int i = 0; i < 3; i++) {
+			bf.add(new StringKey("key-" + i));
+		}
+		TransposedDynamicBloomFilter copy = (TransposedDynamicBloomFilter) bf.clone();
+		bf.not();
+		bf.and(copy);
+		assertEquals("{}" + LINE_SEPARATOR + "{}" + LINE_SEPARATOR, bf.toString());
+		// rows past the last one stay clear
+		for (int p = 0; p < vectorSize; p++) {
+			assertEquals(0L, bf.bitmaps[p] >>> 2);
+		}
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testIncompatibleRows() throws UnsupportedEncodingException {
+		TransposedDynamicBloomFilter other = new TransposedDynamicBloomFilter(vectorSize, numberHashFunctions, Hash.JENKINS_HASH, maximumNumberOfKeysPerFilter);
+		for (int i = 0; i < 3; i++) {
+			other.add(new StringKey("key-" + i));
+		}
+		bf.or(other);
+	}
+
+	@Test
+	public void testClone() throws UnsupportedEncodingException {
+		for (int i = 0; i < 3; i++) {
+			bf.add(new StringKey("key-" + i));
+		}
+		TransposedDynamicBloomFilter clone = (TransposedDynamicBloomFilter) bf.clone();
+		assertEquals(bf.toString(), clone.toString());
+		assertEquals(bf.currentNbRecord, clone.currentNbRecord);
+		assertEquals(bf.getRowCount(), clone.getRowCount());
+		clone.add(new StringKey("key-3"));
+		clone.add(new StringKey("key-4"));
+		assertEquals(3, clone.getRowCount());
+		assertEquals(2, bf.getRowCount());
+	}
+
+	@Test
+	public void testBitmapsLength() {
+		assertEquals(8000, TransposedDynamicBloomFilter.bitmapsLength(1000, 8));
+		assertEquals(TransposedDynamicBloomFilter.MAX_ARRAY_SIZE,
+				TransposedDynamicBloomFilter.bitmapsLength(TransposedDynamicBloomFilter.MAX_ARRAY_SIZE, 1));
+	}
+
+	@Test (expected=IllegalStateException.class)
+	public void testBitmapsLengthOverflow() {
+		// 40M positions * 64 words wraps around in int arithmetic
+		TransposedDynamicBloomFilter.bitmapsLength(40000000, 64);
+	}
+
+	@Test (expected=IllegalStateException.class)
+	public void testBitmapsLengthTooLarge() {
+		TransposedDynamicBloomFilter.bitmapsLength(Integer.MAX_VALUE / 2, 2);
+	}
+
+	@Test
+	public void testConcurrentMembershipTest() throws Exception {
+		final int threads = 8;
+		final int keys = 2000;
+		final TransposedDynamicBloomFilter filter = new TransposedDynamicBloomFilter(10000, 8, Hash.MURMUR_HASH, 100);
+		for (int i = 0; i < keys; i++) {
+			filter.add(new StringKey("key-" + i));
+		}
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger falseNegatives = new AtomicInteger();
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] readers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			readers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int round = 0; round < 20; round++) {
+							for (int i = 0; i < keys; i++) {
+								if (!filter.membershipTest(new StringKey("key-" + i))) {
+									falseNegatives.incrementAndGet();
+								}
+							}
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			readers[t].start();
+		}
+		start.countDown();
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertTrue(errors.isEmpty());
+		assertEquals(0, falseNegatives.get());
+	}
+
+	@Test
+	public void testAddSliceAndMembershipTest() throws UnsupportedEncodingException {
+		TransposedDynamicBloomFilter keys = new TransposedDynamicBloomFilter(1000, 4, Hash.MURMUR_HASH, 100);
+		TransposedDynamicBloomFilter slices = new TransposedDynamicBloomFilter(1000, 4, Hash.MURMUR_HASH, 100);
+		SliceAsserts.assertSlicesMatchKeys(keys, slices, 300);
+
+		// the slices set the same bits of the same rows in the bitmaps
+		assertEquals(keys.getRowCount(), slices.getRowCount());
+		assertEquals(keys.toString(), slices.toString());
+	}
+
+}
@@ -0,0 +1,127 @@
+package org.onelab.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Hash;
+import org.junit.Before;
+import org.junit.Test;
+
+public class XorFilterTest {
+
+	private XorFilter xf = null;
+	private List<Key> keys = null;
+	private static final int numberOfKeys = 10000;
+
+	@Before
+	public void setUp() throws Exception {
+		keys = new ArrayList<Key>();
+		for (int i = 0; i < numberOfKeys; i++) {
+			keys.add(new StringKey("key-" + i));
+		}
+		xf = new XorFilter(keys, Hash.MURMUR_HASH);
+	}
+
+	@Test
+	public void testXorFilterConstructor() {
+		assertNotNull(xf);
+		assertEquals(numberOfKeys, xf.size());
+		assertEquals(3, xf.nbHash);
+		assertEquals(Hash.MURMUR_HASH, xf.hashType);
+		assertEquals(12330, xf.vectorSize);
+		assertEquals(4110, xf.blockLength);
+		assertEquals(12330, xf.fingerprints.length);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorNullKeys() {
+		new XorFilter((Key[]) null, Hash.MURMUR_HASH);
+	}
+
+	@Test (expected=IllegalArgumentException.class)
+	public void testConstructorNullKey() {
+		new XorFilter(new Key[] { null }, Hash.MURMUR_HASH);
+	}
+
+	@Test
+	public void testMembershipTestNullKey() {
+		assertFalse(xf.membershipTest((Key) null));
+	}
+
+	@Test
+	public void testMembershipTest() throws UnsupportedEncodingException {
+		for (Key key : keys) {
+			assertTrue(xf.membershipTest(key));
+		}
+		int falsePositives = 0;
+		int tests = 100000;
+		for (int i = 0; i < tests; i++) {
+			if (xf.membershipTest(new StringKey("other-" + i))) {
+				falsePositives++;
+			}
+		}
+		// 1 / 256 = 0.39% expected
+		assertTrue("false positives: " + falsePositives, falsePositives > tests / 1000 && falsePositives < tests / 150);
+	}
+
+	@Test
+	public void testArrayAndDuplicates() throws UnsupportedEncodingException {
+		Key[] array = new Key[] { new StringKey("a"), new StringKey("b"), new StringKey("a") };
+		XorFilter filter = new XorFilter(array, Hash.JENKINS_HASH);
+		assertEquals(2, filter.size());
+		assertTrue(filter.membershipTest(new StringKey("a")));
+		assertTrue(filter.membershipTest(new StringKey("b")));
+	}
+
+	@Test
+	public void testEmpty() {
+		XorFilter filter = new XorFilter(new Key[0], Hash.JENKINS_HASH);
+		assertEquals(0, filter.size());
+		assertEquals(30, filter.fingerprints.length);
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testAdd() throws UnsupportedEncodingException {
+		xf.add(new StringKey("key"));
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testOr() {
+		xf.or(xf);
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testNot() {
+		xf.not();
+	}
+
+	@Test
+	public void testClone() {
+		XorFilter clone = (XorFilter) xf.clone();
+		assertEquals(xf.size(), clone.size());
+		assertEquals(xf.seed, clone.seed);
+		assertSame(xf.fingerprints, clone.fingerprints);
+		for (Key key : keys) {
+			assertTrue(clone.membershipTest(key));
+		}
+	}
+
+	@Test
+	public void testMembershipTestSlice() throws UnsupportedEncodingException {
+		SliceAsserts.assertSliceMembership(xf, numberOfKeys);
+	}
+
+	@Test (expected=UnsupportedOperationException.class)
+	public void testAddSlice() throws UnsupportedEncodingException {
+		byte[] record = SliceAsserts.record(numberOfKeys);
+		xf.add(SliceAsserts.direct(record), 1, record.length - 2);
+	}
+
+}